@@ -25,28 +25,88 @@ import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
 import java.util.Map;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
+/**
+ * Compresses build cache entries using GZip.
+ *
+ * Entries can also be stored uncompressed, which is cheaper for large entries when the cache is close by.
+ * Unpacking detects whether an entry is compressed, so entries stored with any {@link Compression} can be loaded.
+ */
 public class GZipBuildCacheEntryPacker implements BuildCacheEntryPacker {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    public enum Compression {
+        DEFAULT(Deflater.DEFAULT_COMPRESSION),
+        FAST(Deflater.BEST_SPEED),
+        NONE(Deflater.NO_COMPRESSION);
+
+        private final int level;
+
+        Compression(int level) {
+            this.level = level;
+        }
+
+        public static Compression forName(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Unknown build cache compression '%s', supported values are 'default', 'fast' and 'none'.", name), e);
+            }
+        }
+    }
+
     private final BuildCacheEntryPacker delegate;
+    private final Compression compression;
 
     public GZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate) {
+        this(delegate, Compression.DEFAULT);
+    }
+
+    public GZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate, Compression compression) {
         this.delegate = delegate;
+        this.compression = compression;
     }
 
     @Override
     public PackResult pack(CacheableEntity entity, Map<String, CurrentFileCollectionFingerprint> fingerprints, OutputStream output, OriginWriter writeOrigin) throws IOException {
-        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+        if (compression == Compression.NONE) {
+            // Hand over the stream as is, so file contents can be transferred to it directly
+            return delegate.pack(entity, fingerprints, output, writeOrigin);
+        }
+        try (SelectiveGZipOutputStream gzipOutput = new SelectiveGZipOutputStream(output, compression.level, BUFFER_SIZE)) {
             return delegate.pack(entity, fingerprints, gzipOutput, writeOrigin);
         }
     }
 
     @Override
     public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
-        try (GZIPInputStream gzipInput = new GZIPInputStream(input)) {
-            return delegate.unpack(entity, gzipInput, readOrigin);
+        try (PushbackInputStream pushbackInput = new PushbackInputStream(input, 2)) {
+            if (isCompressed(pushbackInput)) {
+                try (GZIPInputStream gzipInput = new GZIPInputStream(pushbackInput, BUFFER_SIZE)) {
+                    return delegate.unpack(entity, gzipInput, readOrigin);
+                }
+            }
+            return delegate.unpack(entity, pushbackInput, readOrigin);
+        }
+    }
+
+    private static boolean isCompressed(PushbackInputStream input) throws IOException {
+        byte[] header = new byte[2];
+        int read = 0;
+        while (read < header.length) {
+            int count = input.read(header, read, header.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
         }
+        input.unread(header, 0, read);
+        return read == header.length && ((header[0] & 0xff) | ((header[1] & 0xff) << 8)) == GZIP_MAGIC;
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A GZip stream that can store parts of its content without compressing them, while staying readable by any GZip reader.
+ */
+class SelectiveGZipOutputStream extends GZIPOutputStream {
+    private final int level;
+    private boolean compressing = true;
+
+    public SelectiveGZipOutputStream(OutputStream output, int level, int bufferSize) throws IOException {
+        super(output, bufferSize);
+        this.level = level;
+        def.setLevel(level);
+    }
+
+    /**
+     * Sets whether the bytes written from now on are worth compressing. Bytes written before keep the previous setting.
+     */
+    public void setCompressing(boolean compressing) {
+        if (this.compressing != compressing) {
+            this.compressing = compressing;
+            def.setLevel(compressing ? level : Deflater.NO_COMPRESSION);
+        }
+    }
+}
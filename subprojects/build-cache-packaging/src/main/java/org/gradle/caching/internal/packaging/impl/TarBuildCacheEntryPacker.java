@@ -20,9 +20,7 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
@@ -46,12 +44,11 @@ import org.gradle.internal.snapshot.FileSystemSnapshotVisitor;
 import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.gradle.internal.snapshot.RelativePathStringTracker;
+import org.gradle.internal.snapshot.impl.FileHashingExecutor;
 
 import javax.annotation.Nullable;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -59,8 +56,12 @@ import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -68,7 +69,7 @@ import static org.gradle.caching.internal.packaging.impl.PackerDirectoryUtil.ens
 import static org.gradle.caching.internal.packaging.impl.PackerDirectoryUtil.makeDirectory;
 
 /**
- * Packages build cache entries to a POSIX TAR file.
+ * Packages build cache entries to a POSIX TAR file, see {@link TarOutput}.
  */
 public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     @SuppressWarnings("OctalInteger")
@@ -93,40 +94,35 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final StringInterner stringInterner;
+    private final FileHashingExecutor unpackExecutor;
 
     public TarBuildCacheEntryPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
+        this(fileSystem, streamHasher, stringInterner, FileHashingExecutor.SEQUENTIAL);
+    }
+
+    public TarBuildCacheEntryPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, FileHashingExecutor unpackExecutor) {
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.unpackExecutor = unpackExecutor;
     }
 
     @Override
     public PackResult pack(CacheableEntity entity, Map<String, CurrentFileCollectionFingerprint> fingerprints, OutputStream output, OriginWriter writeOrigin) throws IOException {
-        BufferedOutputStream bufferedOutput;
-        if (output instanceof BufferedOutputStream) {
-            bufferedOutput = (BufferedOutputStream) output;
-        } else {
-            bufferedOutput = new BufferedOutputStream(output);
-        }
-        try (TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(bufferedOutput, "utf-8")) {
-            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
-            tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
-            tarOutput.setAddPaxHeadersForNonAsciiNames(true);
+        try (TarOutput tarOutput = new TarOutput(output, COPY_BUFFERS.get())) {
             packMetadata(writeOrigin, tarOutput);
             long entryCount = pack(entity, fingerprints, tarOutput);
             return new PackResult(entryCount + 1);
         }
     }
 
-    private void packMetadata(OriginWriter writeMetadata, TarArchiveOutputStream tarOutput) throws IOException {
+    private void packMetadata(OriginWriter writeMetadata, TarOutput tarOutput) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         writeMetadata.execute(baos);
-        createTarEntry(METADATA_PATH, baos.size(), UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM, tarOutput);
-        tarOutput.write(baos.toByteArray());
-        tarOutput.closeArchiveEntry();
+        tarOutput.putEntry(METADATA_PATH, UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM, baos.toByteArray());
     }
 
-    private long pack(CacheableEntity entity, Map<String, CurrentFileCollectionFingerprint> fingerprints, TarArchiveOutputStream tarOutput) {
+    private long pack(CacheableEntity entity, Map<String, CurrentFileCollectionFingerprint> fingerprints, TarOutput tarOutput) {
         MutableLong entries = new MutableLong();
         entity.visitOutputTrees((treeName, type, root) -> {
             CurrentFileCollectionFingerprint fingerprint = fingerprints.get(treeName);
@@ -139,19 +135,12 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         return entries.get();
     }
 
-    private long packTree(String name, TreeType type, CurrentFileCollectionFingerprint fingerprint, TarArchiveOutputStream tarOutput) {
+    private long packTree(String name, TreeType type, CurrentFileCollectionFingerprint fingerprint, TarOutput tarOutput) {
         PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, fileSystem);
         fingerprint.accept(packingVisitor);
         return packingVisitor.finish();
     }
 
-    private static void createTarEntry(String path, long size, int mode, TarArchiveOutputStream tarOutput) throws IOException {
-        TarArchiveEntry entry = new TarArchiveEntry(path, true);
-        entry.setSize(size);
-        entry.setMode(mode);
-        tarOutput.putArchiveEntry(entry);
-    }
-
     @Override
     public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
         try (TarArchiveInputStream tarInput = new TarArchiveInputStream(input)) {
@@ -263,7 +252,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         }
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         OutputStream output = new FileOutputStream(file);
         HashCode hash;
         try {
@@ -282,41 +271,54 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         RelativePathParser parser = new RelativePathParser();
         parser.rootPath(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        // Files may still be written when their entries have been read, so the snapshot is built once all of them are written
+        List<Consumer<MerkleDirectorySnapshotBuilder>> visits = new ArrayList<Consumer<MerkleDirectorySnapshotBuilder>>();
         String rootPath = stringInterner.intern(treeRoot.getAbsolutePath());
         String rootDirName = stringInterner.intern(treeRoot.getName());
-        builder.preVisitDirectory(rootPath, rootDirName);
+        visits.add(builder -> builder.preVisitDirectory(rootPath, rootDirName));
 
+        UnpackedFileWriter fileWriter = new UnpackedFileWriter(unpackExecutor);
         TarArchiveEntry entry;
-
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            int directoriesLeft = parser.nextPath(entry.getName(), isDir);
-            for (int i = 0; i < directoriesLeft; i++) {
-                builder.postVisitDirectory();
-            }
-            if (parser.getDepth() == 0) {
-                break;
-            }
-            entries.increment(1);
-
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedDirName = stringInterner.intern(parser.getName());
-                builder.preVisitDirectory(internedAbsolutePath, internedDirName);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visit(fileSnapshot);
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                int directoriesLeft = parser.nextPath(entry.getName(), isDir);
+                for (int i = 0; i < directoriesLeft; i++) {
+                    visits.add(MerkleDirectorySnapshotBuilder::postVisitDirectory);
+                }
+                if (parser.getDepth() == 0) {
+                    break;
+                }
+                entries.increment(1);
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedDirName = stringInterner.intern(parser.getName());
+                    visits.add(builder -> builder.preVisitDirectory(internedAbsolutePath, internedDirName));
+                } else {
+                    TarArchiveEntry fileEntry = entry;
+                    String fileName = parser.getName();
+                    Supplier<RegularFileSnapshot> fileSnapshot = fileWriter.write(input, entry.getSize(), content -> unpackFile(content, fileEntry, file, fileName));
+                    visits.add(builder -> builder.visit(fileSnapshot.get()));
+                }
             }
+            fileWriter.finish();
+        } catch (IOException | RuntimeException e) {
+            fileWriter.abandon();
+            throw e;
         }
 
         for (int i = 0; i < parser.getDepth(); i++) {
-            builder.postVisitDirectory();
+            visits.add(MerkleDirectorySnapshotBuilder::postVisitDirectory);
         }
 
+        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        for (Consumer<MerkleDirectorySnapshotBuilder> visit : visits) {
+            visit.accept(builder);
+        }
         snapshots.put(treeName, builder.getResult());
         return entry;
     }
@@ -343,7 +345,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
     private static class PackingVisitor implements FileSystemSnapshotVisitor {
         private final RelativePathStringTracker relativePathStringTracker;
-        private final TarArchiveOutputStream tarOutput;
+        private final TarOutput tarOutput;
         private final String treePath;
         private final String treeRoot;
         private final FileSystem fileSystem;
@@ -351,7 +353,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
         private long entries;
 
-        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FileSystem fileSystem) {
+        public PackingVisitor(TarOutput tarOutput, String treeName, TreeType type, FileSystem fileSystem) {
             this.tarOutput = tarOutput;
             this.treePath = "tree-" + escape(treeName);
             this.treeRoot = treePath + "/";
@@ -429,33 +431,25 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             return treeRoot + relativePath;
         }
 
-        private void storeMissingTree(String treePath, TarArchiveOutputStream tarOutput) {
+        private void storeMissingTree(String treePath, TarOutput tarOutput) {
             try {
-                createTarEntry("missing-" + treePath, 0, UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM, tarOutput);
-                tarOutput.closeArchiveEntry();
+                tarOutput.putEmptyEntry("missing-" + treePath, UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
         }
-        private void storeDirectoryEntry(String path, int mode, TarArchiveOutputStream tarOutput) {
+
+        private void storeDirectoryEntry(String path, int mode, TarOutput tarOutput) {
             try {
-                createTarEntry(path + "/", 0, UnixPermissions.DIR_FLAG | mode, tarOutput);
-                tarOutput.closeArchiveEntry();
+                tarOutput.putEmptyEntry(path + "/", UnixPermissions.DIR_FLAG | mode);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
         }
 
-        private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
+        private void storeFileEntry(File inputFile, String path, long size, int mode, TarOutput tarOutput) {
             try {
-                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
-                FileInputStream input = new FileInputStream(inputFile);
-                try {
-                    IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
-                } finally {
-                    IoActions.closeQuietly(input);
-                }
-                tarOutput.closeArchiveEntry();
+                tarOutput.putFileEntry(path, UnixPermissions.FILE_FLAG | mode, inputFile, size);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.ZipEncoding;
+import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes a POSIX TAR stream, producing the same records as commons-compress' {@code TarArchiveOutputStream} in POSIX mode.
+ *
+ * Unlike {@code TarArchiveOutputStream}, the content of regular files does not need to pass through this class:
+ * when writing to a file, it is transferred by the file system using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * and when writing to a {@link SelectiveGZipOutputStream}, files that are already compressed are stored without compressing them again.
+ */
+class TarOutput implements Closeable {
+    private static final int RECORD_SIZE = 512;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final ImmutableSet<String> COMPRESSED_EXTENSIONS = ImmutableSet.of(
+        "7z", "aar", "apk", "br", "bz2", "ear", "gif", "gz", "jar", "jpeg", "jpg", "lz4", "mp3", "mp4",
+        "png", "tgz", "war", "webp", "woff", "woff2", "xz", "zip", "zst"
+    );
+    private static final ZipEncoding ENCODING = ZipEncodingHelper.getZipEncoding("utf-8");
+    private static final ZipEncoding ASCII = ZipEncodingHelper.getZipEncoding("ASCII");
+
+    private final OutputStream output;
+    private final BufferedOutputStream bufferedOutput;
+    private final FileChannel fileChannel;
+    private final SelectiveGZipOutputStream compressingOutput;
+    private final byte[] recordBuffer = new byte[RECORD_SIZE];
+    private final byte[] copyBuffer;
+
+    public TarOutput(OutputStream output, byte[] copyBuffer) {
+        this.output = output;
+        this.bufferedOutput = output instanceof BufferedOutputStream
+            ? (BufferedOutputStream) output
+            : new BufferedOutputStream(output, copyBuffer.length);
+        this.fileChannel = output instanceof FileOutputStream
+            ? ((FileOutputStream) output).getChannel()
+            : null;
+        this.compressingOutput = output instanceof SelectiveGZipOutputStream
+            ? (SelectiveGZipOutputStream) output
+            : null;
+        this.copyBuffer = copyBuffer;
+    }
+
+    public void putEntry(String path, int mode, byte[] content) throws IOException {
+        putEntryHeader(path, content.length, mode);
+        bufferedOutput.write(content);
+        pad(content.length);
+    }
+
+    public void putEmptyEntry(String path, int mode) throws IOException {
+        putEntryHeader(path, 0, mode);
+    }
+
+    public void putFileEntry(String path, int mode, File file, long size) throws IOException {
+        putEntryHeader(path, size, mode);
+        FileInputStream input = new FileInputStream(file);
+        try {
+            if (fileChannel != null) {
+                transferFile(input.getChannel(), file, size);
+            } else if (compressingOutput != null && isCompressed(file)) {
+                // Only bytes written after the switch are stored verbatim
+                bufferedOutput.flush();
+                compressingOutput.setCompressing(false);
+                try {
+                    copyFile(input, file, size);
+                    bufferedOutput.flush();
+                } finally {
+                    compressingOutput.setCompressing(true);
+                }
+            } else {
+                copyFile(input, file, size);
+            }
+        } finally {
+            input.close();
+        }
+        pad(size);
+    }
+
+    private void transferFile(FileChannel input, File file, long size) throws IOException {
+        bufferedOutput.flush();
+        long position = 0;
+        while (position < size) {
+            long transferred = input.transferTo(position, size - position, fileChannel);
+            if (transferred <= 0) {
+                throw fileChanged(file, size);
+            }
+            position += transferred;
+        }
+    }
+
+    private void copyFile(FileInputStream input, File file, long size) throws IOException {
+        long copied = IOUtils.copyLarge(input, bufferedOutput, 0, size, copyBuffer);
+        if (copied != size) {
+            throw fileChanged(file, size);
+        }
+    }
+
+    private static IOException fileChanged(File file, long size) {
+        return new IOException(String.format("File '%s' is no longer %d bytes long, was it modified while packing?", file, size));
+    }
+
+    private void putEntryHeader(String path, long size, int mode) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(path, true);
+        entry.setSize(size);
+        entry.setMode(mode);
+
+        Map<String, String> paxHeaders = new LinkedHashMap<String, String>();
+        if (encodedLength(path) >= TarConstants.NAMELEN || !ASCII.canEncode(path)) {
+            paxHeaders.put("path", path);
+        }
+        if (size > MAX_OCTAL_SIZE) {
+            paxHeaders.put("size", String.valueOf(size));
+        }
+        if (!paxHeaders.isEmpty()) {
+            putPaxHeaders(entry, path, paxHeaders);
+        }
+
+        // Values that do not fit into the header are replaced by zero, readers use the PAX headers instead
+        entry.writeEntryHeader(recordBuffer, ENCODING, false);
+        bufferedOutput.write(recordBuffer);
+    }
+
+    private void putPaxHeaders(TarArchiveEntry entry, String path, Map<String, String> headers) throws IOException {
+        String name = "./PaxHeaders.X/" + stripTo7Bits(path);
+        if (name.length() >= TarConstants.NAMELEN) {
+            name = name.substring(0, TarConstants.NAMELEN - 1);
+        }
+        TarArchiveEntry paxEntry = new TarArchiveEntry(name, TarConstants.LF_PAX_EXTENDED_HEADER_LC);
+        paxEntry.setModTime(entry.getModTime());
+
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            content.append(paxRecord(header.getKey(), header.getValue()));
+        }
+        byte[] data = content.toString().getBytes(StandardCharsets.UTF_8);
+        paxEntry.setSize(data.length);
+        paxEntry.writeEntryHeader(recordBuffer, ENCODING, false);
+        bufferedOutput.write(recordBuffer);
+        bufferedOutput.write(data);
+        pad(data.length);
+    }
+
+    /**
+     * Formats a PAX record, which is prefixed by its own length in bytes including the length itself.
+     */
+    private static String paxRecord(String key, String value) {
+        int length = key.length() + value.length() + 5;
+        String record = length + " " + key + "=" + value + "\n";
+        int actualLength = record.getBytes(StandardCharsets.UTF_8).length;
+        while (length != actualLength) {
+            length = actualLength;
+            record = length + " " + key + "=" + value + "\n";
+            actualLength = record.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return record;
+    }
+
+    private static String stripTo7Bits(String name) {
+        StringBuilder result = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char stripped = (char) (name.charAt(i) & 0x7F);
+            result.append(stripped == 0 || stripped == '/' || stripped == '\\' ? '_' : stripped);
+        }
+        return result.toString();
+    }
+
+    private static int encodedLength(String path) throws IOException {
+        ByteBuffer encoded = ENCODING.encode(path);
+        return encoded.limit() - encoded.position();
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % RECORD_SIZE);
+        if (remainder != 0) {
+            writeZeros(RECORD_SIZE - remainder);
+        }
+    }
+
+    private void writeZeros(int count) throws IOException {
+        Arrays.fill(recordBuffer, (byte) 0);
+        bufferedOutput.write(recordBuffer, 0, count);
+    }
+
+    private static boolean isCompressed(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Writes the end of archive marker and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeZeros(RECORD_SIZE);
+            writeZeros(RECORD_SIZE);
+            bufferedOutput.flush();
+        } finally {
+            output.close();
+        }
+    }
+}
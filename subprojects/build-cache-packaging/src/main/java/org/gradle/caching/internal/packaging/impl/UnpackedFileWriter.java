@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.impl.FileHashingExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Writes the files unpacked from a build cache entry, using the threads of a {@link FileHashingExecutor} when it is parallel.
+ *
+ * The entry can only be read sequentially, so the content of each file is read on the calling thread.
+ * Files small enough to be held in memory are then written and hashed by the executor, with a bounded amount of content waiting to be written.
+ * Larger files are written by the calling thread.
+ */
+class UnpackedFileWriter {
+    private static final int MAX_BUFFERED_FILE_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    interface FileContentWriter {
+        RegularFileSnapshot write(InputStream content) throws IOException;
+    }
+
+    private final FileHashingExecutor executor;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+    private final List<FutureTask<RegularFileSnapshot>> pendingWrites = new ArrayList<>();
+
+    public UnpackedFileWriter(FileHashingExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Writes a file of the given size from the input, returning its snapshot once it has been written.
+     * The returned snapshot can only be queried after {@link #finish()} returned.
+     */
+    public Supplier<RegularFileSnapshot> write(InputStream input, long size, FileContentWriter writer) throws IOException {
+        if (!executor.isParallel() || size > MAX_BUFFERED_FILE_SIZE) {
+            RegularFileSnapshot snapshot = writer.write(input);
+            return () -> snapshot;
+        }
+
+        int length = (int) size;
+        acquire(length);
+        byte[] content;
+        try {
+            content = new byte[length];
+            IOUtils.readFully(input, content);
+        } catch (IOException | RuntimeException e) {
+            bufferedBytes.release(length);
+            throw e;
+        }
+        FutureTask<RegularFileSnapshot> pendingWrite = new FutureTask<>(() -> {
+            try {
+                return writer.write(new ByteArrayInputStream(content));
+            } finally {
+                bufferedBytes.release(length);
+            }
+        });
+        pendingWrites.add(pendingWrite);
+        executor.execute(pendingWrite);
+        return () -> getDone(pendingWrite);
+    }
+
+    /**
+     * Waits for all files to be written, rethrowing the first failure.
+     */
+    public void finish() throws IOException {
+        Throwable failure = null;
+        for (FutureTask<RegularFileSnapshot> pendingWrite : pendingWrites) {
+            try {
+                pendingWrite.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        pendingWrites.clear();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    /**
+     * Waits for all files to be written, ignoring failures, so that no file is written after unpacking failed.
+     */
+    public void abandon() {
+        try {
+            finish();
+        } catch (Exception ignored) {
+            // The original failure is reported instead
+        }
+    }
+
+    private void acquire(int length) {
+        try {
+            bufferedBytes.acquire(length);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static RegularFileSnapshot getDone(FutureTask<RegularFileSnapshot> pendingWrite) {
+        try {
+            return pendingWrite.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker.Compression.DEFAULT
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker.Compression.FAST
+import static org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker.Compression.NONE
+
+class GZipBuildCacheEntryPackerTest extends Specification {
+    def entity = Stub(CacheableEntity)
+    def writeOrigin = Stub(OriginWriter)
+    def readOrigin = Stub(OriginReader)
+    def delegate = Mock(BuildCacheEntryPacker)
+    def content = ("content" * 1000).bytes
+
+    @Unroll
+    def "can unpack entries packed with #packedWith compression using #unpackedWith compression"() {
+        def output = new ByteArrayOutputStream()
+        byte[] unpacked = null
+
+        when:
+        new GZipBuildCacheEntryPacker(delegate, packedWith).pack(entity, [:], output, writeOrigin)
+
+        then:
+        1 * delegate.pack(entity, [:], _, writeOrigin) >> { args ->
+            args[2].write(content)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+        (output.toByteArray() == content) == (packedWith == NONE)
+
+        when:
+        new GZipBuildCacheEntryPacker(delegate, unpackedWith).unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { args ->
+            unpacked = args[1].bytes
+            null
+        }
+        unpacked == content
+
+        where:
+        packedWith | unpackedWith
+        DEFAULT    | DEFAULT
+        FAST       | DEFAULT
+        NONE       | DEFAULT
+        DEFAULT    | NONE
+    }
+
+    def "stores parts of the content without compressing them"() {
+        def output = new ByteArrayOutputStream()
+        def gzipOutput = new SelectiveGZipOutputStream(output, DEFAULT.level, 1024)
+
+        when:
+        gzipOutput.setCompressing(false)
+        gzipOutput.write(content)
+        gzipOutput.setCompressing(true)
+        gzipOutput.write(content)
+        gzipOutput.close()
+
+        then:
+        output.size() > content.length
+        new java.util.zip.GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == content + content
+    }
+
+    def "fails for unknown compression"() {
+        when:
+        GZipBuildCacheEntryPacker.Compression.forName("lzma")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown build cache compression 'lzma', supported values are 'default', 'fast' and 'none'."
+    }
+}
@@ -22,6 +22,9 @@ import org.gradle.caching.internal.CacheableEntity
 import org.gradle.caching.internal.TestCacheableTree
 import org.gradle.caching.internal.origin.OriginReader
 import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.file.TreeType
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
 import org.gradle.internal.fingerprint.FingerprintingStrategy
@@ -33,6 +36,7 @@ import org.gradle.internal.nativeplatform.filesystem.FileSystem
 import org.gradle.internal.snapshot.WellKnownFileLocations
 import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror
 import org.gradle.internal.snapshot.impl.DefaultFileSystemSnapshotter
+import org.gradle.internal.snapshot.impl.FileHashingExecutor
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
@@ -324,6 +328,76 @@ class TarBuildCacheEntryPackerTest extends Specification {
         0 * _
     }
 
+    @Unroll
+    def "can pack directory to #description"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        def sourceLibrary = sourceOutputDir.file("lib.jar")
+        sourceLibrary.bytes = (0..<100000).collect { it as byte } as byte[]
+        def sourceDataFile = sourceOutputDir.file("${"a" * 120}.txt")
+        sourceDataFile << "output"
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def packed = temporaryFolder.file("packed")
+
+        when:
+        def output = wrap(new FileOutputStream(packed))
+        pack output, prop(DIRECTORY, sourceOutputDir)
+
+        then:
+        _ * fileSystem.getUnixMode(_) >> 0644
+        0 * _
+
+        when:
+        def result = packed.withInputStream { input ->
+            unpack unwrap(input), prop(DIRECTORY, targetOutputDir)
+        }
+
+        then:
+        _ * fileSystem.chmod(_, _)
+        0 * _
+        and:
+        targetOutputDir.file("lib.jar").bytes == sourceLibrary.bytes
+        targetOutputDir.file(sourceDataFile.name).text == "output"
+        result.entries == 4
+
+        where:
+        description        | wrap                                                                       | unwrap
+        "file directly"    | { OutputStream output -> output }                                          | { InputStream input -> input }
+        "compressed file"  | { OutputStream output -> new SelectiveGZipOutputStream(output, 1, 1024) } | { InputStream input -> new java.util.zip.GZIPInputStream(input) }
+    }
+
+    def "unpacking files in parallel produces the same snapshot"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        (1..20).each { i ->
+            sourceOutputDir.file("dir${i % 4}/sub${i % 3}/file${i}.txt").text = "content ${i}"
+        }
+        def sourceLargeFile = sourceOutputDir.file("dir1/large.bin")
+        sourceLargeFile.bytes = new byte[5 * 1024 * 1024]
+        def sequentialTargetDir = temporaryFolder.file("sequential").createDir()
+        def parallelTargetDir = temporaryFolder.file("parallel").createDir()
+        def parallelismConfigurationManager = Stub(ParallelismConfigurationManager)
+        _ * parallelismConfigurationManager.parallelismConfiguration >> new DefaultParallelismConfiguration(false, 4)
+        def hashingExecutor = new FileHashingExecutor(new DefaultExecutorFactory(), parallelismConfigurationManager)
+        def parallelPacker = new TarBuildCacheEntryPacker(fileSystem, streamHasher, stringInterner, hashingExecutor)
+        def output = new ByteArrayOutputStream()
+
+        when:
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def sequential = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, sequentialTargetDir)
+        def parallel = parallelPacker.unpack(entity(prop(DIRECTORY, parallelTargetDir)), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        hashingExecutor.parallel
+        parallel.entries == sequential.entries
+        parallel.snapshots["test"].hash == sequential.snapshots["test"].hash
+        parallelTargetDir.file("dir1/large.bin").bytes == sourceLargeFile.bytes
+        (1..20).each { i ->
+            assert parallelTargetDir.file("dir${i % 4}/sub${i % 3}/file${i}.txt").text == "content ${i}"
+        }
+
+        cleanup:
+        hashingExecutor.stop()
+    }
+
     def pack(OutputStream output, OriginWriter writeOrigin = this.writeOrigin, TreeDefinition... treeDefs) {
         Map<String, CurrentFileCollectionFingerprint> fingerprints = treeDefs.collectEntries { treeDef ->
             return [(treeDef.tree.name): treeDef.fingerprint()]
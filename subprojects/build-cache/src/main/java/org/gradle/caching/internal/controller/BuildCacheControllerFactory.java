@@ -26,9 +26,11 @@ import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.internal.FinalizeBuildCacheConfigurationBuildOperationType;
+import org.gradle.caching.internal.controller.service.AsyncStoreBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -48,6 +50,26 @@ public final class BuildCacheControllerFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheControllerFactory.class);
 
+    /**
+     * Whether entries are stored in the remote build cache in the background rather than when the task finishes.
+     */
+    public static final String ASYNC_REMOTE_STORE_PROPERTY = "org.gradle.internal.build.cache.remote.async-store";
+
+    /**
+     * How many bytes of entries waiting to be stored in the background are held in memory, larger amounts are spooled to disk.
+     */
+    public static final String ASYNC_REMOTE_STORE_MEMORY_PROPERTY = "org.gradle.internal.build.cache.remote.async-store.memory";
+
+    /**
+     * How many entries can wait to be stored in the background before storing blocks.
+     */
+    public static final String ASYNC_REMOTE_STORE_QUEUE_SIZE_PROPERTY = "org.gradle.internal.build.cache.remote.async-store.queue-size";
+
+    /**
+     * How many seconds the end of the build waits for entries to be stored in the background before dropping them.
+     */
+    public static final String ASYNC_REMOTE_STORE_TIMEOUT_PROPERTY = "org.gradle.internal.build.cache.remote.async-store.timeout";
+
     public enum BuildCacheMode {
         ENABLED, DISABLED
     }
@@ -65,7 +87,8 @@ public final class BuildCacheControllerFactory {
         final RemoteAccessMode remoteAccessMode,
         final boolean logStackTraces,
         final boolean emitDebugLogging,
-        final Instantiator instantiator
+        final Instantiator instantiator,
+        final ExecutorFactory executorFactory
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -116,7 +139,8 @@ public final class BuildCacheControllerFactory {
                         buildOperationExecutor,
                         gradleUserHomeDir,
                         logStackTraces,
-                        emitDebugLogging
+                        emitDebugLogging,
+                        asyncRemoteStoreSettings(executorFactory)
                     );
                 }
             }
@@ -129,6 +153,19 @@ public final class BuildCacheControllerFactory {
         });
     }
 
+    @Nullable
+    private static AsyncStoreBuildCacheServiceHandle.Settings asyncRemoteStoreSettings(ExecutorFactory executorFactory) {
+        if (!Boolean.getBoolean(ASYNC_REMOTE_STORE_PROPERTY)) {
+            return null;
+        }
+        return new AsyncStoreBuildCacheServiceHandle.Settings(
+            executorFactory,
+            Long.getLong(ASYNC_REMOTE_STORE_MEMORY_PROPERTY, 64 * 1024 * 1024),
+            Integer.getInteger(ASYNC_REMOTE_STORE_QUEUE_SIZE_PROPERTY, 256),
+            Integer.getInteger(ASYNC_REMOTE_STORE_TIMEOUT_PROPERTY, 300)
+        );
+    }
+
     private static BuildCacheServicesConfiguration toConfiguration(BuildCache local, BuildCacheService localService, BuildCache remote, BuildCacheService remoteService) {
         boolean remotePush = remote != null && remote.isPush();
         boolean localPush = local != null && local.isPush();
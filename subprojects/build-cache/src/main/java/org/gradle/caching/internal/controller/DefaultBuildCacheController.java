@@ -26,6 +26,7 @@ import org.gradle.caching.internal.controller.operations.PackOperationDetails;
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
 import org.gradle.caching.internal.controller.operations.UnpackOperationResult;
+import org.gradle.caching.internal.controller.service.AsyncStoreBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BaseBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
@@ -77,6 +78,20 @@ public class DefaultBuildCacheController implements BuildCacheController {
         File gradleUserHomeDir,
         boolean logStackTraces,
         boolean emitDebugLogging
+    ) {
+        this(config, buildOperationExecutor, gradleUserHomeDir, logStackTraces, emitDebugLogging, null);
+    }
+
+    /**
+     * Creates a controller storing entries in the remote cache in the background when settings for doing so are given.
+     */
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        File gradleUserHomeDir,
+        boolean logStackTraces,
+        boolean emitDebugLogging,
+        @Nullable AsyncStoreBuildCacheServiceHandle.Settings asyncRemoteStoreSettings
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.emitDebugLogging = emitDebugLogging;
@@ -92,7 +107,11 @@ public class DefaultBuildCacheController implements BuildCacheController {
             this.tmp = new DefaultBuildCacheTempFileStore(new File(gradleUserHomeDir, "build-cache-tmp"));
         }
 
-        this.remote = toHandle(config.remote, config.remotePush, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        BuildCacheServiceHandle remoteHandle = toHandle(config.remote, config.remotePush, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        if (asyncRemoteStoreSettings != null && remoteHandle.canStore()) {
+            remoteHandle = new AsyncStoreBuildCacheServiceHandle(remoteHandle, new File(gradleUserHomeDir, "build-cache-tmp"), asyncRemoteStoreSettings, buildOperationExecutor);
+        }
+        this.remote = remoteHandle;
     }
 
     @Override
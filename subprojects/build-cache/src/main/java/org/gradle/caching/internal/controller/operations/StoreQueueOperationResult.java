@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.controller.operations;
+
+import org.gradle.caching.internal.operations.BuildCacheRemoteStoreQueueBuildOperationType;
+
+public class StoreQueueOperationResult implements BuildCacheRemoteStoreQueueBuildOperationType.Result {
+
+    private final int storedEntries;
+    private final long storedBytes;
+    private final long storeTimeMillis;
+    private final int droppedEntries;
+
+    public StoreQueueOperationResult(int storedEntries, long storedBytes, long storeTimeMillis, int droppedEntries) {
+        this.storedEntries = storedEntries;
+        this.storedBytes = storedBytes;
+        this.storeTimeMillis = storeTimeMillis;
+        this.droppedEntries = droppedEntries;
+    }
+
+    @Override
+    public int getStoredEntries() {
+        return storedEntries;
+    }
+
+    @Override
+    public long getStoredBytes() {
+        return storedBytes;
+    }
+
+    @Override
+    public long getStoreTimeMillis() {
+        return storeTimeMillis;
+    }
+
+    @Override
+    public int getDroppedEntries() {
+        return droppedEntries;
+    }
+}
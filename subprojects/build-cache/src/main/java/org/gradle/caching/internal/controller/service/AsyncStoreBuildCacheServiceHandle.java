@@ -0,0 +1,258 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.controller.service;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.controller.operations.StoreQueueOperationDetails;
+import org.gradle.caching.internal.controller.operations.StoreQueueOperationResult;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.util.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores entries in the background, so that the build does not wait for them to be uploaded.
+ *
+ * Entries are copied to memory while they fit in the configured amount, and to a spool directory otherwise.
+ * Storing blocks once the configured number of entries is waiting to be uploaded.
+ * When closed, waits for the remaining entries to be stored up to a timeout and drops those not started by then.
+ * The upload in flight, if any, is interrupted and given a few more seconds to finish. After that it is abandoned: the delegate is closed and the spooled entries are deleted anyway,
+ * as an upload blocked in socket I/O does not react to the interrupt and a custom build cache service may not return at all.
+ * The uploads run on a thread of the given executor factory, and those waited for when closing are reported as part of that wait.
+ */
+public class AsyncStoreBuildCacheServiceHandle implements BuildCacheServiceHandle {
+
+    private static final Logger LOGGER = Logging.getLogger(AsyncStoreBuildCacheServiceHandle.class);
+    private static final int UPLOAD_IN_FLIGHT_TIMEOUT_SECONDS = 5;
+
+    public static class Settings {
+        private final ExecutorFactory executorFactory;
+        private final long maxMemoryBytes;
+        private final int maxQueuedEntries;
+        private final int timeoutSeconds;
+
+        public Settings(ExecutorFactory executorFactory, long maxMemoryBytes, int maxQueuedEntries, int timeoutSeconds) {
+            this.executorFactory = executorFactory;
+            this.maxMemoryBytes = maxMemoryBytes;
+            this.maxQueuedEntries = maxQueuedEntries;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+    }
+
+    private final BuildCacheServiceHandle delegate;
+    private final File spoolDir;
+    private final Settings settings;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final ManagedExecutor uploader;
+    private final Semaphore queueSlots;
+    private final Set<File> spoolFiles = Sets.newConcurrentHashSet();
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicInteger queuedEntries = new AtomicInteger();
+    // The queued entries whose upload has not started yet
+    private final AtomicInteger waitingEntries = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicInteger storedEntries = new AtomicInteger();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong storeTimeMillis = new AtomicLong();
+    private volatile BuildOperationRef waitOperation;
+    private volatile boolean abandoned;
+
+    public AsyncStoreBuildCacheServiceHandle(BuildCacheServiceHandle delegate, File spoolDir, Settings settings, BuildOperationExecutor buildOperationExecutor) {
+        this.delegate = delegate;
+        this.spoolDir = spoolDir;
+        this.settings = settings;
+        this.buildOperationExecutor = buildOperationExecutor;
+        // A single uploader keeps the delegate from being used concurrently
+        this.uploader = settings.executorFactory.create("Build cache upload", 1);
+        this.queueSlots = new Semaphore(settings.maxQueuedEntries);
+    }
+
+    @Nullable
+    @Override
+    public BuildCacheService getService() {
+        return delegate.getService();
+    }
+
+    @Override
+    public boolean canLoad() {
+        return delegate.canLoad();
+    }
+
+    @Override
+    public void load(BuildCacheKey key, LoadTarget loadTarget) {
+        delegate.load(key, loadTarget);
+    }
+
+    @Override
+    public boolean canStore() {
+        return delegate.canStore();
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, StoreTarget storeTarget) {
+        try {
+            queueSlots.acquire();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        final long size = storeTarget.getSize();
+        final ByteSource content;
+        final File spoolFile;
+        try {
+            if (memoryBytes.addAndGet(size) <= settings.maxMemoryBytes) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) size);
+                storeTarget.writeTo(bytes);
+                content = ByteSource.wrap(bytes.toByteArray());
+                spoolFile = null;
+            } else {
+                memoryBytes.addAndGet(-size);
+                GFileUtils.mkdirs(spoolDir);
+                spoolFile = File.createTempFile(key.getHashCode() + "-", ".spool", spoolDir);
+                spoolFiles.add(spoolFile);
+                storeTarget.writeTo(new FileOutputStream(spoolFile));
+                content = Files.asByteSource(spoolFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            queueSlots.release();
+            LOGGER.warn("Could not queue entry {} to be stored in {} build cache: {}", key.getDisplayName(), BuildCacheServiceRole.REMOTE.getDisplayName(), e.getMessage());
+            return;
+        }
+
+        queuedEntries.incrementAndGet();
+        waitingEntries.incrementAndGet();
+        queuedBytes.addAndGet(size);
+        uploader.execute(new Runnable() {
+            @Override
+            public void run() {
+                waitingEntries.decrementAndGet();
+                // The operation that produced the entry has usually completed by now, so it cannot be the parent of the store operation
+                BuildOperationRef parentOperation = waitOperation;
+                if (parentOperation != null) {
+                    CurrentBuildOperationRef.instance().set(parentOperation);
+                }
+                try {
+                    long start = System.currentTimeMillis();
+                    StoreTarget spooledTarget = new StoreTarget(content, size);
+                    try {
+                        delegate.store(key, spooledTarget);
+                    } catch (RuntimeException e) {
+                        if (!abandoned) {
+                            throw e;
+                        }
+                        // The build has moved on, including the operation this upload was reported under
+                        LOGGER.debug("Abandoned upload of entry {} to {} build cache failed.", key.getDisplayName(), BuildCacheServiceRole.REMOTE.getDisplayName(), e);
+                        return;
+                    }
+                    if (spooledTarget.isStored()) {
+                        storeTimeMillis.addAndGet(System.currentTimeMillis() - start);
+                        storedEntries.incrementAndGet();
+                        storedBytes.addAndGet(size);
+                    }
+                } finally {
+                    CurrentBuildOperationRef.instance().clear();
+                    if (spoolFile == null) {
+                        memoryBytes.addAndGet(-size);
+                    } else {
+                        GFileUtils.deleteQuietly(spoolFile);
+                        spoolFiles.remove(spoolFile);
+                    }
+                    queuedEntries.decrementAndGet();
+                    queuedBytes.addAndGet(-size);
+                    queueSlots.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    // Entries stored from now on are reported as children of this operation, which completes once the uploader has stopped or its upload in flight has been abandoned
+                    waitOperation = CurrentBuildOperationRef.instance().get();
+                    int droppedEntries = 0;
+                    try {
+                        uploader.stop(settings.timeoutSeconds, TimeUnit.SECONDS);
+                    } catch (IllegalStateException e) {
+                        // The entries not started yet are dropped, and the upload in flight has been interrupted
+                        droppedEntries = waitingEntries.get();
+                        LOGGER.warn("Dropped {} entries not stored in {} build cache after {} seconds.", droppedEntries, BuildCacheServiceRole.REMOTE.getDisplayName(), settings.timeoutSeconds);
+                        awaitUploadInFlight();
+                    }
+                    context.setResult(new StoreQueueOperationResult(storedEntries.get(), storedBytes.get(), storeTimeMillis.get(), droppedEntries));
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Wait for entries to be stored in " + BuildCacheServiceRole.REMOTE.getDisplayName() + " build cache")
+                        .details(new StoreQueueOperationDetails(queuedEntries.get(), queuedBytes.get()))
+                        .progressDisplayName("Uploading to remote build cache");
+                }
+            });
+        } finally {
+            deleteSpooledEntries();
+            delegate.close();
+        }
+    }
+
+    private void awaitUploadInFlight() {
+        boolean stopped;
+        try {
+            stopped = uploader.awaitTermination(UPLOAD_IN_FLIGHT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        if (!stopped) {
+            // Closing the delegate aborts the upload for the services that can be aborted
+            abandoned = true;
+            LOGGER.warn("Abandoned the entry being stored in {} build cache, as it was not stored {} seconds after being interrupted.", BuildCacheServiceRole.REMOTE.getDisplayName(), UPLOAD_IN_FLIGHT_TIMEOUT_SECONDS);
+        }
+    }
+
+    private void deleteSpooledEntries() {
+        for (File spoolFile : spoolFiles) {
+            GFileUtils.deleteQuietly(spoolFile);
+        }
+        spoolFiles.clear();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.caching.internal.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Waiting at the end of the build for the entries queued to be stored in the remote build cache in the background.
+ */
+public final class BuildCacheRemoteStoreQueueBuildOperationType implements BuildOperationType<BuildCacheRemoteStoreQueueBuildOperationType.Details, BuildCacheRemoteStoreQueueBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * The number of entries still waiting to be stored when the build finished.
+         */
+        int getQueuedEntries();
+
+        /**
+         * The number of bytes of the entries still waiting to be stored when the build finished.
+         */
+        long getQueuedBytes();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The number of entries stored in the background during the build.
+         */
+        int getStoredEntries();
+
+        /**
+         * The number of bytes stored in the background during the build.
+         */
+        long getStoredBytes();
+
+        /**
+         * The time spent storing entries in the background, from which the upload throughput can be derived.
+         */
+        long getStoreTimeMillis();
+
+        /**
+         * The number of entries dropped because they were not stored before the timeout.
+         */
+        int getDroppedEntries();
+
+    }
+
+    private BuildCacheRemoteStoreQueueBuildOperationType() {
+    }
+}
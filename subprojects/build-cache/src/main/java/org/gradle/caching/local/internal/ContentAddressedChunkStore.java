@@ -0,0 +1,253 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.PrimitiveHasher;
+import org.gradle.util.GFileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Stores build cache entries as a manifest listing the chunks of the entry, with the chunks stored by the hash of their content.
+ *
+ * Chunk boundaries are chosen from the content using a rolling hash, so that entries sharing content, like the same file in two uncompressed entries, share chunks.
+ * Chunks no longer referenced by any manifest are removed by {@link UnreferencedChunkCleanup}.
+ */
+public class ContentAddressedChunkStore {
+    public static final String CHUNKS_DIR_NAME = "chunks";
+
+    private static final int MANIFEST_MAGIC = 0xCAC4E001;
+    private static final int MIN_CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_CHUNK_SIZE = 128 * 1024;
+    // Cuts a chunk on average every 32 KB after the minimum size
+    private static final long BOUNDARY_MASK = 0xFFFE000000000000L;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed, as boundaries must be the same in every build
+        Random random = new Random(0x677261646L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final File chunksDir;
+
+    public ContentAddressedChunkStore(File baseDir) {
+        this.chunksDir = new File(baseDir, CHUNKS_DIR_NAME);
+    }
+
+    public File getChunksDir() {
+        return chunksDir;
+    }
+
+    /**
+     * Splits the given entry into chunks, stores the chunks not yet present and writes the manifest of the entry.
+     */
+    public void writeManifest(File entry, File manifest) throws IOException {
+        List<HashCode> chunks = new ArrayList<HashCode>();
+        byte[] chunk = new byte[MAX_CHUNK_SIZE];
+        byte[] buffer = new byte[64 * 1024];
+        int length = 0;
+        long fingerprint = 0;
+        InputStream input = new FileInputStream(entry);
+        try {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    int b = buffer[i] & 0xFF;
+                    chunk[length++] = (byte) b;
+                    fingerprint = (fingerprint << 1) + GEAR[b];
+                    if (length == MAX_CHUNK_SIZE || (length >= MIN_CHUNK_SIZE && (fingerprint & BOUNDARY_MASK) == 0)) {
+                        chunks.add(storeChunk(chunk, length));
+                        length = 0;
+                        fingerprint = 0;
+                    }
+                }
+            }
+        } finally {
+            input.close();
+        }
+        if (length > 0) {
+            chunks.add(storeChunk(chunk, length));
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifest)));
+        try {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(chunks.size());
+            for (HashCode hash : chunks) {
+                byte[] bytes = hash.toByteArray();
+                output.writeByte(bytes.length);
+                output.write(bytes);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private HashCode storeChunk(byte[] chunk, int length) throws IOException {
+        PrimitiveHasher hasher = Hashing.defaultFunction().newPrimitiveHasher();
+        hasher.putBytes(chunk, 0, length);
+        HashCode hash = hasher.hash();
+        File chunkFile = getChunkFile(hash);
+        if (!chunkFile.isFile()) {
+            File parent = chunkFile.getParentFile();
+            GFileUtils.mkdirs(parent);
+            File tempFile = File.createTempFile(chunkFile.getName() + "-", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, parent);
+            try {
+                OutputStream output = new FileOutputStream(tempFile);
+                try {
+                    output.write(chunk, 0, length);
+                } finally {
+                    output.close();
+                }
+                if (!tempFile.renameTo(chunkFile) && !chunkFile.isFile()) {
+                    throw new IOException(String.format("Could not store build cache chunk %s", chunkFile));
+                }
+            } finally {
+                GFileUtils.deleteQuietly(tempFile);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns whether the given file is a manifest, rather than an entry stored as a whole.
+     */
+    public boolean isManifest(File file) {
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                return input.readInt() == MANIFEST_MAGIC;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the chunks referenced by the given manifest.
+     */
+    public List<File> readChunks(File manifest) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+        try {
+            if (input.readInt() != MANIFEST_MAGIC) {
+                throw new IOException(String.format("Not a build cache manifest: %s", manifest));
+            }
+            int count = input.readInt();
+            List<File> chunks = new ArrayList<File>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[input.readUnsignedByte()];
+                input.readFully(bytes);
+                chunks.add(getChunkFile(HashCode.fromBytes(bytes)));
+            }
+            return chunks;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Opens the content of the given entry, reading its chunks if it is a manifest.
+     */
+    public InputStream open(File file) throws IOException {
+        if (!isManifest(file)) {
+            return new FileInputStream(file);
+        }
+        List<File> chunks = readChunks(file);
+        for (File chunk : chunks) {
+            if (!chunk.isFile()) {
+                throw new FileNotFoundException(String.format("Build cache chunk %s referenced by %s is missing", chunk, file));
+            }
+        }
+        return new SequenceInputStream(new ChunkStreams(chunks.iterator()));
+    }
+
+    /**
+     * Copies the content of the given manifest to the given file.
+     */
+    public void copyTo(File manifest, File target) throws IOException {
+        InputStream input = open(manifest);
+        try {
+            OutputStream output = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    output.write(buffer, 0, read);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private File getChunkFile(HashCode hash) {
+        String name = hash.toString();
+        return new File(new File(chunksDir, name.substring(0, 2)), name);
+    }
+
+    private static class ChunkStreams implements Enumeration<InputStream> {
+        private final Iterator<File> chunks;
+
+        ChunkStreams(Iterator<File> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return chunks.hasNext();
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (!chunks.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return new FileInputStream(chunks.next());
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
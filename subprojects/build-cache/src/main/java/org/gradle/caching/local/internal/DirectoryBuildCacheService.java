@@ -32,10 +32,12 @@ import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.util.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -46,17 +48,26 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
+    private final ContentAddressedChunkStore chunkStore;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix, null);
+    }
+
+    /**
+     * Creates a cache service storing entries as manifests of deduplicated chunks when a chunk store is given.
+     */
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix, @Nullable ContentAddressedChunkStore chunkStore) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
         this.failedFileSuffix = failedFileSuffix;
+        this.chunkStore = chunkStore;
     }
 
-    private static class LoadAction implements Action<File> {
+    private class LoadAction implements Action<File> {
         private final BuildCacheEntryReader reader;
         boolean loaded;
 
@@ -68,7 +79,7 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         public void execute(@Nonnull File file) {
             try {
                 Closer closer = Closer.create();
-                FileInputStream stream = closer.register(new FileInputStream(file));
+                InputStream stream = closer.register(chunkStore == null ? new FileInputStream(file) : chunkStore.open(file));
                 try {
                     reader.readFrom(stream);
                     loaded = true;
@@ -84,12 +95,39 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     @Override
     public boolean load(final BuildCacheKey key, final BuildCacheEntryReader reader) throws BuildCacheException {
         LoadAction loadAction = new LoadAction(reader);
-        loadLocally(key, loadAction);
+        loadWithLock(key, loadAction);
         return loadAction.loaded;
     }
 
     @Override
     public void loadLocally(final BuildCacheKey key, final Action<? super File> reader) {
+        if (chunkStore == null) {
+            loadWithLock(key, reader);
+            return;
+        }
+        loadWithLock(key, new Action<File>() {
+            @Override
+            public void execute(@Nonnull File file) {
+                if (!chunkStore.isManifest(file)) {
+                    reader.execute(file);
+                    return;
+                }
+                tempFileStore.withTempFile(key, new Action<File>() {
+                    @Override
+                    public void execute(@Nonnull File assembledFile) {
+                        try {
+                            chunkStore.copyTo(file, assembledFile);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        reader.execute(assembledFile);
+                    }
+                });
+            }
+        });
+    }
+
+    private void loadWithLock(final BuildCacheKey key, final Action<? super File> reader) {
         // We need to lock other processes out here because garbage collection can be under way in another process
         persistentCache.withFileLock(new Runnable() {
             @Override
@@ -166,10 +204,30 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     }
 
     private void storeInsideLock(BuildCacheKey key, File file) {
+        if (chunkStore != null) {
+            storeChunksInsideLock(key, file);
+            return;
+        }
         LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
         fileAccessTracker.markAccessed(resource.getFile());
     }
 
+    private void storeChunksInsideLock(final BuildCacheKey key, final File file) {
+        tempFileStore.withTempFile(key, new Action<File>() {
+            @Override
+            public void execute(@Nonnull File manifest) {
+                try {
+                    chunkStore.writeManifest(file, manifest);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                LocallyAvailableResource resource = fileStore.move(key.getHashCode(), manifest);
+                fileAccessTracker.markAccessed(resource.getFile());
+            }
+        });
+        GFileUtils.deleteQuietly(file);
+    }
+
     @Override
     public void withTempFile(final BuildCacheKey key, final Action<? super File> action) {
         persistentCache.withFileLock(new Runnable() {
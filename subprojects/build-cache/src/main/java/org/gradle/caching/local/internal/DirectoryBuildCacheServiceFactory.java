@@ -22,6 +22,8 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CleanupActionFactory;
+import org.gradle.cache.internal.CompositeCleanupAction;
+import org.gradle.cache.internal.FilesFinder;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.internal.VersionStrategy;
@@ -36,6 +38,7 @@ import org.gradle.internal.resource.local.SingleDepthFileAccessTracker;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.FileFilter;
 
 import static org.gradle.cache.FileLockManager.LockMode.None;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
@@ -43,6 +46,11 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    /**
+     * Whether entries are stored as manifests of content-addressed chunks shared between entries.
+     */
+    public static final String DEDUPLICATE_PROPERTY = "org.gradle.internal.build.cache.local.deduplicate";
+
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
@@ -78,14 +86,24 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         checkDirectory(target);
 
         int removeUnusedEntriesAfterDays = configuration.getRemoveUnusedEntriesAfterDays();
+        boolean deduplicate = Boolean.getBoolean(DEDUPLICATE_PROPERTY);
         describer.type(DIRECTORY_BUILD_CACHE_TYPE).
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
+        if (deduplicate) {
+            describer.config("deduplicate", "true");
+        }
 
+        // Chunks are kept regardless of the layout in use, as entries stored as manifests by another build still need them
+        ContentAddressedChunkStore chunkStore = new ContentAddressedChunkStore(target);
+        FilesFinder entryFinder = new ExcludingChunksFilesFinder(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), chunkStore.getChunksDir());
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionFactory.create(new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionFactory.create(CompositeCleanupAction.builder()
+                .add(new LeastRecentlyUsedCacheCleanup(entryFinder, fileAccessTimeJournal, removeUnusedEntriesAfterDays))
+                .add(new UnreferencedChunkCleanup(chunkStore, entryFinder))
+                .build()))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
@@ -93,7 +111,27 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target);
         FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX, deduplicate ? chunkStore : null);
+    }
+
+    private static class ExcludingChunksFilesFinder implements FilesFinder {
+        private final FilesFinder delegate;
+        private final File chunksDir;
+
+        ExcludingChunksFilesFinder(FilesFinder delegate, File chunksDir) {
+            this.delegate = delegate;
+            this.chunksDir = chunksDir;
+        }
+
+        @Override
+        public Iterable<File> find(File baseDir, final FileFilter filter) {
+            return delegate.find(baseDir, new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return filter.accept(file) && !file.equals(chunksDir);
+                }
+            });
+        }
     }
 
     private static void checkDirectory(File directory) {
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.cache.internal.AbstractCacheCleanup;
+import org.gradle.cache.internal.FilesFinder;
+import org.gradle.cache.internal.NonReservedFileFilter;
+import org.gradle.cache.internal.SingleDepthFilesFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Removes the chunks of a {@link ContentAddressedChunkStore} that are not referenced by any manifest.
+ *
+ * Runs after the manifests have been cleaned up, so a chunk is removed once the last entry using it has been removed.
+ * Does not remove any chunk when one of the manifests cannot be read.
+ */
+public class UnreferencedChunkCleanup extends AbstractCacheCleanup {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnreferencedChunkCleanup.class);
+
+    private final ContentAddressedChunkStore chunkStore;
+    private final FilesFinder manifestFinder;
+    private final Set<File> referencedChunks = new HashSet<File>();
+
+    public UnreferencedChunkCleanup(final ContentAddressedChunkStore chunkStore, FilesFinder manifestFinder) {
+        super(new FilesFinder() {
+            @Override
+            public Iterable<File> find(File baseDir, FileFilter filter) {
+                return new SingleDepthFilesFinder(2).find(chunkStore.getChunksDir(), filter);
+            }
+        });
+        this.chunkStore = chunkStore;
+        this.manifestFinder = manifestFinder;
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        if (!chunkStore.getChunksDir().isDirectory()) {
+            return;
+        }
+        referencedChunks.clear();
+        for (File manifest : manifestFinder.find(cleanableStore.getBaseDir(), new NonReservedFileFilter(cleanableStore.getReservedCacheFiles()))) {
+            if (manifest.isFile() && chunkStore.isManifest(manifest)) {
+                try {
+                    referencedChunks.addAll(chunkStore.readChunks(manifest));
+                } catch (IOException e) {
+                    // The chunks of the manifest cannot be told apart from unreferenced chunks, so keep all chunks until the next cleanup
+                    LOGGER.info("Could not read build cache manifest {}, not removing unreferenced chunks.", manifest, e);
+                    referencedChunks.clear();
+                    return;
+                }
+            }
+        }
+        try {
+            super.clean(cleanableStore, progressMonitor);
+        } finally {
+            referencedChunks.clear();
+        }
+    }
+
+    @Override
+    protected boolean shouldDelete(File file) {
+        return !referencedChunks.contains(file);
+    }
+
+    @Override
+    protected void handleDeletion(File file) {
+    }
+}
@@ -29,6 +29,7 @@ import org.gradle.caching.configuration.internal.DefaultBuildCacheServiceRegistr
 import org.gradle.caching.internal.FinalizeBuildCacheConfigurationBuildOperationType
 import org.gradle.caching.local.DirectoryBuildCache
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.testing.internal.util.Specification
 import org.gradle.util.Path
@@ -65,7 +66,8 @@ class BuildCacheControllerFactoryTest extends Specification {
             ONLINE,
             logStacktraces,
             emitDebugLogging,
-            TestUtil.instantiatorFactory().inject()
+            TestUtil.instantiatorFactory().inject(),
+            new DefaultExecutorFactory()
         )
         assert controllerType.isInstance(controller)
         controllerType.cast(controller)
@@ -21,8 +21,11 @@ import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.controller.service.AsyncStoreBuildCacheServiceHandle
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.operations.BuildCacheRemoteStoreQueueBuildOperationType
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
@@ -45,6 +48,7 @@ class DefaultBuildCacheControllerTest extends Specification {
     def remotePush = true
 
     BuildCacheService legacyLocal = null
+    AsyncStoreBuildCacheServiceHandle.Settings asyncRemoteStoreSettings = null
 
     def storeCommand = Stub(BuildCacheStoreCommand) {
         getKey() >> key
@@ -92,7 +96,8 @@ class DefaultBuildCacheControllerTest extends Specification {
             ),
             operations,
             tmpDir.file("dir"),
-            false, false
+            false, false,
+            asyncRemoteStoreSettings
         )
     }
 
@@ -122,6 +127,37 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.storeLocally(key, _)
     }
 
+    def "stores to remote in the background with #description"() {
+        given:
+        asyncRemoteStoreSettings = new AsyncStoreBuildCacheServiceHandle.Settings(new DefaultExecutorFactory(), memoryBytes, 1, 60)
+        def asyncController = getController()
+        def stored = null
+
+        when:
+        asyncController.store(storeCommand)
+        asyncController.close()
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            def output = new ByteArrayOutputStream()
+            writer.writeTo(output)
+            stored = output.toByteArray()
+        }
+        1 * local.storeLocally(key, _)
+        stored == [] as byte[]
+        (tmpDir.file("dir/build-cache-tmp").listFiles() ?: [] as File[]).findAll { it.name.endsWith(".spool") }.empty
+
+        and:
+        def result = operations.log.mostRecentResult(BuildCacheRemoteStoreQueueBuildOperationType)
+        result.storedEntries == 1
+        result.droppedEntries == 0
+
+        where:
+        description       | memoryBytes
+        "memory spool"    | 1024
+        "disk spool"      | -1
+    }
+
     def "does not store to local if local push is disabled"() {
         given:
         localPush = false
@@ -16,7 +16,10 @@
 
 package org.gradle.caching.local.internal
 
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
 import org.gradle.cache.PersistentCache
+import org.gradle.cache.internal.SingleDepthFilesFinder
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
@@ -132,4 +135,110 @@ class DirectoryBuildCacheServiceTest extends Specification {
         1 * fileAccessTracker.markAccessed(cachedFile)
         loaded
     }
+
+    def "stores entries sharing content as shared chunks"() {
+        given:
+        def chunkStore = new ContentAddressedChunkStore(cacheDir)
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", chunkStore)
+        def random = new Random(1)
+        def shared = new byte[512 * 1024]
+        random.nextBytes(shared)
+        def first = temporaryFolder.createFile("first")
+        first.withOutputStream { it.write(shared); it.write(("first" * 10).bytes) }
+        def second = temporaryFolder.createFile("second")
+        second.withOutputStream { it.write(shared); it.write(("second" * 10).bytes) }
+        def otherKey = Mock(BuildCacheKey) {
+            getHashCode() >> "5678efab"
+        }
+        def firstContent = first.bytes
+        def secondContent = second.bytes
+
+        when:
+        deduplicatingService.storeLocally(key, first)
+        def chunkCountAfterFirst = chunkFiles(chunkStore).size()
+        deduplicatingService.storeLocally(otherKey, second)
+        def chunkCountAfterSecond = chunkFiles(chunkStore).size()
+
+        then:
+        chunkStore.isManifest(new File(cacheDir, hashCode))
+        chunkCountAfterFirst > 1
+        chunkCountAfterSecond < 2 * chunkCountAfterFirst
+        chunkFiles(chunkStore).sum { it.length() } < firstContent.length + secondContent.length
+
+        when:
+        byte[] loaded = null
+        deduplicatingService.load(otherKey, new BuildCacheEntryReader() {
+            @Override
+            void readFrom(InputStream input) throws IOException {
+                loaded = input.bytes
+            }
+        })
+        byte[] loadedLocally = null
+        deduplicatingService.loadLocally(key, { file -> loadedLocally = file.bytes })
+
+        then:
+        loaded == secondContent
+        loadedLocally == firstContent
+    }
+
+    def "removes chunks no longer referenced by an entry"() {
+        given:
+        def chunkStore = new ContentAddressedChunkStore(cacheDir)
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", chunkStore)
+        def random = new Random(2)
+        def content = new byte[256 * 1024]
+        random.nextBytes(content)
+        def entry = temporaryFolder.createFile("entry")
+        entry.bytes = content
+        deduplicatingService.storeLocally(key, entry)
+        def cleanableStore = Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getReservedCacheFiles() >> []
+        }
+        def cleanup = new UnreferencedChunkCleanup(chunkStore, new SingleDepthFilesFinder(1))
+
+        when:
+        cleanup.clean(cleanableStore, Mock(CleanupProgressMonitor))
+
+        then:
+        !chunkFiles(chunkStore).empty
+
+        when:
+        new File(cacheDir, hashCode).delete()
+        cleanup.clean(cleanableStore, Mock(CleanupProgressMonitor))
+
+        then:
+        chunkFiles(chunkStore).empty
+    }
+
+    def "keeps all chunks when a manifest cannot be read"() {
+        given:
+        def chunkStore = new ContentAddressedChunkStore(cacheDir)
+        def deduplicatingService = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", chunkStore)
+        def random = new Random(3)
+        def content = new byte[256 * 1024]
+        random.nextBytes(content)
+        def entry = temporaryFolder.createFile("entry")
+        entry.bytes = content
+        deduplicatingService.storeLocally(key, entry)
+        def manifest = new File(cacheDir, hashCode)
+        def chunks = chunkFiles(chunkStore)
+        def cleanableStore = Stub(CleanableStore) {
+            getBaseDir() >> cacheDir
+            getReservedCacheFiles() >> []
+        }
+        def cleanup = new UnreferencedChunkCleanup(chunkStore, new SingleDepthFilesFinder(1))
+
+        when:
+        // Keep the header of the manifest only, so that its chunks cannot be read
+        manifest.bytes = Arrays.copyOf(manifest.bytes, 8)
+        cleanup.clean(cleanableStore, Mock(CleanupProgressMonitor))
+
+        then:
+        chunkFiles(chunkStore) as Set == chunks as Set
+    }
+
+    private static List<File> chunkFiles(ContentAddressedChunkStore chunkStore) {
+        new SingleDepthFilesFinder(2).find(chunkStore.chunksDir, { true }).toList()
+    }
 }
@@ -41,12 +41,21 @@ public class CachingFileHasher implements FileHasher {
     private final FileTimeStampInspector timestampInspector;
 
     public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, false);
+    }
+
+    /**
+     * @param memoryMapped whether to keep the hashes in a {@link MappedFileHashCache} rather than in an indexed cache of the store.
+     */
+    public CachingFileHasher(FileHasher delegate, CrossBuildFileHashCache store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem, boolean memoryMapped) {
         this.delegate = delegate;
         this.fileSystem = fileSystem;
-        this.cache = store.createCache(
-            PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
-            400000,
-            true);
+        this.cache = memoryMapped
+            ? store.createMappedFileHashCache(cacheName)
+            : store.createCache(
+                PersistentIndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
+                400000,
+                true);
         this.stringInterner = stringInterner;
         this.timestampInspector = timestampInspector;
     }
@@ -115,6 +124,14 @@ public class CachingFileHasher implements FileHasher {
         public HashCode getHash() {
             return hash;
         }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getLength() {
+            return length;
+        }
     }
 
     private static class FileInfoSerializer extends AbstractSerializer<FileInfo> {
@@ -23,17 +23,22 @@ import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.internal.concurrent.CompositeStoppable;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable {
     public static final String FILE_HASHES_CACHE_KEY = "fileHashes";
+    private static final int MAPPED_CACHE_CAPACITY = 1 << 20;
 
     private final PersistentCache cache;
+    private final List<MappedFileHashCache> mappedCaches = new CopyOnWriteArrayList<MappedFileHashCache>();
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
 
     public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
@@ -51,8 +56,17 @@ public class CrossBuildFileHashCache implements Closeable {
         );
     }
 
+    /**
+     * Creates a file hash cache in the directory of this store which several processes can use concurrently without locking.
+     */
+    public MappedFileHashCache createMappedFileHashCache(String cacheName) {
+        MappedFileHashCache mappedCache = new MappedFileHashCache(new File(cache.getBaseDir(), cacheName + ".mapped"), MAPPED_CACHE_CAPACITY);
+        mappedCaches.add(mappedCache);
+        return mappedCache;
+    }
+
     @Override
     public void close() {
-        cache.close();
+        CompositeStoppable.stoppable(mappedCaches).add(cache).stop();
     }
 }
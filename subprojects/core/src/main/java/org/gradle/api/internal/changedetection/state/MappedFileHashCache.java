@@ -0,0 +1,279 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Transformer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * A file hash cache backed by a memory-mapped, fixed size, open-addressing hash table, which several processes can read and write without locking.
+ *
+ * Entries are keyed by the hash of the absolute path of the file. Each slot carries a stamp computed from its content,
+ * which readers recompute to detect slots that are being written concurrently. Such slots are treated as missing,
+ * so the worst outcome of a race is that a file is hashed again. When all the candidate slots of a key are taken, an arbitrary one is evicted.
+ */
+public class MappedFileHashCache implements PersistentIndexedCache<String, FileInfo>, Closeable {
+    private static final long MAGIC = 0x4752444c46485348L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 64;
+    private static final int MAX_PROBES = 8;
+    private static final int MAX_HASH_LENGTH = 16;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    // Slot layout
+    private static final int STAMP = 0;
+    private static final int KEY_HIGH = 8;
+    private static final int KEY_LOW = 16;
+    private static final int LENGTH = 24;
+    private static final int TIMESTAMP = 32;
+    private static final int HASH_LENGTH = 40;
+    private static final int HASH = 41;
+
+    private final File file;
+    private final int capacity;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * @param capacity the number of slots, must be a power of two.
+     */
+    public MappedFileHashCache(File file, int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be a power of two not greater than " + MAX_CAPACITY + ": " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        try {
+            file.getParentFile().mkdirs();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            FileChannel channel = randomAccessFile.getChannel();
+            // Only hold a lock while checking the header, so that processes agree on the format of the file
+            FileLock lock = channel.lock();
+            try {
+                // Never shrink the file: other processes may have mapped more of it, and would crash accessing the pages beyond its end
+                if (channel.size() < size) {
+                    randomAccessFile.setLength(size);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (!hasValidHeader()) {
+                    // Discard the entries in place. Processes still using another format of the file ignore them, as their stamps do not match
+                    for (int slot = 0; slot < capacity; slot++) {
+                        buffer.putLong(HEADER_SIZE + slot * SLOT_SIZE + STAMP, 0);
+                    }
+                    buffer.putLong(0, MAGIC);
+                    buffer.putInt(8, FORMAT_VERSION);
+                    buffer.putInt(12, capacity);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open file hash cache " + file, e);
+        }
+    }
+
+    private boolean hasValidHeader() {
+        return buffer.getLong(0) == MAGIC && buffer.getInt(8) == FORMAT_VERSION && buffer.getInt(12) == capacity;
+    }
+
+    @Nullable
+    @Override
+    public FileInfo get(String key) {
+        HashCode pathHash = Hashing.hashString(key);
+        long keyHigh = keyHigh(pathHash);
+        long keyLow = keyLow(pathHash);
+        int home = home(keyHigh, keyLow);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            FileInfo info = read(slotOffset(home, probe), keyHigh, keyLow);
+            if (info != null) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public FileInfo get(String key, Transformer<? extends FileInfo, ? super String> producer) {
+        FileInfo info = get(key);
+        if (info == null) {
+            info = producer.transform(key);
+            put(key, info);
+        }
+        return info;
+    }
+
+    @Override
+    public void put(String key, FileInfo value) {
+        byte[] hash = value.getHash().toByteArray();
+        if (hash.length > MAX_HASH_LENGTH) {
+            return;
+        }
+        HashCode pathHash = Hashing.hashString(key);
+        long keyHigh = keyHigh(pathHash);
+        long keyLow = keyLow(pathHash);
+        int home = home(keyHigh, keyLow);
+        int target = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = slotOffset(home, probe);
+            if (hasKey(offset, keyHigh, keyLow)) {
+                target = offset;
+                break;
+            }
+            if (target < 0 && !isValid(offset)) {
+                target = offset;
+            }
+        }
+        if (target < 0) {
+            target = slotOffset(home, 0);
+        }
+        // Invalidate the slot first, so readers never take the old stamp for the new content
+        buffer.putLong(target + STAMP, 0);
+        buffer.putLong(target + KEY_HIGH, keyHigh);
+        buffer.putLong(target + KEY_LOW, keyLow);
+        buffer.putLong(target + LENGTH, value.getLength());
+        buffer.putLong(target + TIMESTAMP, value.getTimestamp());
+        buffer.put(target + HASH_LENGTH, (byte) hash.length);
+        for (int i = 0; i < hash.length; i++) {
+            buffer.put(target + HASH + i, hash[i]);
+        }
+        buffer.putLong(target + STAMP, stamp(keyHigh, keyLow, value.getLength(), value.getTimestamp(), hash));
+    }
+
+    @Override
+    public void remove(String key) {
+        HashCode pathHash = Hashing.hashString(key);
+        long keyHigh = keyHigh(pathHash);
+        long keyLow = keyLow(pathHash);
+        int home = home(keyHigh, keyLow);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = slotOffset(home, probe);
+            if (hasKey(offset, keyHigh, keyLow)) {
+                buffer.putLong(offset + STAMP, 0);
+            }
+        }
+    }
+
+    @Nullable
+    private FileInfo read(int offset, long keyHigh, long keyLow) {
+        long stamp = buffer.getLong(offset + STAMP);
+        if (stamp == 0 || buffer.getLong(offset + KEY_HIGH) != keyHigh || buffer.getLong(offset + KEY_LOW) != keyLow) {
+            return null;
+        }
+        long length = buffer.getLong(offset + LENGTH);
+        long timestamp = buffer.getLong(offset + TIMESTAMP);
+        byte[] hash = readHash(offset);
+        if (hash == null || stamp != stamp(keyHigh, keyLow, length, timestamp, hash)) {
+            // Concurrently written or corrupt
+            return null;
+        }
+        return new FileInfo(HashCode.fromBytes(hash), length, timestamp);
+    }
+
+    private boolean hasKey(int offset, long keyHigh, long keyLow) {
+        return read(offset, keyHigh, keyLow) != null;
+    }
+
+    private boolean isValid(int offset) {
+        long stamp = buffer.getLong(offset + STAMP);
+        if (stamp == 0) {
+            return false;
+        }
+        byte[] hash = readHash(offset);
+        return hash != null && stamp == stamp(buffer.getLong(offset + KEY_HIGH), buffer.getLong(offset + KEY_LOW), buffer.getLong(offset + LENGTH), buffer.getLong(offset + TIMESTAMP), hash);
+    }
+
+    @Nullable
+    private byte[] readHash(int offset) {
+        int hashLength = buffer.get(offset + HASH_LENGTH);
+        if (hashLength <= 0 || hashLength > MAX_HASH_LENGTH) {
+            return null;
+        }
+        byte[] hash = new byte[hashLength];
+        for (int i = 0; i < hashLength; i++) {
+            hash[i] = buffer.get(offset + HASH + i);
+        }
+        return hash;
+    }
+
+    private int home(long keyHigh, long keyLow) {
+        return (int) (keyHigh ^ keyLow) & (capacity - 1);
+    }
+
+    private int slotOffset(int home, int probe) {
+        return HEADER_SIZE + ((home + probe) & (capacity - 1)) * SLOT_SIZE;
+    }
+
+    private static long keyHigh(HashCode pathHash) {
+        return ByteBuffer.wrap(pathHash.toByteArray()).getLong(0);
+    }
+
+    private static long keyLow(HashCode pathHash) {
+        return ByteBuffer.wrap(pathHash.toByteArray()).getLong(8);
+    }
+
+    private static long stamp(long keyHigh, long keyLow, long length, long timestamp, byte[] hash) {
+        long stamp = mix(keyHigh);
+        stamp = mix(stamp ^ keyLow);
+        stamp = mix(stamp ^ length);
+        stamp = mix(stamp ^ timestamp);
+        for (int i = 0; i < hash.length; i++) {
+            stamp = mix(stamp ^ (hash[i] & 0xff) ^ ((long) i << 8));
+        }
+        // Zero marks an empty slot
+        return stamp | 1;
+    }
+
+    private static long mix(long value) {
+        // Finalizer of MurmurHash3
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Closes the file. The mapping of the file is only released once this cache has been garbage collected, so the file cannot be deleted on Windows until then.
+     * The cache must not be used once closed.
+     */
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    @Override
+    public String toString() {
+        return "memory-mapped file hash cache (" + file + ")";
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.execution.OutputChangeListener;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemMirror;
+import org.gradle.internal.snapshot.WellKnownFileLocations;
+import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link FileSystemMirror} that keeps its state across builds, for as long as a file watcher reports changes for all the locations it knows about.
+ *
+ * Only the roots of the builds that are run are watched: the closest directory with a settings file above a location, or else the closest one with a build file.
+ * Such a root is registered with the watcher before a location in it is first snapshotted, so that any later change produces an event.
+ * Locations outside of any build root are not watched, and are discarded at the start of every build.
+ *
+ * Events are collected while the daemon is idle or a build is running, and the affected locations are discarded at the start of the next build.
+ * Events arrive asynchronously, so before trusting the retained state a probe file is written to the {@code .gradle} directory of each watched root,
+ * and the build waits for the events of the probes. As each root reports its events in order, all the changes made before the build started have been collected by then.
+ * When the probes are not reported in time, the watcher overflows or fails, all state is discarded and the next build rescans the file system.
+ */
+public class WatchingFileSystemMirror implements FileSystemMirror, OutputChangeListener, RootBuildLifecycleListener, FileWatcherListener, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchingFileSystemMirror.class);
+    private static final String PROBE_FILE_NAME = ".gradle/file-system-watch.probe";
+    private static final long DEFAULT_PROBE_TIMEOUT_MILLIS = 1000;
+    private static final String NO_BUILD_ROOT = "";
+
+    private final DefaultFileSystemMirror delegate;
+    private final WellKnownFileLocations wellKnownFileLocations;
+    private final FileWatcherFactory fileWatcherFactory;
+    private final long probeTimeoutMillis;
+    private final Object lock = new Object();
+    // Absolute paths of the build roots registered with the current watcher
+    private final Set<String> watchedRoots = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Maps each directory looked up to the absolute path of its build root, or to NO_BUILD_ROOT
+    private final Map<String, String> buildRoots = new ConcurrentHashMap<String, String>();
+    // Events are delivered while holding the watcher's lock, so they are collected without taking our own lock
+    private final Queue<String> changedPaths = new ConcurrentLinkedQueue<String>();
+    private final Set<String> unwatchedPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicBoolean invalidateAll = new AtomicBoolean();
+    // Protected by itself. The absolute paths of the probe files whose events have not been reported yet
+    private final Set<String> pendingProbes = new HashSet<String>();
+    private FileWatcher watcher;
+
+    public WatchingFileSystemMirror(DefaultFileSystemMirror delegate, WellKnownFileLocations wellKnownFileLocations, FileWatcherFactory fileWatcherFactory) {
+        this(delegate, wellKnownFileLocations, fileWatcherFactory, DEFAULT_PROBE_TIMEOUT_MILLIS);
+    }
+
+    WatchingFileSystemMirror(DefaultFileSystemMirror delegate, WellKnownFileLocations wellKnownFileLocations, FileWatcherFactory fileWatcherFactory, long probeTimeoutMillis) {
+        this.delegate = delegate;
+        this.wellKnownFileLocations = wellKnownFileLocations;
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+    }
+
+    /**
+     * Whether the JDK watches the file system natively on this platform. Elsewhere, as on macOS, it polls every few seconds, so the changes made just before a build
+     * would only be reported well after the build has started.
+     */
+    public static boolean isWatchingNative() {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            try {
+                return !watchService.getClass().getSimpleName().equals("PollingWatchService");
+            } finally {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not create a watch service.", e);
+            return false;
+        }
+    }
+
+    @Nullable
+    @Override
+    public FileSystemLocationSnapshot getSnapshot(String absolutePath) {
+        FileSystemLocationSnapshot snapshot = delegate.getSnapshot(absolutePath);
+        if (snapshot == null) {
+            // The location is about to be snapshotted, make sure we hear about changes to it from now on
+            maybeWatch(absolutePath);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void putSnapshot(FileSystemLocationSnapshot file) {
+        delegate.putSnapshot(file);
+    }
+
+    @Nullable
+    @Override
+    public FileMetadataSnapshot getMetadata(String absolutePath) {
+        FileMetadataSnapshot metadata = delegate.getMetadata(absolutePath);
+        if (metadata == null) {
+            maybeWatch(absolutePath);
+        }
+        return metadata;
+    }
+
+    @Override
+    public void putMetadata(String absolutePath, FileMetadataSnapshot stat) {
+        delegate.putMetadata(absolutePath, stat);
+    }
+
+    @Override
+    public void beforeOutputChange() {
+        delegate.beforeOutputChange();
+    }
+
+    @Override
+    public void beforeOutputChange(Iterable<String> affectedOutputPaths) {
+        delegate.beforeOutputChange(affectedOutputPaths);
+    }
+
+    @Override
+    public void afterStart() {
+        boolean rescan;
+        List<String> roots;
+        synchronized (lock) {
+            rescan = invalidateAll.getAndSet(false) || watcher == null || !watcher.isRunning();
+            if (rescan) {
+                stopWatcher();
+                watcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                    @Override
+                    public void execute(Throwable failure) {
+                        LOGGER.debug("File watching failed, discarding retained file system state.", failure);
+                        invalidateAll.set(true);
+                    }
+                }, this);
+            }
+            roots = new ArrayList<String>(watchedRoots);
+        }
+        buildRoots.clear();
+        if (!rescan && !awaitProbes(roots)) {
+            LOGGER.debug("File watcher did not report the changes made before the build in time, discarding retained file system state.");
+            rescan = true;
+        }
+        // Events may have been lost while waiting for the probes
+        rescan |= invalidateAll.getAndSet(false);
+
+        List<String> changes = new ArrayList<String>();
+        for (String changedPath = changedPaths.poll(); changedPath != null; changedPath = changedPaths.poll()) {
+            changes.add(changedPath);
+        }
+        for (Iterator<String> iterator = unwatchedPaths.iterator(); iterator.hasNext();) {
+            changes.add(iterator.next());
+            iterator.remove();
+        }
+        if (rescan) {
+            delegate.beforeBuildFinished();
+        } else {
+            LOGGER.debug("Invalidating {} locations changed since the last build or not watched.", changes.size());
+            delegate.invalidate(changes);
+        }
+    }
+
+    @Override
+    public void beforeComplete() {
+        delegate.beforeBuildFinishedRetainingState();
+    }
+
+    @Override
+    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+        if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+            // Events have been lost, we can't tell what changed
+            invalidateAll.set(true);
+            return;
+        }
+        String path = event.getFile().getAbsolutePath();
+        synchronized (pendingProbes) {
+            if (pendingProbes.remove(path)) {
+                if (pendingProbes.isEmpty()) {
+                    pendingProbes.notifyAll();
+                }
+                return;
+            }
+        }
+        changedPaths.add(path);
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            stopWatcher();
+        }
+    }
+
+    /**
+     * Writes the given file, to have its change reported by the watcher.
+     */
+    protected void writeProbe(File probe) throws IOException {
+        Files.write(probe.toPath(), Long.toString(System.nanoTime()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a probe file to each of the given roots, and waits for the watcher to report them all.
+     */
+    private boolean awaitProbes(List<String> roots) {
+        List<File> probes = new ArrayList<File>(roots.size());
+        for (String root : roots) {
+            File probe = new File(root, PROBE_FILE_NAME);
+            if (!probe.getParentFile().isDirectory()) {
+                // Nothing we can write without changing the build
+                return false;
+            }
+            probes.add(probe);
+        }
+        synchronized (pendingProbes) {
+            pendingProbes.clear();
+            for (File probe : probes) {
+                pendingProbes.add(probe.getAbsolutePath());
+            }
+        }
+        try {
+            for (File probe : probes) {
+                writeProbe(probe);
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(probeTimeoutMillis);
+            synchronized (pendingProbes) {
+                while (!pendingProbes.isEmpty()) {
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        return false;
+                    }
+                    pendingProbes.wait(remainingMillis);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Could not write file system watch probe.", e);
+            return false;
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            synchronized (pendingProbes) {
+                pendingProbes.clear();
+            }
+        }
+    }
+
+    private void stopWatcher() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+        watchedRoots.clear();
+    }
+
+    private void maybeWatch(String absolutePath) {
+        if (wellKnownFileLocations.isImmutable(absolutePath) || isWatched(absolutePath)) {
+            return;
+        }
+        File root = findBuildRoot(new File(absolutePath));
+        if (root == null) {
+            // Not part of a build, so changes to it are not watched for. Discard it at the start of the next build
+            unwatchedPaths.add(absolutePath);
+            return;
+        }
+        synchronized (lock) {
+            if (watcher == null || !watchedRoots.add(root.getAbsolutePath())) {
+                return;
+            }
+            try {
+                watcher.watch(FileSystemSubset.builder().add(root).build());
+            } catch (IOException e) {
+                LOGGER.debug("Could not watch " + root + ", discarding retained file system state.", e);
+                invalidateAll.set(true);
+            }
+        }
+    }
+
+    /**
+     * Finds the root of the build the given location belongs to: the closest directory containing it that has a settings file, or else the closest one that has a build file.
+     */
+    @Nullable
+    private File findBuildRoot(File location) {
+        File directory = location.getParentFile();
+        if (directory == null) {
+            return null;
+        }
+        String cached = buildRoots.get(directory.getPath());
+        if (cached == null) {
+            File root = null;
+            File projectDir = null;
+            for (File candidate = location; candidate != null; candidate = candidate.getParentFile()) {
+                if (hasFile(candidate, "settings.gradle")) {
+                    root = candidate;
+                    break;
+                }
+                if (projectDir == null && hasFile(candidate, "build.gradle")) {
+                    projectDir = candidate;
+                }
+            }
+            if (root == null) {
+                root = projectDir;
+            }
+            cached = root == null ? NO_BUILD_ROOT : root.getAbsolutePath();
+            buildRoots.put(directory.getPath(), cached);
+        }
+        return cached.equals(NO_BUILD_ROOT) ? null : new File(cached);
+    }
+
+    private static boolean hasFile(File directory, String scriptName) {
+        return new File(directory, scriptName).isFile() || new File(directory, scriptName + ".kts").isFile();
+    }
+
+    private boolean isWatched(String absolutePath) {
+        for (File file = new File(absolutePath); file != null; file = file.getParentFile()) {
+            if (watchedRoots.contains(file.getPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
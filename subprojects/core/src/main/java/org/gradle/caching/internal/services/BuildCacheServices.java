@@ -34,6 +34,7 @@ import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.initialization.buildsrc.BuildSourceBuilder;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -42,6 +43,7 @@ import org.gradle.internal.remote.internal.inet.InetAddressFactory;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.snapshot.FileSystemMirror;
+import org.gradle.internal.snapshot.impl.FileHashingExecutor;
 import org.gradle.internal.time.Clock;
 import org.gradle.util.GradleVersion;
 import org.gradle.util.Path;
@@ -57,8 +59,17 @@ public class BuildCacheServices {
 
     private static final Path ROOT_BUILD_SRC_PATH = Path.path(":" + BuildSourceBuilder.BUILD_SRC);
 
-    BuildCacheEntryPacker createResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipBuildCacheEntryPacker(new TarBuildCacheEntryPacker(fileSystem, fileHasher, stringInterner));
+    /**
+     * How build cache entries are compressed when stored, one of 'default', 'fast' or 'none'.
+     */
+    public static final String COMPRESSION_PROPERTY = "org.gradle.internal.build.cache.compression";
+
+    BuildCacheEntryPacker createResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, FileHashingExecutor fileHashingExecutor) {
+        String compression = System.getProperty(COMPRESSION_PROPERTY);
+        return new GZipBuildCacheEntryPacker(
+            new TarBuildCacheEntryPacker(fileSystem, fileHasher, stringInterner, fileHashingExecutor),
+            compression == null ? GZipBuildCacheEntryPacker.Compression.DEFAULT : GZipBuildCacheEntryPacker.Compression.forName(compression)
+        );
     }
 
     OriginMetadataFactory createOriginMetadataFactory(
@@ -131,7 +142,8 @@ public class BuildCacheServices {
             remoteAccessMode,
             logStackTraces,
             emitDebugLogging,
-            instantiatorFactory.inject(serviceRegistry)
+            instantiatorFactory.inject(serviceRegistry),
+            serviceRegistry.get(ExecutorFactory.class)
         );
     }
 
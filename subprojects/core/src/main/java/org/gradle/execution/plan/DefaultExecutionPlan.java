@@ -31,13 +31,13 @@ import org.gradle.api.GradleException;
 import org.gradle.api.NonNullApi;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
-import org.gradle.api.Transformer;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.api.internal.tasks.TaskPropertyUtils;
 import org.gradle.api.internal.tasks.properties.FileParameterUtils;
 import org.gradle.api.internal.tasks.properties.InputFilePropertyType;
@@ -60,9 +60,10 @@ import org.gradle.internal.resources.ResourceDeadlockException;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
 import org.gradle.internal.service.ServiceRegistry;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.internal.work.WorkerLeaseService;
-import org.gradle.util.CollectionUtils;
 import org.gradle.util.Path;
 
 import javax.annotation.Nullable;
@@ -74,6 +75,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -104,16 +106,23 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
     private final Map<Pair<Node, Node>, Boolean> reachableCache = Maps.newHashMap();
     private final Set<Node> dependenciesCompleteCache = Sets.newHashSet();
+    private final Map<Node, Timer> runningNodeTimers = Maps.newIdentityHashMap();
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final TaskDurationHistory durationHistory;
 
     private boolean buildCancelled;
 
     public DefaultExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver) {
+        this(workerLeaseService, gradle, taskNodeFactory, dependencyResolver, new TaskDurationHistory());
+    }
+
+    public DefaultExecutionPlan(WorkerLeaseService workerLeaseService, GradleInternal gradle, TaskNodeFactory taskNodeFactory, TaskDependencyResolver dependencyResolver, TaskDurationHistory durationHistory) {
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
         this.taskNodeFactory = taskNodeFactory;
         this.dependencyResolver = dependencyResolver;
+        this.durationHistory = durationHistory;
     }
 
     @Override
@@ -207,24 +216,24 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     }
 
     private void resolveNodesInUnknownState(Set<Node> nodesInUnknownState) {
-        List<Node> queue = Lists.newArrayList(nodesInUnknownState);
+        Deque<Node> queue = new ArrayDeque<Node>(nodesInUnknownState);
         Set<Node> visiting = Sets.newHashSet();
 
         while (!queue.isEmpty()) {
-            Node node = queue.get(0);
+            Node node = queue.getFirst();
             if (node.isInKnownState()) {
-                queue.remove(0);
+                queue.removeFirst();
                 continue;
             }
 
             if (visiting.add(node)) {
                 for (Node hardPredecessor : node.getDependencyPredecessors()) {
                     if (!visiting.contains(hardPredecessor)) {
-                        queue.add(0, hardPredecessor);
+                        queue.addFirst(hardPredecessor);
                     }
                 }
             } else {
-                queue.remove(0);
+                queue.removeFirst();
                 visiting.remove(node);
                 node.mustNotRun();
                 for (Node predecessor : node.getDependencyPredecessors()) {
@@ -257,6 +266,8 @@ public class DefaultExecutionPlan implements ExecutionPlan {
                 return new NodeInVisitingSegment(taskNode, index++);
             }
         }));
+        // The head of the queue is the end of the list, so that nodes are added and removed without shifting the rest of the queue
+        Collections.reverse(nodeQueue);
         int visitingSegmentCounter = nodeQueue.size();
 
         HashMultimap<Node, Integer> visitingNodes = HashMultimap.create();
@@ -265,12 +276,12 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         Map<Node, Integer> planBeforeVisiting = Maps.newHashMap();
 
         while (!nodeQueue.isEmpty()) {
-            NodeInVisitingSegment nodeInVisitingSegment = nodeQueue.get(0);
+            NodeInVisitingSegment nodeInVisitingSegment = nodeQueue.get(nodeQueue.size() - 1);
             int currentSegment = nodeInVisitingSegment.visitingSegment;
             Node node = nodeInVisitingSegment.node;
 
             if (node.isIncludeInGraph() || nodeMapping.contains(node)) {
-                nodeQueue.remove(0);
+                nodeQueue.remove(nodeQueue.size() - 1);
                 visitingNodes.remove(node, currentSegment);
                 maybeRemoveProcessedShouldRunAfterEdge(walkedShouldRunAfterEdges, node);
                 continue;
@@ -303,12 +314,12 @@ public class DefaultExecutionPlan implements ExecutionPlan {
                             onOrderingCycle(successor, node);
                         }
                     }
-                    nodeQueue.add(0, new NodeInVisitingSegment(successor, currentSegment));
+                    nodeQueue.add(new NodeInVisitingSegment(successor, currentSegment));
                 }
                 path.push(node);
             } else {
                 // Have visited this node's dependencies - add it to the end of the plan
-                nodeQueue.remove(0);
+                nodeQueue.remove(nodeQueue.size() - 1);
                 maybeRemoveProcessedShouldRunAfterEdge(walkedShouldRunAfterEdges, node);
                 visitingNodes.remove(node, currentSegment);
                 path.pop();
@@ -335,6 +346,55 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         }
         executionQueue.clear();
         Iterables.addAll(executionQueue, nodeMapping);
+        if (gradle.getStartParameter().isParallelProjectExecutionEnabled() && !durationHistory.isEmpty()) {
+            prioritizeCriticalPath();
+        }
+    }
+
+    /**
+     * Orders the execution queue so that the nodes heading the longest remaining chains of work, based on the durations of previous executions, are selected first.
+     *
+     * Every ordering edge, including should run after, counts as part of a chain. A node therefore never has a shorter chain than a node ordered after it,
+     * and the stable sort keeps the plan order between them.
+     */
+    private void prioritizeCriticalPath() {
+        List<Node> prioritized = new ArrayList<Node>(executionQueue);
+        final Map<Node, Long> remainingWork = Maps.newIdentityHashMap();
+        Map<Node, Long> longestFollowingWork = Maps.newIdentityHashMap();
+        for (int i = prioritized.size() - 1; i >= 0; i--) {
+            Node node = prioritized.get(i);
+            Long following = longestFollowingWork.get(node);
+            long remaining = expectedDuration(node) + (following == null ? 0 : following);
+            remainingWork.put(node, remaining);
+            for (Node successor : orderingSuccessorsOf(node)) {
+                Long current = longestFollowingWork.get(successor);
+                if (current == null || current < remaining) {
+                    longestFollowingWork.put(successor, remaining);
+                }
+            }
+        }
+        Collections.sort(prioritized, new Comparator<Node>() {
+            @Override
+            public int compare(Node o1, Node o2) {
+                return Long.compare(remainingWork.get(o2), remainingWork.get(o1));
+            }
+        });
+        executionQueue.clear();
+        executionQueue.addAll(prioritized);
+    }
+
+    private long expectedDuration(Node node) {
+        if (node instanceof LocalTaskNode) {
+            return durationHistory.getDuration(((LocalTaskNode) node).getTask());
+        }
+        return 0;
+    }
+
+    private static Iterable<Node> orderingSuccessorsOf(Node node) {
+        if (node instanceof TaskNode) {
+            return Iterables.concat(node.getAllSuccessors(), ((TaskNode) node).getShouldSuccessors());
+        }
+        return node.getAllSuccessors();
     }
 
     private MutationInfo getOrCreateMutationsOf(Node node) {
@@ -361,10 +421,10 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private void restoreQueue(List<NodeInVisitingSegment> nodeQueue, HashMultimap<Node, Integer> visitingNodes, GraphEdge toBeRemoved) {
         NodeInVisitingSegment nextInQueue = null;
         while (nextInQueue == null || !toBeRemoved.from.equals(nextInQueue.node)) {
-            nextInQueue = nodeQueue.get(0);
+            nextInQueue = nodeQueue.get(nodeQueue.size() - 1);
             visitingNodes.remove(nextInQueue.node, nextInQueue.visitingSegment);
             if (!toBeRemoved.from.equals(nextInQueue.node)) {
-                nodeQueue.remove(0);
+                nodeQueue.remove(nodeQueue.size() - 1);
             }
         }
     }
@@ -410,25 +470,22 @@ public class DefaultExecutionPlan implements ExecutionPlan {
      * Given a finalizer task, determine where in the current node queue that it should be inserted.
      * The finalizer should be inserted after any of it's preceding tasks.
      */
-    private int finalizerTaskPosition(Node finalizer, final List<NodeInVisitingSegment> nodeQueue) {
+    private int finalizerTaskPosition(Node finalizer, List<NodeInVisitingSegment> nodeQueue) {
         if (nodeQueue.size() == 0) {
             return 0;
         }
 
+        // Insert the finalizer behind the preceding node that is furthest from the head of the queue, looking only at the first occurrence of each node
         Set<Node> precedingTasks = getAllPrecedingNodes(finalizer);
-        Set<Integer> precedingTaskIndices = CollectionUtils.collect(precedingTasks, new Transformer<Integer, Node>() {
-            @Override
-            public Integer transform(final Node dependsOnTask) {
-                return Iterables.indexOf(nodeQueue, new Predicate<NodeInVisitingSegment>() {
-                    @Override
-                    @SuppressWarnings("NullableProblems")
-                    public boolean apply(NodeInVisitingSegment nodeInVisitingSegment) {
-                        return nodeInVisitingSegment.node.equals(dependsOnTask);
-                    }
-                });
+        Set<Node> seen = Sets.newHashSet();
+        int position = nodeQueue.size();
+        for (int i = nodeQueue.size() - 1; i >= 0; i--) {
+            Node node = nodeQueue.get(i).node;
+            if (precedingTasks.contains(node) && seen.add(node)) {
+                position = i;
             }
-        });
-        return Collections.max(precedingTaskIndices) + 1;
+        }
+        return position;
     }
 
     private Set<Node> getAllPrecedingNodes(Node finalizer) {
@@ -507,6 +564,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         reachableCache.clear();
         dependenciesCompleteCache.clear();
         runningNodes.clear();
+        runningNodeTimers.clear();
     }
 
     @Override
@@ -848,10 +906,21 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private void recordNodeStarted(Node node) {
         runningNodes.add(node);
+        if (node instanceof LocalTaskNode) {
+            runningNodeTimers.put(node, Time.startTimer());
+        }
     }
 
     private void recordNodeCompleted(Node node) {
         runningNodes.remove(node);
+        Timer timer = runningNodeTimers.remove(node);
+        if (timer != null && node.isSuccessful()) {
+            TaskInternal task = ((LocalTaskNode) node).getTask();
+            // Up-to-date, skipped and cached tasks take no time, and say nothing about how long the task takes when it runs
+            if (task.getState().getOutcome() == TaskExecutionOutcome.EXECUTED) {
+                durationHistory.recordDuration(task, timer.getElapsedMillis());
+            }
+        }
         MutationInfo mutations = this.mutations.get(node);
         for (Node producer : mutations.producingNodes) {
             MutationInfo producerMutations = this.mutations.get(producer);
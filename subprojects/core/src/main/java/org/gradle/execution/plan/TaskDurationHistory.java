@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers how long tasks took to execute in previous builds run by this process, so that the execution plan can start the longest chains of work first.
+ */
+public class TaskDurationHistory {
+    private static final int MAX_ENTRIES = 100000;
+
+    private final Map<String, Long> durations = new ConcurrentHashMap<String, Long>();
+
+    public boolean isEmpty() {
+        return durations.isEmpty();
+    }
+
+    /**
+     * Returns the expected duration of the given task in milliseconds, or 0 when the task has not been executed before.
+     */
+    public long getDuration(Task task) {
+        Long duration = durations.get(keyOf(task));
+        return duration == null ? 0 : duration;
+    }
+
+    public void recordDuration(Task task, long durationMillis) {
+        if (durations.size() >= MAX_ENTRIES) {
+            durations.clear();
+        }
+        String key = keyOf(task);
+        Long previous = durations.get(key);
+        // Smooth out the odd slow or fast execution
+        durations.put(key, previous == null ? durationMillis : (previous + durationMillis) / 2);
+    }
+
+    private static String keyOf(Task task) {
+        // The same daemon can run many builds, so use the location of the project rather than its path
+        return task.getProject().getProjectDir().getAbsolutePath() + Project.PATH_SEPARATOR + task.getName();
+    }
+}
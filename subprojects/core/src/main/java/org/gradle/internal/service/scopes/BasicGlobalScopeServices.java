@@ -30,6 +30,7 @@ import org.gradle.cache.internal.DefaultFileLockManager;
 import org.gradle.cache.internal.DefaultProcessMetaDataProvider;
 import org.gradle.cache.internal.locklistener.DefaultFileLockContentionHandler;
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler;
+import org.gradle.cache.internal.locklistener.MappedLockSignalWatcher;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
@@ -52,11 +53,21 @@ import org.gradle.process.internal.ExecHandleFactory;
  * {@link GlobalScopeServices}.
  */
 public class BasicGlobalScopeServices {
-    FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler) {
+    /**
+     * When set to true, processes on the same machine ask each other to release file locks, and find out when they have been released, through a memory-mapped file next to each lock file.
+     */
+    public static final String MAPPED_LOCK_SIGNAL = "org.gradle.internal.mapped.lock.signal";
+
+    FileLockManager createFileLockManager(ProcessEnvironment processEnvironment, FileLockContentionHandler fileLockContentionHandler, MappedLockSignalWatcher mappedLockSignalWatcher) {
         return new DefaultFileLockManager(
             new DefaultProcessMetaDataProvider(
                 processEnvironment),
-            fileLockContentionHandler);
+            fileLockContentionHandler,
+            Boolean.getBoolean(MAPPED_LOCK_SIGNAL) ? mappedLockSignalWatcher : null);
+    }
+
+    MappedLockSignalWatcher createMappedLockSignalWatcher(ExecutorFactory executorFactory) {
+        return new MappedLockSignalWatcher(executorFactory);
     }
 
 
@@ -55,6 +55,7 @@ import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.OutputFiles;
 import org.gradle.api.tasks.options.OptionValues;
 import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.execution.plan.TaskDurationHistory;
 import org.gradle.internal.instantiation.InstantiationScheme;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 
@@ -79,6 +80,10 @@ public class ExecutionGlobalServices {
         return new DefaultTaskClassInfoStore(cacheFactory);
     }
 
+    TaskDurationHistory createTaskDurationHistory() {
+        return new TaskDurationHistory();
+    }
+
     TypeAnnotationHandler createCacheableTaskAnnotationHandler() {
         return new CacheableTaskTypeAnnotationHandler();
     }
@@ -29,6 +29,7 @@ import org.gradle.api.internal.changedetection.state.DefaultWellKnownFileLocatio
 import org.gradle.api.internal.changedetection.state.GlobalScopeFileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.WatchingFileSystemMirror;
 import org.gradle.api.internal.classpath.ModuleRegistry;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.TemporaryFileProvider;
@@ -63,11 +64,13 @@ import org.gradle.internal.classpath.CachedClasspathTransformer;
 import org.gradle.internal.classpath.CachedJarFileStore;
 import org.gradle.internal.classpath.DefaultCachedClasspathTransformer;
 import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.execution.timeout.TimeoutHandler;
 import org.gradle.internal.execution.timeout.impl.DefaultTimeoutHandler;
 import org.gradle.internal.file.JarCache;
+import org.gradle.internal.filewatch.FileWatcherFactory;
 import org.gradle.internal.fingerprint.classpath.ClasspathFingerprinter;
 import org.gradle.internal.fingerprint.classpath.impl.DefaultClasspathFingerprinter;
 import org.gradle.internal.hash.DefaultFileHasher;
@@ -89,6 +92,7 @@ import org.gradle.internal.snapshot.FileSystemSnapshotter;
 import org.gradle.internal.snapshot.WellKnownFileLocations;
 import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror;
 import org.gradle.internal.snapshot.impl.DefaultFileSystemSnapshotter;
+import org.gradle.internal.snapshot.impl.FileHashingExecutor;
 import org.gradle.internal.snapshot.impl.DefaultValueSnapshotter;
 import org.gradle.process.internal.JavaExecHandleFactory;
 import org.gradle.process.internal.health.memory.MemoryManager;
@@ -104,6 +108,17 @@ import java.util.List;
  * Defines the shared services scoped to a particular Gradle user home directory. These services are reused across multiple builds and operations.
  */
 public class GradleUserHomeScopeServices {
+    /**
+     * When set to true, the state of the file system is retained across builds and kept up-to-date by watching the file system for changes.
+     * Ignored where the file system can only be polled for changes.
+     */
+    public static final String RETAIN_FILE_SYSTEM_STATE = "org.gradle.internal.retain.file.system.state";
+
+    /**
+     * When set to true, file hashes are stored in a memory-mapped table that the processes sharing the Gradle user home can access without locking.
+     */
+    public static final String MEMORY_MAPPED_FILE_HASHES = "org.gradle.internal.memory.mapped.file.hashes";
+
     private final ServiceRegistry globalServices;
 
     public GradleUserHomeScopeServices(ServiceRegistry globalServices) {
@@ -134,7 +149,7 @@ public class GradleUserHomeScopeServices {
     }
 
     FileHasher createCachingFileHasher(StringInterner stringInterner, CrossBuildFileHashCache fileStore, FileSystem fileSystem, GlobalScopeFileTimeStampInspector fileTimeStampInspector, StreamHasher streamHasher) {
-        CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem);
+        CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, Boolean.getBoolean(MEMORY_MAPPED_FILE_HASHES));
         fileTimeStampInspector.attach(fileHasher);
         return fileHasher;
     }
@@ -159,8 +174,13 @@ public class GradleUserHomeScopeServices {
         return new DefaultWellKnownFileLocations(fileStores);
     }
 
-    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, WellKnownFileLocations wellKnownFileLocations) {
+    FileSystemMirror createFileSystemMirror(ListenerManager listenerManager, WellKnownFileLocations wellKnownFileLocations, FileWatcherFactory fileWatcherFactory) {
         final DefaultFileSystemMirror fileSystemMirror = new DefaultFileSystemMirror(wellKnownFileLocations);
+        if (Boolean.getBoolean(RETAIN_FILE_SYSTEM_STATE) && WatchingFileSystemMirror.isWatchingNative()) {
+            WatchingFileSystemMirror watchingFileSystemMirror = new WatchingFileSystemMirror(fileSystemMirror, wellKnownFileLocations, fileWatcherFactory);
+            listenerManager.addListener(watchingFileSystemMirror);
+            return watchingFileSystemMirror;
+        }
         listenerManager.addListener(new OutputChangeListener() {
             @Override
             public void beforeOutputChange() {
@@ -185,8 +205,12 @@ public class GradleUserHomeScopeServices {
         return fileSystemMirror;
     }
 
-    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror) {
-        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, fileSystemMirror, DirectoryScanner.getDefaultExcludes());
+    FileHashingExecutor createFileHashingExecutor(ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        return new FileHashingExecutor(executorFactory, parallelismConfigurationManager);
+    }
+
+    FileSystemSnapshotter createFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror, FileHashingExecutor hashingExecutor) {
+        return new DefaultFileSystemSnapshotter(hasher, stringInterner, fileSystem, fileSystemMirror, hashingExecutor, DirectoryScanner.getDefaultExcludes());
     }
 
     ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuildFileHashCache store) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileHashCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def cacheFile = tmpDir.file("fileHashes.mapped")
+    def hash = Hashing.hashString("content")
+
+    def "stores and removes entries"() {
+        def cache = new MappedFileHashCache(cacheFile, 16)
+
+        expect:
+        cache.get("/some/file") == null
+
+        when:
+        cache.put("/some/file", new FileInfo(hash, 12, 34))
+        def info = cache.get("/some/file")
+
+        then:
+        info.hash == hash
+        info.length == 12
+        info.timestamp == 34
+        cache.get("/some/other/file") == null
+
+        when:
+        cache.remove("/some/file")
+
+        then:
+        cache.get("/some/file") == null
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "entries are visible to other instances using the same file"() {
+        def writer = new MappedFileHashCache(cacheFile, 16)
+        def reader = new MappedFileHashCache(cacheFile, 16)
+
+        when:
+        writer.put("/some/file", new FileInfo(hash, 12, 34))
+
+        then:
+        reader.get("/some/file").hash == hash
+
+        cleanup:
+        writer?.close()
+        reader?.close()
+    }
+
+    def "evicts entries when the table is full"() {
+        def cache = new MappedFileHashCache(cacheFile, 4)
+
+        when:
+        (1..20).each { cache.put("/file${it}", new FileInfo(HashCode.fromInt(it), it, it)) }
+
+        then:
+        cache.get("/file20").hash == HashCode.fromInt(20)
+        (1..20).count { cache.get("/file${it}") != null } <= 4
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards content of file with different format"() {
+        cacheFile.text = "not a hash cache"
+
+        when:
+        def cache = new MappedFileHashCache(cacheFile, 16)
+
+        then:
+        cache.get("/some/file") == null
+
+        when:
+        cache.put("/some/file", new FileInfo(hash, 12, 34))
+
+        then:
+        cache.get("/some/file").hash == hash
+
+        cleanup:
+        cache?.close()
+    }
+
+    def "discards content of file with different capacity without shrinking it"() {
+        def largeCache = new MappedFileHashCache(cacheFile, 32)
+        largeCache.put("/some/file", new FileInfo(hash, 12, 34))
+        def length = cacheFile.length()
+
+        when:
+        def cache = new MappedFileHashCache(cacheFile, 16)
+
+        then:
+        cacheFile.length() == length
+        cache.get("/some/file") == null
+        largeCache.get("/some/file") == null
+
+        when:
+        cache.put("/some/file", new FileInfo(hash, 12, 34))
+
+        then:
+        cache.get("/some/file").hash == hash
+
+        cleanup:
+        cache?.close()
+        largeCache?.close()
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.WellKnownFileLocations
+import org.gradle.internal.snapshot.impl.DefaultFileSystemMirror
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class WatchingFileSystemMirrorTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def watcher = Mock(FileWatcher)
+    def watcherFactory = Mock(FileWatcherFactory)
+    def wellKnownFileLocations = new DefaultWellKnownFileLocations([])
+    def deliverProbes = true
+    def mirror = new ProbingFileSystemMirror(wellKnownFileLocations, watcherFactory, { File probe ->
+        if (deliverProbes) {
+            mirror.onChange(watcher, FileWatcherEvent.modify(probe))
+        }
+    })
+    def buildDir = tmpDir.createDir("build")
+
+    def setup() {
+        buildDir.createFile("settings.gradle")
+        buildDir.createDir(".gradle")
+    }
+
+    def "watches a location before it is snapshotted and retains its state until it changes"() {
+        def dir = buildDir.createDir("dir")
+        def file = dir.createFile("a")
+        def snapshot = Stub(RegularFileSnapshot)
+        _ * snapshot.absolutePath >> file.path
+
+        when:
+        mirror.afterStart()
+
+        then:
+        1 * watcherFactory.watch(_, mirror) >> watcher
+
+        when:
+        def result = mirror.getSnapshot(file.path)
+
+        then:
+        result == null
+        1 * watcher.watch({ it.contains(file) })
+
+        when:
+        mirror.putSnapshot(snapshot)
+        mirror.beforeComplete()
+        mirror.afterStart()
+
+        then:
+        _ * watcher.running >> true
+        0 * watcherFactory._
+        mirror.getSnapshot(file.path) == snapshot
+
+        when:
+        mirror.onChange(watcher, FileWatcherEvent.modify(file))
+        mirror.beforeComplete()
+        mirror.afterStart()
+
+        then:
+        _ * watcher.running >> true
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "watches the root of the build a location belongs to"() {
+        def projectDir = buildDir.createDir("project")
+        projectDir.createFile("build.gradle")
+        def file = projectDir.createDir("src").createFile("a")
+
+        given:
+        1 * watcherFactory.watch(_, mirror) >> watcher
+        mirror.afterStart()
+
+        when:
+        mirror.getSnapshot(file.path)
+        mirror.getSnapshot(projectDir.file("src/b").path)
+
+        then:
+        1 * watcher.watch({ it.contains(buildDir) && !it.contains(buildDir.parentFile) })
+        0 * watcher._
+    }
+
+    def "does not watch a location outside of any build and discards its state at the start of the next build"() {
+        def file = tmpDir.createDir("other").createFile("a")
+        def snapshot = Stub(RegularFileSnapshot)
+        _ * snapshot.absolutePath >> file.path
+
+        given:
+        1 * watcherFactory.watch(_, mirror) >> watcher
+        mirror.afterStart()
+
+        when:
+        def result = mirror.getSnapshot(file.path)
+        mirror.putSnapshot(snapshot)
+
+        then:
+        result == null
+        0 * watcher.watch(_)
+        mirror.getSnapshot(file.path) == snapshot
+
+        when:
+        mirror.beforeComplete()
+        mirror.afterStart()
+
+        then:
+        _ * watcher.running >> true
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "ignores the events of the probes"() {
+        def file = buildDir.createFile("a")
+        def snapshot = Stub(RegularFileSnapshot)
+        _ * snapshot.absolutePath >> file.path
+
+        given:
+        1 * watcherFactory.watch(_, mirror) >> watcher
+        _ * watcher.running >> true
+        mirror.afterStart()
+        mirror.getSnapshot(file.path)
+        mirror.putSnapshot(snapshot)
+        mirror.beforeComplete()
+        mirror.afterStart()
+        mirror.beforeComplete()
+
+        when:
+        mirror.afterStart()
+
+        then:
+        mirror.getSnapshot(file.path) == snapshot
+    }
+
+    def "discards all state when the events of the probes are not reported in time"() {
+        def file = buildDir.createFile("a")
+        def snapshot = Stub(RegularFileSnapshot)
+        _ * snapshot.absolutePath >> file.path
+
+        given:
+        1 * watcherFactory.watch(_, mirror) >> watcher
+        mirror.afterStart()
+        mirror.getSnapshot(file.path)
+        mirror.putSnapshot(snapshot)
+        mirror.beforeComplete()
+        deliverProbes = false
+
+        when:
+        mirror.afterStart()
+
+        then:
+        _ * watcher.running >> true
+        0 * watcherFactory._
+        mirror.getSnapshot(file.path) == null
+    }
+
+    def "discards all state and restarts watching when events are lost"() {
+        def file = buildDir.createFile("a")
+        def snapshot = Stub(RegularFileSnapshot)
+        def newWatcher = Mock(FileWatcher)
+        _ * snapshot.absolutePath >> file.path
+
+        given:
+        1 * watcherFactory.watch(_, mirror) >> watcher
+        mirror.afterStart()
+        mirror.putSnapshot(snapshot)
+
+        when:
+        mirror.onChange(watcher, FileWatcherEvent.undefined())
+        mirror.beforeComplete()
+        mirror.afterStart()
+
+        then:
+        1 * watcher.stop()
+        1 * watcherFactory.watch(_, mirror) >> newWatcher
+        mirror.getSnapshot(file.path) == null
+    }
+
+    private static class ProbingFileSystemMirror extends WatchingFileSystemMirror {
+        private final Closure<?> onProbe
+
+        ProbingFileSystemMirror(WellKnownFileLocations wellKnownFileLocations, FileWatcherFactory fileWatcherFactory, Closure<?> onProbe) {
+            super(new DefaultFileSystemMirror(wellKnownFileLocations), wellKnownFileLocations, fileWatcherFactory, 100)
+            this.onProbe = onProbe
+        }
+
+        @Override
+        protected void writeProbe(File probe) {
+            onProbe.call(probe)
+        }
+    }
+}
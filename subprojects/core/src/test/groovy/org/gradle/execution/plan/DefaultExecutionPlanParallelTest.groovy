@@ -20,6 +20,7 @@ import org.gradle.api.DefaultTask
 import org.gradle.api.Task
 import org.gradle.api.file.FileCollection
 import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.InputDirectory
@@ -211,6 +212,71 @@ class DefaultExecutionPlanParallelTest extends AbstractProjectBuilderSpec {
 
     }
 
+    def "task heading the longest chain of work from previous builds is executed first"() {
+        given:
+        Task a = project.task("a", type: Async)
+        Task b = project.task("b", type: Async)
+        Task c = project.task("c", type: Async).dependsOn(b)
+        def history = new TaskDurationHistory()
+        history.recordDuration(a, 50)
+        history.recordDuration(b, 10)
+        history.recordDuration(c, 100)
+        useDurationHistory(history)
+
+        when:
+        addToGraphAndPopulate(a, c)
+        def firstTaskNode = selectNextTaskNode()
+        def secondTask = selectNextTask()
+        then:
+        firstTaskNode.task == b
+        secondTask == a
+        selectNextTask() == null
+
+        when:
+        executionPlan.nodeComplete(firstTaskNode)
+        then:
+        selectNextTask() == c
+    }
+
+    def "task heading the longest chain of work keeps should run after ordering"() {
+        given:
+        Task a = project.task("a", type: Async)
+        Task b = project.task("b", type: Async)
+        b.shouldRunAfter(a)
+        def history = new TaskDurationHistory()
+        history.recordDuration(b, 100)
+        useDurationHistory(history)
+
+        when:
+        addToGraphAndPopulate(a, b)
+        def firstTask = selectNextTask()
+        def secondTask = selectNextTask()
+        then:
+        firstTask == a
+        secondTask == b
+    }
+
+    def "records the duration of executed tasks only"() {
+        given:
+        Task a = project.task("a", type: Async)
+        Task b = project.task("b", type: Async)
+        def history = new TaskDurationHistory()
+        useDurationHistory(history)
+
+        when:
+        addToGraphAndPopulate(a, b)
+        def firstTaskNode = selectNextTaskNode()
+        def secondTaskNode = selectNextTaskNode()
+        firstTaskNode.task.state.outcome = TaskExecutionOutcome.UP_TO_DATE
+        secondTaskNode.task.state.outcome = TaskExecutionOutcome.EXECUTED
+        executionPlan.nodeComplete(firstTaskNode)
+        executionPlan.nodeComplete(secondTaskNode)
+
+        then:
+        history.getDuration(firstTaskNode.task) == 0
+        !history.isEmpty()
+    }
+
     def "two tasks that have the same file in outputs are not executed in parallel"() {
         def sharedFile = file("output")
 
@@ -704,6 +770,13 @@ class DefaultExecutionPlanParallelTest extends AbstractProjectBuilderSpec {
         executionPlan.getNode(finalizer).state == Node.ExecutionState.SKIPPED
     }
 
+    private void useDurationHistory(TaskDurationHistory history) {
+        project.gradle.startParameter.parallelProjectExecutionEnabled = true
+        def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
+        executionPlan = new DefaultExecutionPlan(lockSetup.workerLeaseService, project.gradle, taskNodeFactory, dependencyResolver, history)
+    }
+
     private void addToGraphAndPopulate(Task... tasks) {
         executionPlan.addEntryTasks(Arrays.asList(tasks))
         executionPlan.determineExecutionPlan()
@@ -64,15 +64,24 @@ public final class GradlePomModuleDescriptorParser extends AbstractModuleDescrip
     private final VersionSelectorScheme mavenVersionSelectorScheme;
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final MavenMutableModuleMetadataFactory metadataFactory;
+    private final ParsedPomCache parsedPomCache;
 
     public GradlePomModuleDescriptorParser(VersionSelectorScheme gradleVersionSelectorScheme,
                                            ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                            FileResourceRepository fileResourceRepository, MavenMutableModuleMetadataFactory metadataFactory) {
+        this(gradleVersionSelectorScheme, moduleIdentifierFactory, fileResourceRepository, metadataFactory, new ParsedPomCache());
+    }
+
+    public GradlePomModuleDescriptorParser(VersionSelectorScheme gradleVersionSelectorScheme,
+                                           ImmutableModuleIdentifierFactory moduleIdentifierFactory,
+                                           FileResourceRepository fileResourceRepository, MavenMutableModuleMetadataFactory metadataFactory,
+                                           ParsedPomCache parsedPomCache) {
         super(fileResourceRepository);
         this.gradleVersionSelectorScheme = gradleVersionSelectorScheme;
         mavenVersionSelectorScheme = new MavenVersionSelectorScheme(gradleVersionSelectorScheme);
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         this.metadataFactory = metadataFactory;
+        this.parsedPomCache = parsedPomCache;
     }
 
     @Override
@@ -209,22 +218,24 @@ public final class GradlePomModuleDescriptorParser extends AbstractModuleDescrip
     }
 
     private PomReader parsePomForId(DescriptorParseContext parseContext, ModuleComponentIdentifier identifier, Map<String, String> childProperties) throws IOException, SAXException {
-        return parsePomResource(parseContext, parseContext.getMetaDataArtifact(identifier, ArtifactType.MAVEN_POM), childProperties);
+        LocallyAvailableExternalResource localResource = parseContext.getMetaDataArtifact(identifier, ArtifactType.MAVEN_POM);
+        return parsePomResource(parseContext, localResource, PomReader.parsePom(localResource), childProperties);
     }
 
     private PomReader parsePomForSelector(DescriptorParseContext parseContext, ModuleComponentSelector selector, Map<String, String> childProperties) throws IOException, SAXException {
         ModuleDependencyMetadata moduleDependencyMetadata = toDependencyMetadata(selector);
         VersionSelector acceptor = mavenVersionSelectorScheme.parseSelector(selector.getVersion());
         LocallyAvailableExternalResource localResource = parseContext.getMetaDataArtifact(moduleDependencyMetadata, acceptor, ArtifactType.MAVEN_POM);
-        return parsePomResource(parseContext, localResource, childProperties);
+        // Parent and imported POMs are shared by many modules, so reuse their parsed content
+        return parsePomResource(parseContext, localResource, parsedPomCache.parse(localResource), childProperties);
     }
 
     private ModuleDependencyMetadata toDependencyMetadata(ModuleComponentSelector selector) {
         return new GradleDependencyMetadata(selector, Collections.<ExcludeMetadata>emptyList(), false, null, false);
     }
 
-    private PomReader parsePomResource(DescriptorParseContext parseContext, LocallyAvailableExternalResource localResource, Map<String, String> childProperties) throws SAXException, IOException {
-        PomReader pomReader = new PomReader(localResource, moduleIdentifierFactory, childProperties);
+    private PomReader parsePomResource(DescriptorParseContext parseContext, LocallyAvailableExternalResource localResource, PomElement projectElement, Map<String, String> childProperties) throws SAXException, IOException {
+        PomReader pomReader = new PomReader(localResource, projectElement, moduleIdentifierFactory, childProperties);
         GradlePomModuleDescriptorBuilder mdBuilder = new GradlePomModuleDescriptorBuilder(pomReader, gradleVersionSelectorScheme, mavenVersionSelectorScheme);
         doParsePom(parseContext, mdBuilder, pomReader);
         return pomReader;
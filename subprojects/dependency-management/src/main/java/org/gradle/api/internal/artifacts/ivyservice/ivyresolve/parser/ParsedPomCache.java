@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+
+import java.io.File;
+
+/**
+ * Keeps the parsed content of parent and imported POMs for the duration of a build, as the same few POMs are inherited or imported by many others.
+ *
+ * The parsed content does not depend on the POM that inherits or imports it, so it is cached by file. An entry is only used while the file still has the same length and modification time.
+ */
+public class ParsedPomCache {
+    private static final int MAX_ENTRIES = 10000;
+
+    private final Cache<File, ParsedPom> parsedPoms = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+
+    PomElement parse(LocallyAvailableExternalResource resource) {
+        File file = resource.getFile();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        ParsedPom parsed = parsedPoms.getIfPresent(file);
+        if (parsed != null && parsed.length == length && parsed.lastModified == lastModified) {
+            return parsed.projectElement;
+        }
+        PomElement projectElement = PomReader.parsePom(resource);
+        parsedPoms.put(file, new ParsedPom(length, lastModified, projectElement));
+        return projectElement;
+    }
+
+    private static class ParsedPom {
+        private final long length;
+        private final long lastModified;
+        private final PomElement projectElement;
+
+        ParsedPom(long length, long lastModified, PomElement projectElement) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.projectElement = projectElement;
+        }
+    }
+}
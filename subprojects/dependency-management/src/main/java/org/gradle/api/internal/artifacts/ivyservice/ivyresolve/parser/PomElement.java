@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable element of a parsed POM, holding only its name, its own text, its child elements and its comments.
+ *
+ * Unlike a DOM tree, a tree of these elements can be safely shared between threads, so it can be reused by every POM that inherits from or imports the POM it was parsed from.
+ */
+public final class PomElement {
+    private final String name;
+    private final String text;
+    private final List<PomElement> children;
+    private final List<String> comments;
+
+    PomElement(String name, String text, List<PomElement> children, List<String> comments) {
+        this.name = name;
+        this.text = text;
+        this.children = children.isEmpty() ? Collections.<PomElement>emptyList() : Collections.unmodifiableList(children);
+        this.comments = comments.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(comments);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the text and CDATA directly contained in this element, ignoring the content of child elements.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public List<PomElement> getChildren() {
+        return children;
+    }
+
+    public List<String> getComments() {
+        return comments;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
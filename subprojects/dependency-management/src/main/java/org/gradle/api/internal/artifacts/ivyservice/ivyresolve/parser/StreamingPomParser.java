@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.PomDomParser.AddDTDFilterInputStream;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses a POM into a tree of {@link PomElement}s, streaming over the XML with StAX instead of building a DOM.
+ *
+ * Only the parts of the POM that Gradle reads are kept: the top level elements of the project and of its profiles that are not listed below, such as build, reporting or developer information, are skipped.
+ */
+final class StreamingPomParser {
+    private static final Set<String> RETAINED_ELEMENTS = ImmutableSet.of(
+        "parent", "groupId", "artifactId", "version", "packaging", "properties", "dependencies", "dependencyManagement", "distributionManagement", "profiles", "id", "activation"
+    );
+    private static final String PROFILES = "profiles";
+    private static final String PROFILE = "profile";
+    private static final byte[] M2_ENTITIES_RESOURCE;
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
+
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, true);
+            XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            XML_INPUT_FACTORY.setXMLResolver(new XMLResolver() {
+                @Override
+                public Object resolveEntity(String publicId, String systemId, String baseUri, String namespace) {
+                    if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                        return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+
+    private StreamingPomParser() {
+    }
+
+    /**
+     * Parses the given POM content, returning its root element.
+     */
+    static PomElement parse(InputStream inputStream, String systemId) throws IOException, XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(systemId, new AddDTDFilterInputStream(inputStream));
+        try {
+            return readDocument(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static PomElement readDocument(XMLStreamReader reader) throws XMLStreamException {
+        Deque<ElementBuilder> stack = new ArrayDeque<ElementBuilder>();
+        PomElement root = null;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String name = nameOf(reader);
+                    ElementBuilder parent = stack.peek();
+                    if (parent != null && parent.filtersChildren && !RETAINED_ELEMENTS.contains(name)) {
+                        skipElement(reader);
+                    } else {
+                        stack.push(new ElementBuilder(name, parent == null || isProfile(name, parent, stack.size())));
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    PomElement element = stack.pop().build();
+                    if (stack.isEmpty()) {
+                        root = element;
+                    } else {
+                        stack.peek().children.add(element);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!stack.isEmpty()) {
+                        stack.peek().appendText(reader);
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (!stack.isEmpty()) {
+                        stack.peek().comments.add(reader.getText());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (root == null) {
+            throw new XMLStreamException("No root element found");
+        }
+        return root;
+    }
+
+    /**
+     * A profile can contain most of the elements of a project, so its children are filtered in the same way.
+     */
+    private static boolean isProfile(String name, ElementBuilder parent, int depth) {
+        return depth == 2 && PROFILE.equals(name) && PROFILES.equals(parent.name);
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static String nameOf(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    private static class ElementBuilder {
+        private final String name;
+        private final boolean filtersChildren;
+        private final List<PomElement> children = new ArrayList<PomElement>();
+        private final List<String> comments = new ArrayList<String>(0);
+        private StringBuilder text;
+
+        ElementBuilder(String name, boolean filtersChildren) {
+            this.name = name;
+            this.filtersChildren = filtersChildren;
+        }
+
+        void appendText(XMLStreamReader reader) {
+            if (text == null) {
+                text = new StringBuilder(reader.getTextLength());
+            }
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+
+        PomElement build() {
+            return new PomElement(name, text == null ? "" : text.toString(), children, comments);
+        }
+    }
+}
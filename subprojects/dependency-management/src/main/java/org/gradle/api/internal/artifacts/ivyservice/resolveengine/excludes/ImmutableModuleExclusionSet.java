@@ -15,15 +15,16 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.internal.Cast;
 import org.gradle.internal.component.model.IvyArtifactName;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion> {
@@ -32,10 +33,8 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     final AbstractModuleExclusion[] elements;
     private final int hashCode;
 
-    // the following fields are used as optimizations, to avoid iterating on the whole set of exclusions
-    private ImmutableSet<ModuleIdentifier> excludedModules;
-    private ImmutableList<AbstractModuleExclusion> moduleExcludes;
-    private ImmutableList<AbstractModuleExclusion> artifactExcludes;
+    // used as an optimization, to avoid iterating on the whole set of exclusions
+    private volatile ExclusionLookup lookup;
 
     ImmutableModuleExclusionSet(ImmutableSet<AbstractModuleExclusion> delegate) {
         this.delegate = delegate;
@@ -43,28 +42,14 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
         this.hashCode = delegate.hashCode();
     }
 
-    private synchronized void precomputeCaches() {
-        if (excludedModules != null) {
-            return;
+    private ExclusionLookup getLookup() {
+        ExclusionLookup lookup = this.lookup;
+        if (lookup == null) {
+            // Computing it more than once is harmless, as the result is always the same
+            lookup = new ExclusionLookup(elements);
+            this.lookup = lookup;
         }
-        ImmutableSet.Builder<ModuleIdentifier> moduleIds = ImmutableSet.builder();
-        ImmutableList.Builder<AbstractModuleExclusion> modules = ImmutableList.builder();
-        ImmutableList.Builder<AbstractModuleExclusion> artifacts = ImmutableList.builder();
-        for (AbstractModuleExclusion exclusion : delegate) {
-            if (exclusion instanceof ModuleIdExcludeSpec) {
-                moduleIds.add(((ModuleIdExcludeSpec) exclusion).moduleId);
-            } else {
-                if (!exclusion.excludesNoModules()) {
-                    modules.add(exclusion);
-                }
-                if (exclusion.mayExcludeArtifacts()) {
-                    artifacts.add(exclusion);
-                }
-            }
-        }
-        excludedModules = moduleIds.build();
-        moduleExcludes = modules.build();
-        artifactExcludes = artifacts.build();
+        return lookup;
     }
 
     @Override
@@ -88,18 +73,18 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     }
 
     /**
-     * This method optimizes module exclusion lookup, based on empirical data showing that the set can be very large, but would contain mostly direct module exclusion nodes. So instead of always
-     * iterating over all excluded modules, we can perform a fast lookup using a set of excluded modules first, then only iterate on the remaining exclusions.
+     * This method optimizes module exclusion lookup, based on empirical data showing that the set can be very large, but would contain mostly direct module, module name or group exclusion nodes.
+     * So instead of always iterating over all excluded modules, we can perform a fast lookup using sets of excluded modules, names and groups first, then only iterate on the remaining exclusions.
      *
      * @param id the module to check
      * @return true if it's excluded
      */
     boolean excludesModule(ModuleIdentifier id) {
-        precomputeCaches();
-        if (excludedModules.contains(id)) {
+        ExclusionLookup lookup = getLookup();
+        if (lookup.excludedModules.contains(id) || lookup.excludedGroups.contains(id.getGroup()) || lookup.excludedModuleNames.contains(id.getName())) {
             return true;
         }
-        for (AbstractModuleExclusion excludeSpec : moduleExcludes) {
+        for (AbstractModuleExclusion excludeSpec : lookup.moduleExcludes) {
             if (excludeSpec.excludeModule(id)) {
                 return true;
             }
@@ -108,8 +93,7 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     }
 
     boolean excludesArtifact(ModuleIdentifier module, IvyArtifactName artifact) {
-        precomputeCaches();
-        for (AbstractModuleExclusion excludeSpec : artifactExcludes) {
+        for (AbstractModuleExclusion excludeSpec : getLookup().artifactExcludes) {
             if (excludeSpec.excludeArtifact(module, artifact)) {
                 return true;
             }
@@ -184,4 +168,41 @@ final class ImmutableModuleExclusionSet implements Set<AbstractModuleExclusion>
     public int hashCode() {
         return hashCode;
     }
+
+    private static final class ExclusionLookup {
+        private final ImmutableSet<ModuleIdentifier> excludedModules;
+        private final ImmutableSet<String> excludedGroups;
+        private final ImmutableSet<String> excludedModuleNames;
+        private final AbstractModuleExclusion[] moduleExcludes;
+        private final AbstractModuleExclusion[] artifactExcludes;
+
+        private ExclusionLookup(AbstractModuleExclusion[] elements) {
+            ImmutableSet.Builder<ModuleIdentifier> moduleIds = ImmutableSet.builder();
+            ImmutableSet.Builder<String> groups = ImmutableSet.builder();
+            ImmutableSet.Builder<String> moduleNames = ImmutableSet.builder();
+            List<AbstractModuleExclusion> modules = Lists.newArrayList();
+            List<AbstractModuleExclusion> artifacts = Lists.newArrayList();
+            for (AbstractModuleExclusion exclusion : elements) {
+                if (exclusion instanceof ModuleIdExcludeSpec) {
+                    moduleIds.add(((ModuleIdExcludeSpec) exclusion).moduleId);
+                } else if (exclusion instanceof GroupNameExcludeSpec) {
+                    groups.add(((GroupNameExcludeSpec) exclusion).group);
+                } else if (exclusion instanceof ModuleNameExcludeSpec) {
+                    moduleNames.add(((ModuleNameExcludeSpec) exclusion).module);
+                } else {
+                    if (!exclusion.excludesNoModules()) {
+                        modules.add(exclusion);
+                    }
+                    if (exclusion.mayExcludeArtifacts()) {
+                        artifacts.add(exclusion);
+                    }
+                }
+            }
+            excludedModules = moduleIds.build();
+            excludedGroups = groups.build();
+            excludedModuleNames = moduleNames.build();
+            moduleExcludes = modules.toArray(new AbstractModuleExclusion[0]);
+            artifactExcludes = artifacts.toArray(new AbstractModuleExclusion[0]);
+        }
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -54,12 +56,16 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
 public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
     private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = new ExcludeAllModulesSpec();
+    private static final int MAX_CACHED_PAIRS = 10000;
 
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
     private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
     private final Map<ImmutableList<ExcludeMetadata>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
     private final Map<ImmutableSet<AbstractModuleExclusion>, IntersectionExclusion> intersectionCache = Maps.newConcurrentMap();
+    // The exclusions of every resolution in the build pass through these, so keep only the most recently used pairs
+    private final Cache<ExclusionPair, ModuleExclusion> intersectCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PAIRS).build();
+    private final Cache<ExclusionPair, ModuleExclusion> unionCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PAIRS).build();
     private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
@@ -185,6 +191,17 @@ public class ModuleExclusions {
             return two;
         }
 
+        // Exclusions are mostly shared instances, so the same pairs are intersected again and again while traversing the graph
+        ExclusionPair pair = new ExclusionPair(one, two);
+        ModuleExclusion intersection = intersectCache.getIfPresent(pair);
+        if (intersection == null) {
+            intersection = doIntersect(one, two);
+            intersectCache.put(pair, intersection);
+        }
+        return intersection;
+    }
+
+    private ModuleExclusion doIntersect(ModuleExclusion one, ModuleExclusion two) {
         AbstractModuleExclusion aOne = (AbstractModuleExclusion) one;
         AbstractModuleExclusion aTwo = (AbstractModuleExclusion) two;
 
@@ -217,6 +234,16 @@ public class ModuleExclusions {
             return one;
         }
 
+        ExclusionPair pair = new ExclusionPair(one, two);
+        ModuleExclusion union = unionCache.getIfPresent(pair);
+        if (union == null) {
+            union = doUnion(one, two);
+            unionCache.put(pair, union);
+        }
+        return union;
+    }
+
+    private ModuleExclusion doUnion(ModuleExclusion one, ModuleExclusion two) {
         List<AbstractModuleExclusion> specs = new ArrayList<AbstractModuleExclusion>();
         ((AbstractModuleExclusion) one).unpackUnion(specs);
         ((AbstractModuleExclusion) two).unpackUnion(specs);
@@ -444,6 +471,38 @@ public class ModuleExclusions {
         }
     }
 
+    /**
+     * A pair of exclusions, compared by identity.
+     */
+    private static final class ExclusionPair {
+        private final ModuleExclusion one;
+        private final ModuleExclusion two;
+        private final int hashCode;
+
+        private ExclusionPair(ModuleExclusion one, ModuleExclusion two) {
+            this.one = one;
+            this.two = two;
+            this.hashCode = 31 * System.identityHashCode(one) + System.identityHashCode(two);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ExclusionPair that = (ExclusionPair) o;
+            return one == that.one && two == that.two;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final class MergeSet extends HashSet<AbstractModuleExclusion> {
         private final BitSet remaining;
         private int idx;
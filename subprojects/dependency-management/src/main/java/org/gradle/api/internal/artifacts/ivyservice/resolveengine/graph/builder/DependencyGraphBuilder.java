@@ -26,6 +26,7 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentSelector;
 import org.gradle.api.attributes.Attribute;
 import org.gradle.api.capabilities.Capability;
@@ -93,6 +94,7 @@ public class DependencyGraphBuilder {
     private final VersionSelectorScheme versionSelectorScheme;
     private final Comparator<Version> versionComparator;
     private final VersionParser versionParser;
+    private final boolean resolveAllMetadataInParallel;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver,
                                   ComponentMetaDataResolver componentMetaDataResolver,
@@ -109,7 +111,8 @@ public class DependencyGraphBuilder {
                                   ImmutableAttributesFactory attributesFactory,
                                   VersionSelectorScheme versionSelectorScheme,
                                   Comparator<Version> versionComparator,
-                                  VersionParser versionParser) {
+                                  VersionParser versionParser,
+                                  boolean resolveAllMetadataInParallel) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -126,6 +129,7 @@ public class DependencyGraphBuilder {
         this.versionSelectorScheme = versionSelectorScheme;
         this.versionComparator = versionComparator;
         this.versionParser = versionParser;
+        this.resolveAllMetadataInParallel = resolveAllMetadataInParallel;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -295,16 +299,17 @@ public class DependencyGraphBuilder {
     /**
      * Prepares the resolution of edges, either serially or concurrently.
      * It uses a simple heuristic to determine if we should perform concurrent resolution, based on the the number of edges, and whether they have unresolved metadata.
+     * When all metadata is resolved in parallel, the metadata of every external component is resolved concurrently, as processing metadata found in the cache also takes time.
      */
     private void maybeDownloadMetadataInParallel(NodeState node, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, List<EdgeState> dependencies) {
-        List<ComponentState> requiringDownload = null;
+        Set<ComponentState> requiringDownload = null;
         for (EdgeState dependency : dependencies) {
             ComponentState targetComponent = dependency.getTargetComponent();
             if (targetComponent != null && targetComponent.isSelected() && !targetComponent.alreadyResolved()) {
-                if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
-                    // Avoid initializing the list if there are no components requiring download (a common case)
+                if (canResolveInParallel(targetComponent) || !metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
+                    // Avoid initializing the set if there are no components requiring download (a common case)
                     if (requiringDownload == null) {
-                        requiringDownload = Lists.newArrayList();
+                        requiringDownload = Sets.newLinkedHashSet();
                     }
                     requiringDownload.add(targetComponent);
                 }
@@ -325,6 +330,13 @@ public class DependencyGraphBuilder {
         }
     }
 
+    private boolean canResolveInParallel(ComponentState component) {
+        // Project components and virtual platforms are resolved from the state of the build, so only external components are resolved regardless of their cost
+        return resolveAllMetadataInParallel
+            && component.getComponentId() instanceof ModuleComponentIdentifier
+            && !component.getModule().isVirtualPlatform();
+    }
+
     private ComponentIdentifier toComponentId(ModuleVersionIdentifier id, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
         ComponentIdentifier identifier = componentIdentifierCache.get(id);
         if (identifier == null) {
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Subject
+
+class ParsedPomCacheTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir
+
+    @Subject ParsedPomCache cache = new ParsedPomCache()
+
+    def "reuses parsed POM while the file is unchanged"() {
+        def pomFile = tmpDir.file("pom.xml")
+        pomFile.text = "<project><groupId>group-one</groupId><build><plugins/></build></project>"
+        def resource = TestFiles.fileRepository().resource(pomFile)
+        def parsed = cache.parse(resource)
+
+        expect:
+        parsed.name == "project"
+        parsed.children*.name == ["groupId"]
+        parsed.children[0].text == "group-one"
+        cache.parse(resource).is(parsed)
+
+        when:
+        pomFile.text = "<project><groupId>group-two</groupId></project>"
+        pomFile.setLastModified(pomFile.lastModified() + 2000)
+        def reparsed = cache.parse(resource)
+
+        then:
+        !reparsed.is(parsed)
+        reparsed.children[0].text == "group-two"
+    }
+}
@@ -102,6 +102,50 @@ class PomReaderTest extends AbstractPomReaderTest {
         pomReader.relocation == null
     }
 
+    def "ignores sections of POM that are not used and resolves entities and CDATA"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact&#45;one</artifactId>
+    <version><![CDATA[version-one]]></version>
+    <description>The first test artifact&nbsp;&copy;</description>
+    <build>
+        <plugins>
+            <plugin>
+                <groupId>org.apache.maven.plugins</groupId>
+                <artifactId>maven-compiler-plugin</artifactId>
+                <dependencies>
+                    <dependency>
+                        <groupId>group-plugin</groupId>
+                        <artifactId>artifact-plugin</artifactId>
+                        <version>version-plugin</version>
+                    </dependency>
+                </dependencies>
+            </plugin>
+        </plugins>
+    </build>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <version>version-two</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+        MavenDependencyKey key = new MavenDependencyKey('group-two', 'artifact-two', 'jar', null)
+
+        then:
+        pomReader.groupId == 'group-one'
+        pomReader.artifactId == 'artifact-one'
+        pomReader.version == 'version-one'
+        pomReader.getDependencies().size() == 1
+        assertResolvedPomDependency(key, 'version-two')
+    }
+
     def "use custom properties in POM project coordinates"() {
         when:
         pomFile << """
@@ -720,6 +720,27 @@ class DefaultModuleExclusionTest extends Specification {
         !intersect(spec1, spec2).excludesSameModulesAs(intersect(spec1, spec3))
     }
 
+    def "intersection of the same specs returns the same instance"() {
+        def spec1 = excludeAny(excludeRule("org", "module"), regexpExcludeRule("org", "module2"))
+        def spec2 = excludeAny(excludeGroupRule("org2"), excludeModuleRule("module3"))
+
+        expect:
+        intersect(spec1, spec2).is(intersect(spec1, spec2))
+        union(spec1, spec2).is(union(spec1, spec2))
+    }
+
+    def "intersection does not accept module excluded by group or module name exclude rules"() {
+        def spec = intersect(excludeAny(excludeRule("org", "module"), excludeGroupRule("org2")), excludeAny(excludeModuleRule("module3"), regexpExcludeRule("org3", "module4")))
+
+        expect:
+        spec.excludeModule(moduleId("org", "module"))
+        spec.excludeModule(moduleId("org2", "anything"))
+        spec.excludeModule(moduleId("other", "module3"))
+        spec.excludeModule(moduleId("org3", "module4"))
+        !spec.excludeModule(moduleId("org", "module3-other"))
+        !spec.excludeModule(moduleId("org3", "module5"))
+    }
+
     def "does not accept artifact that matches specific exclude rule"() {
         def rule1 = excludeArtifactRule("a", "jar", "jar")
         def rule2 = excludeArtifactRule("b", "jar", "jar")
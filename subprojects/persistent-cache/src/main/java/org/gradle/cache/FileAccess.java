@@ -66,4 +66,17 @@ public interface FileAccess {
      */
     void writeFile(Runnable action) throws LockTimeoutException, InsufficientLockModeException;
 
+    /**
+     * Runs the given action under an exclusive lock on the target file, without checking its integrity. Unlike {@link #writeFile(Runnable)}, the lock is not marked as
+     * uncleanly unlocked while the action runs, but the target is still reported as updated to other processes.
+     *
+     * <p>This method should only be used when an action that does not complete leaves the target in a state that it can recover from, e.g. the action appends to a log whose
+     * records are checked when it is read.
+     *
+     * @throws LockTimeoutException On timeout acquiring lock, if required.
+     * @throws IllegalStateException When this lock has been closed.
+     * @throws InsufficientLockModeException If the held lock is not an exclusive lock.
+     */
+    void appendFile(Runnable action) throws LockTimeoutException, InsufficientLockModeException;
+
 }
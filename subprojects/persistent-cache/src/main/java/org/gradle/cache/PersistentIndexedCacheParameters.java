@@ -27,24 +27,28 @@ public class PersistentIndexedCacheParameters<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private final CacheDecorator cacheDecorator;
+    private final int shardCount;
+    private final boolean writeAheadLog;
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null, 1, false);
     }
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Serializer<V> valueSerializer) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null, 1, false);
     }
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Class<V> valueType) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null, 1, false);
     }
 
-    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator) {
+    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator, int shardCount, boolean writeAheadLog) {
         this.cacheName = cacheName;
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
         this.cacheDecorator = cacheDecorator;
+        this.shardCount = shardCount;
+        this.writeAheadLog = writeAheadLog;
     }
 
     public String getCacheName() {
@@ -64,7 +68,34 @@ public class PersistentIndexedCacheParameters<K, V> {
         return cacheDecorator;
     }
 
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isWriteAheadLog() {
+        return writeAheadLog;
+    }
+
     public PersistentIndexedCacheParameters<K, V> withCacheDecorator(CacheDecorator cacheDecorator) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, shardCount, writeAheadLog);
+    }
+
+    /**
+     * Partitions the entries of the cache across the given number of files, so that updates to the cache can be written by several threads concurrently.
+     * A cache with a single shard, the default, is stored in a single file.
+     */
+    public PersistentIndexedCacheParameters<K, V> withShardCount(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1.");
+        }
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, shardCount, writeAheadLog);
+    }
+
+    /**
+     * Appends the updates to the cache to a log that is synced to disk in batches, and only writes them to the cache file once enough updates have been logged.
+     * When the process crashes, the updates are read back from the log instead of being lost with a corrupt cache file.
+     */
+    public PersistentIndexedCacheParameters<K, V> withWriteAheadLog(boolean writeAheadLog) {
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, shardCount, writeAheadLog);
     }
 }
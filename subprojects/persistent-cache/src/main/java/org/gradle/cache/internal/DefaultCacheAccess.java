@@ -30,6 +30,9 @@ import org.gradle.cache.LockTimeoutException;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.IndexedCacheStore;
+import org.gradle.cache.internal.btree.ShardedBTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.WriteAheadLogIndexedCacheStore;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
@@ -43,6 +46,7 @@ import org.gradle.util.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -76,6 +80,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
 
     private ManagedExecutor cacheUpdateExecutor;
     private CacheAccessWorker cacheAccessWorker;
+    private ManagedExecutor shardWriterExecutor;
     private final Lock stateLock = new ReentrantLock(); // protects the following state
     private final Condition condition = stateLock.newCondition();
 
@@ -130,6 +135,13 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return cacheAccessWorker;
     }
 
+    private synchronized ManagedExecutor getShardWriterExecutor() {
+        if (shardWriterExecutor == null) {
+            shardWriterExecutor = executorFactory.create("Cache shard writer for " + cacheDisplayName);
+        }
+        return shardWriterExecutor;
+    }
+
     @Override
     public void open() {
         stateLock.lock();
@@ -187,6 +199,18 @@ public class DefaultCacheAccess implements CacheCoordinator {
             fileLockHeldByOwner = null;
             stateLock.unlock();
         }
+        // The shards of the caches have been closed, so all of their updates have been written
+        ManagedExecutor shardWriterExecutor = takeShardWriterExecutor();
+        if (shardWriterExecutor != null) {
+            shardWriterExecutor.stop();
+        }
+    }
+
+    @Nullable
+    private synchronized ManagedExecutor takeShardWriterExecutor() {
+        ManagedExecutor executor = shardWriterExecutor;
+        shardWriterExecutor = null;
+        return executor;
     }
 
     @Override
@@ -284,14 +308,26 @@ public class DefaultCacheAccess implements CacheCoordinator {
         try {
             if (entry == null) {
                 final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
+                final File logFile = new File(baseDir, parameters.getCacheName() + WriteAheadLogIndexedCacheStore.LOG_FILE_EXTENSION);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-                    public BTreePersistentIndexedCache<K, V> create() {
-                        return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<IndexedCacheStore<K, V>> indexedCacheFactory = new Factory<IndexedCacheStore<K, V>>() {
+                    public IndexedCacheStore<K, V> create() {
+                        IndexedCacheStore<K, V> store;
+                        if (parameters.getShardCount() > 1) {
+                            store = doCreateShardedCache(parameters.getCacheName(), parameters.getShardCount(), parameters.getKeySerializer(), parameters.getValueSerializer());
+                        } else {
+                            store = doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                        }
+                        if (parameters.isWriteAheadLog()) {
+                            return new WriteAheadLogIndexedCacheStore<K, V>(logFile, store, fileAccess, parameters.getKeySerializer(), parameters.getValueSerializer());
+                        }
+                        // The cache may have been used with a log before, so apply any updates left in the log
+                        WriteAheadLogIndexedCacheStore.checkpointExistingLog(logFile, store, fileAccess, parameters.getKeySerializer(), parameters.getValueSerializer());
+                        return store;
                     }
                 };
 
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess, parameters.isWriteAheadLog());
                 CacheDecorator decorator = parameters.getCacheDecorator();
                 if (decorator != null) {
                     indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
@@ -317,6 +353,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
+    <K, V> IndexedCacheStore<K, V> doCreateShardedCache(String cacheName, int shardCount, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new ShardedBTreePersistentIndexedCache<K, V>(baseDir, cacheName, shardCount, keySerializer, valueSerializer, getShardWriterExecutor());
+    }
+
     /**
      * Called just after the file lock has been acquired.
      */
@@ -411,6 +451,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
         public void writeFile(Runnable action) throws LockTimeoutException {
             getFileLock().writeFile(action);
         }
+
+        public void appendFile(Runnable action) throws LockTimeoutException {
+            getFileLock().appendFile(action);
+        }
     }
 
     Thread getOwner() {
@@ -445,6 +489,8 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleShardCount(faultMessages, parameters.getShardCount());
+            checkCompatibleWriteAheadLog(faultMessages, parameters.isWriteAheadLog());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -487,6 +533,22 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleShardCount(Collection<String> faultMessages, int shardCount) {
+            if (shardCount != parameters.getShardCount()) {
+                faultMessages.add(
+                    String.format(" * Requested shard count (%d) doesn't match current shard count (%d)",
+                        shardCount, parameters.getShardCount()));
+            }
+        }
+
+        private void checkCompatibleWriteAheadLog(Collection<String> faultMessages, boolean writeAheadLog) {
+            if (writeAheadLog != parameters.isWriteAheadLog()) {
+                faultMessages.add(
+                    String.format(" * Requested write-ahead log (%s) doesn't match current write-ahead log (%s)",
+                        writeAheadLog, parameters.isWriteAheadLog()));
+            }
+        }
     }
 
     @VisibleForTesting
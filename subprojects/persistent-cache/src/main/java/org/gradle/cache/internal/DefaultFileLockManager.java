@@ -30,8 +30,10 @@ import org.gradle.cache.internal.filelock.LockInfo;
 import org.gradle.cache.internal.filelock.LockState;
 import org.gradle.cache.internal.filelock.LockStateAccess;
 import org.gradle.cache.internal.filelock.LockStateSerializer;
+import org.gradle.cache.internal.filelock.MappedLockSignal;
 import org.gradle.cache.internal.filelock.Version1LockStateSerializer;
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler;
+import org.gradle.cache.internal.locklistener.MappedLockSignalWatcher;
 import org.gradle.internal.Factory;
 import org.gradle.internal.FileUtils;
 import org.gradle.internal.concurrent.CompositeStoppable;
@@ -40,12 +42,16 @@ import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.RandomLongIdGenerator;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.util.GFileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -58,6 +64,10 @@ import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 
 /**
  * Uses file system locks on a lock file per target file.
+ *
+ * When a {@link MappedLockSignalWatcher} is given, each lock also uses a {@link MappedLockSignal} to ask the holder of the lock to release it and
+ * to find out when it has been released, without waiting for the next retry. A holder that does not watch the signal, such as a process that runs
+ * an older Gradle version, is still asked over the network by the {@link FileLockContentionHandler}.
  */
 public class DefaultFileLockManager implements FileLockManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileLockManager.class);
@@ -68,22 +78,33 @@ public class DefaultFileLockManager implements FileLockManager {
     private final int lockTimeoutMs;
     private final IdGenerator<Long> generator;
     private final FileLockContentionHandler fileLockContentionHandler;
+    private final MappedLockSignalWatcher mappedLockSignalWatcher;
     private final int shortTimeoutMs = 10000;
 
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler);
     }
 
+    public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler, @Nullable MappedLockSignalWatcher mappedLockSignalWatcher) {
+        this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler, new RandomLongIdGenerator(), mappedLockSignalWatcher);
+    }
+
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, new RandomLongIdGenerator());
     }
 
     DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
                            IdGenerator<Long> generator) {
+        this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, generator, null);
+    }
+
+    DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
+                           IdGenerator<Long> generator, @Nullable MappedLockSignalWatcher mappedLockSignalWatcher) {
         this.metaDataProvider = metaDataProvider;
         this.lockTimeoutMs = lockTimeoutMs;
         this.fileLockContentionHandler = fileLockContentionHandler;
         this.generator = generator;
+        this.mappedLockSignalWatcher = mappedLockSignalWatcher;
     }
 
     public FileLock lock(File target, LockOptions options, String targetDisplayName) throws LockTimeoutException {
@@ -130,6 +151,7 @@ public class DefaultFileLockManager implements FileLockManager {
         private LockState lockState;
         private int port;
         private final long lockId;
+        private MappedLockSignal mappedSignal;
 
         public DefaultFileLock(File target, LockOptions options, String displayName, String operationDisplayName, int port, Action<FileLockReleasedSignal> whenContended) throws Throwable {
             this.port = port;
@@ -155,13 +177,29 @@ public class DefaultFileLockManager implements FileLockManager {
             LockStateSerializer stateProtocol = options.isUseCrossVersionImplementation() ? new Version1LockStateSerializer() : new DefaultLockStateSerializer();
             lockFileAccess = new LockFileAccess(lockFile, new LockStateAccess(stateProtocol));
             try {
-                if (whenContended != null) {
-                    fileLockContentionHandler.start(lockId, whenContended);
+                Action<FileLockReleasedSignal> contendedAction = whenContended;
+                if (mappedLockSignalWatcher != null) {
+                    mappedSignal = new MappedLockSignal(lockFile);
+                    if (contendedAction != null) {
+                        // Both the contention handler and the watcher may receive a release request
+                        contendedAction = new SingleContendedAction(contendedAction);
+                    }
+                }
+                if (contendedAction != null) {
+                    fileLockContentionHandler.start(lockId, contendedAction);
                 }
                 lockState = lock(options.getMode());
+                if (mappedSignal != null && contendedAction != null && !lock.isShared()) {
+                    // Start watching before announcing it, so that no request is missed
+                    mappedLockSignalWatcher.watch(lockId, mappedSignal, contendedAction);
+                    mappedSignal.startWatching(lockId);
+                }
             } catch (Throwable t) {
                 // Also releases any locks
                 lockFileAccess.close();
+                if (mappedSignal != null) {
+                    mappedLockSignalWatcher.unwatch(lockId);
+                }
                 throw t;
             }
 
@@ -169,7 +207,8 @@ public class DefaultFileLockManager implements FileLockManager {
         }
 
         public boolean isLockFile(File file) {
-            return file.equals(lockFile);
+            // The signal file is mapped for the life of any process that hands off locks through it, so treat it as part of the lock whether or not this process does
+            return file.equals(lockFile) || file.equals(MappedLockSignal.signalFileFor(lockFile));
         }
 
         public boolean getUnlockedCleanly() {
@@ -197,6 +236,22 @@ public class DefaultFileLockManager implements FileLockManager {
             doWriteAction(action);
         }
 
+        public void appendFile(Runnable action) throws LockTimeoutException {
+            assertOpen();
+            if (mode != LockMode.Exclusive) {
+                throw new InsufficientLockModeException("An exclusive lock is required for this operation");
+            }
+
+            try {
+                // Record the update before running the action, so that the lock is clean should the process go away while the action runs
+                lockState = lockFileAccess.markDirty(lockState);
+                lockState = lockFileAccess.markClean(lockState);
+                action.run();
+            } catch (Throwable t) {
+                throw throwAsUncheckedException(t);
+            }
+        }
+
         private void doWriteAction(Runnable action) {
             if (mode != LockMode.Exclusive) {
                 throw new InsufficientLockModeException("An exclusive lock is required for this operation");
@@ -226,6 +281,14 @@ public class DefaultFileLockManager implements FileLockManager {
 
         public void close() {
             CompositeStoppable stoppable = new CompositeStoppable();
+            stoppable.add(new Stoppable() {
+                public void stop() {
+                    if (mappedSignal != null) {
+                        mappedLockSignalWatcher.unwatch(lockId);
+                        mappedSignal.stopWatching(lockId);
+                    }
+                }
+            });
             stoppable.add(new Stoppable() {
                 public void stop() {
                     if (lockFileAccess == null) {
@@ -258,6 +321,18 @@ public class DefaultFileLockManager implements FileLockManager {
                     }
                 }
             });
+            stoppable.add(new Stoppable() {
+                public void stop() {
+                    if (mappedSignal == null) {
+                        return;
+                    }
+                    try {
+                        mappedSignal.signalRelease();
+                    } finally {
+                        mappedSignal = null;
+                    }
+                }
+            });
             stoppable.add(new Stoppable() {
                 public void stop() {
                     try {
@@ -283,6 +358,7 @@ public class DefaultFileLockManager implements FileLockManager {
 
         private LockState lock(LockMode lockMode) throws Throwable {
             LOGGER.debug("Waiting to acquire {} lock on {}.", lockMode.toString().toLowerCase(), displayName);
+            Timer waitTimer = Time.startTimer();
 
             // Lock the state region, with the requested mode
             java.nio.channels.FileLock stateRegionLock = lockStateRegion(lockMode);
@@ -314,7 +390,7 @@ public class DefaultFileLockManager implements FileLockManager {
                     // Just read the state region
                     lockState = lockFileAccess.readLockState();
                 }
-                LOGGER.debug("Lock acquired on {}.", displayName);
+                LOGGER.debug("Lock acquired on {} after waiting {} ms.", displayName, waitTimer.getElapsedMillis());
                 lock = stateRegionLock;
                 return lockState;
             } catch (Throwable t) {
@@ -340,10 +416,11 @@ public class DefaultFileLockManager implements FileLockManager {
         }
 
         private java.nio.channels.FileLock lockStateRegion(final LockMode lockMode) throws IOException, InterruptedException {
-            final ExponentialBackoff backoff = new ExponentialBackoff(lockTimeoutMs);
+            final ExponentialBackoff backoff = new ExponentialBackoff(lockTimeoutMs, mappedSignal);
             return backoff.retryUntil(new IOQuery<java.nio.channels.FileLock>() {
                 private long lastPingTime;
                 private int lastLockHolderPort;
+                private long lastRequestedLockId;
 
                 @Override
                 public java.nio.channels.FileLock run() throws IOException, InterruptedException {
@@ -351,8 +428,18 @@ public class DefaultFileLockManager implements FileLockManager {
                     if (fileLock != null) {
                         return fileLock;
                     }
-                    if (port != -1) { //we don't like the assumption about the port very much
-                        LockInfo lockInfo = readInformationRegion(backoff);
+                    if (mappedSignal == null && port == -1) {
+                        return null;
+                    }
+                    LockInfo lockInfo = readInformationRegion(backoff);
+                    if (mappedSignal != null && mappedSignal.isWatchedBy(lockInfo.lockId)) {
+                        if (lockInfo.lockId != lastRequestedLockId) {
+                            backoff.restartTimer();
+                            lastRequestedLockId = lockInfo.lockId;
+                            mappedSignal.requestRelease();
+                            LOGGER.debug("The file lock is held by a different Gradle process (pid: {}, lockId: {}). Requested release through the lock signal file.", lockInfo.pid, lockInfo.lockId);
+                        }
+                    } else if (port != -1) { //we don't like the assumption about the port very much
                         if (lockInfo.port != -1) {
                             if (lockInfo.port != lastLockHolderPort) {
                                 backoff.restartTimer();
@@ -382,6 +469,55 @@ public class DefaultFileLockManager implements FileLockManager {
         }
     }
 
+    /**
+     * Runs the contended action of a lock only once, when the release of the lock can be requested in more than one way.
+     */
+    private static class SingleContendedAction implements Action<FileLockReleasedSignal> {
+        private final Action<FileLockReleasedSignal> delegate;
+        private final List<FileLockReleasedSignal> signals = new ArrayList<FileLockReleasedSignal>();
+        private boolean started;
+        private boolean released;
+
+        SingleContendedAction(Action<FileLockReleasedSignal> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(FileLockReleasedSignal signal) {
+            boolean alreadyReleased;
+            boolean alreadyStarted;
+            synchronized (this) {
+                alreadyReleased = released;
+                alreadyStarted = started;
+                if (!released) {
+                    signals.add(signal);
+                }
+                started = true;
+            }
+            if (alreadyReleased) {
+                signal.trigger();
+                return;
+            }
+            if (alreadyStarted) {
+                return;
+            }
+            delegate.execute(new FileLockReleasedSignal() {
+                @Override
+                public void trigger() {
+                    List<FileLockReleasedSignal> toTrigger;
+                    synchronized (SingleContendedAction.this) {
+                        released = true;
+                        toTrigger = new ArrayList<FileLockReleasedSignal>(signals);
+                        signals.clear();
+                    }
+                    for (FileLockReleasedSignal releasedSignal : toTrigger) {
+                        releasedSignal.trigger();
+                    }
+                }
+            });
+        }
+    }
+
     private interface IOQuery<T> {
         T run() throws IOException, InterruptedException;
     }
@@ -394,11 +530,20 @@ public class DefaultFileLockManager implements FileLockManager {
         private final Random random = new Random();
         private final AwaitableFileLockReleasedSignal signal = new AwaitableFileLockReleasedSignal();
 
+        private static final long MIN_RELEASE_POLL_INTERVAL = 5;
+        private static final long MAX_RELEASE_POLL_INTERVAL = 2 * SLOT_TIME;
+
         private final int timeoutMs;
+        private final MappedLockSignal mappedSignal;
         private CountdownTimer timer;
 
         private ExponentialBackoff(int timeoutMs) {
+            this(timeoutMs, null);
+        }
+
+        private ExponentialBackoff(int timeoutMs, @Nullable MappedLockSignal mappedSignal) {
             this.timeoutMs = timeoutMs;
+            this.mappedSignal = mappedSignal;
             restartTimer();
         }
 
@@ -409,18 +554,48 @@ public class DefaultFileLockManager implements FileLockManager {
         <T> T retryUntil(IOQuery<T> query) throws IOException, InterruptedException {
             int iteration = 0;
             T result;
+            long releaseCount = releaseCount();
             while ((result = query.run()) == null) {
                 if (timer.hasExpired()) {
                     break;
                 }
-                boolean signaled = signal.await(backoffPeriodFor(++iteration));
+                boolean signaled = await(backoffPeriodFor(++iteration), releaseCount);
                 if (signaled) {
                     iteration = 0;
                 }
+                releaseCount = releaseCount();
             }
             return result;
         }
 
+        private long releaseCount() {
+            return mappedSignal == null ? 0 : mappedSignal.getReleaseCount();
+        }
+
+        /**
+         * Waits for the given time, or until the lock is released. A release is noticed either through the signal, or through a change to the release count of the mapped signal.
+         */
+        private boolean await(long millis, long releaseCount) throws InterruptedException {
+            if (mappedSignal == null) {
+                return signal.await(millis);
+            }
+            long remaining = millis;
+            // Poll often at first, as the lock is usually released soon, then less and less often
+            long pollInterval = MIN_RELEASE_POLL_INTERVAL;
+            while (mappedSignal.getReleaseCount() == releaseCount) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                long period = Math.min(remaining, pollInterval);
+                if (signal.await(period)) {
+                    return true;
+                }
+                remaining -= period;
+                pollInterval = Math.min(pollInterval * 2, MAX_RELEASE_POLL_INTERVAL);
+            }
+            return true;
+        }
+
         long backoffPeriodFor(int iteration) {
             return random.nextInt(Math.min(iteration, CAP_FACTOR)) * SLOT_TIME;
         }
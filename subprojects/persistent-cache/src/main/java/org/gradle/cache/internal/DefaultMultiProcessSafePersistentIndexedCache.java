@@ -20,17 +20,26 @@ import org.gradle.cache.FileAccess;
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.IndexedCacheStore;
 import org.gradle.internal.Factory;
 
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends IndexedCacheStore<K, V>> factory;
+    private final boolean logged;
+    private IndexedCacheStore<K, V> cache;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends IndexedCacheStore<K, V>> factory, FileAccess fileAccess) {
+        this(factory, fileAccess, false);
+    }
+
+    /**
+     * @param logged whether the store appends the updates to a log that it recovers from, and marks the file access as uncleanly unlocked itself while it writes its other files.
+     */
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends IndexedCacheStore<K, V>> factory, FileAccess fileAccess, boolean logged) {
         this.factory = factory;
         this.fileAccess = fileAccess;
+        this.logged = logged;
     }
 
     @Override
@@ -40,7 +49,7 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public V get(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheStore<K, V> cache = getCache();
         try {
             return fileAccess.readFile(new Factory<V>() {
                 public V create() {
@@ -64,10 +73,8 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
-        // Use writeFile because the cache can internally recover from datafile
-        // corruption, so we don't care at this level if it's corrupt
-        fileAccess.writeFile(new Runnable() {
+        final IndexedCacheStore<K, V> cache = getCache();
+        update(new Runnable() {
             public void run() {
                 cache.put(key, value);
             }
@@ -76,10 +83,8 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
 
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
-        // Use writeFile because the cache can internally recover from datafile
-        // corruption, so we don't care at this level if it's corrupt
-        fileAccess.writeFile(new Runnable() {
+        final IndexedCacheStore<K, V> cache = getCache();
+        update(new Runnable() {
             public void run() {
                 cache.remove(key);
             }
@@ -109,7 +114,17 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
     public void beforeLockRelease(FileLock.State currentCacheState) {
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
+    private void update(Runnable action) {
+        if (logged) {
+            fileAccess.appendFile(action);
+        } else {
+            // Use writeFile because the cache can internally recover from datafile
+            // corruption, so we don't care at this level if it's corrupt
+            fileAccess.writeFile(action);
+        }
+    }
+
+    private IndexedCacheStore<K, V> getCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
@@ -23,6 +23,7 @@ import org.gradle.cache.FileLock;
 import org.gradle.cache.FileLockManager;
 import org.gradle.cache.LockOptions;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.btree.WriteAheadLogIndexedCacheStore;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 import org.gradle.util.GFileUtils;
@@ -65,6 +66,10 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
                 return true;
             }
 
+            return propertiesChanged();
+        }
+
+        private boolean propertiesChanged() {
             if (!properties.isEmpty()) {
                 if (!propertiesFile.exists()) {
                     LOGGER.debug("Invalidating {} as cache properties file {} is missing and cache properties are not empty.", DefaultPersistentDirectoryCache.this, propertiesFile.getAbsolutePath());
@@ -88,10 +93,15 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
             if (files == null) {
                 throw new UncheckedIOException("Cannot list files in " + getBaseDir());
             }
+            // Write-ahead logs recover from a process that went away while appending to them, so keep them unless the cache has changed
+            boolean keepLogs = !propertiesChanged();
             for (File file : files) {
                 if (fileLock.isLockFile(file) || file.equals(propertiesFile)) {
                     continue;
                 }
+                if (keepLogs && file.getName().endsWith(WriteAheadLogIndexedCacheStore.LOG_FILE_EXTENSION)) {
+                    continue;
+                }
                 GFileUtils.forceDelete(file);
             }
             if (initAction != null) {
@@ -23,6 +23,7 @@ import org.gradle.cache.FileLockManager;
 import org.gradle.cache.LockOptions;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.cache.internal.filelock.MappedLockSignal;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.logging.progress.ProgressLogger;
@@ -133,7 +134,8 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
 
     @Override
     public Collection<File> getReservedCacheFiles() {
-        return Arrays.asList(propertiesFile, gcFile, determineLockTargetFile(getLockTarget()));
+        File lockFile = determineLockTargetFile(getLockTarget());
+        return Arrays.asList(propertiesFile, gcFile, lockFile, MappedLockSignal.signalFileFor(lockFile));
     }
 
     // TODO: Duplicated in DefaultFileLockManager
@@ -62,4 +62,13 @@ public class OnDemandFileAccess extends AbstractFileAccess {
             lock.close();
         }
     }
+
+    public void appendFile(Runnable action) throws LockTimeoutException {
+        FileLock lock = manager.lock(targetFile, mode(FileLockManager.LockMode.Exclusive), displayName);
+        try {
+            lock.appendFile(action);
+        } finally {
+            lock.close();
+        }
+    }
 }
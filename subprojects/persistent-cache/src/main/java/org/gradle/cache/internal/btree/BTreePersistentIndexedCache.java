@@ -47,7 +47,7 @@ import java.util.List;
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
 @SuppressWarnings("unchecked")
-public class BTreePersistentIndexedCache<K, V> {
+public class BTreePersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
@@ -119,6 +119,7 @@ public class BTreePersistentIndexedCache<K, V> {
         header = store.readFirst(HeaderBlock.class);
     }
 
+    @Override
     public V get(K key) {
         try {
             try {
@@ -136,6 +137,7 @@ public class BTreePersistentIndexedCache<K, V> {
         }
     }
 
+    @Override
     public void put(K key, V value) {
         try {
             long hashCode = keyHasher.getHashCode(key);
@@ -161,6 +163,7 @@ public class BTreePersistentIndexedCache<K, V> {
         }
     }
 
+    @Override
     public void remove(K key) {
         try {
             Lookup lookup = header.getRoot().find(key);
@@ -176,6 +179,11 @@ public class BTreePersistentIndexedCache<K, V> {
         }
     }
 
+    @Override
+    public void flush() {
+        // Each update is written to the file before it returns
+    }
+
     private IndexBlock load(BlockPointer pos, IndexRoot root, IndexBlock parent, int index) {
         IndexBlock block = store.read(pos, IndexBlock.class);
         block.root = root;
@@ -193,6 +201,7 @@ public class BTreePersistentIndexedCache<K, V> {
         }
     }
 
+    @Override
     public void close() {
         LOGGER.debug("Closing {}", this);
         try {
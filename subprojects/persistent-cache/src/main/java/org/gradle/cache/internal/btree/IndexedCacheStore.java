@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import javax.annotation.Nullable;
+
+/**
+ * The files that back an indexed cache while the cache is open. Callers are responsible for holding the appropriate file lock.
+ */
+public interface IndexedCacheStore<K, V> {
+    @Nullable
+    V get(K key);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    /**
+     * Waits until the changes made so far have been written to the files of this store, so that they survive the process going away.
+     */
+    void flush();
+
+    /**
+     * Writes any pending changes and closes the files of this store.
+     */
+    void close();
+}
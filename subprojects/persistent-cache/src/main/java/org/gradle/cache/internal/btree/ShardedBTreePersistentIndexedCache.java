@@ -0,0 +1,314 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An indexed cache that partitions its keys across several independent {@link BTreePersistentIndexedCache} files, so that updates to different keys can be written concurrently.
+ *
+ * Each shard has its own lock and its own writer. Updates are queued on the shard and written in batches by the writer on the given executor, and reads see the queued updates.
+ * A shard only ever has one writer running, so that the updates to a shard are written in order. The writers are waited for when the cache is closed.
+ *
+ * A key is assigned to a shard using a hash of its serialized form, so the assignment is the same in every process that uses the cache.
+ */
+public class ShardedBTreePersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Object REMOVED = new Object();
+    private static final int MAX_PENDING_UPDATES = 1000;
+    private static final int WRITE_BATCH_SIZE = 100;
+
+    private final String displayName;
+    private final KeyHasher<K> keyHasher;
+    private final Executor writerExecutor;
+    private final List<Shard> shards;
+
+    public ShardedBTreePersistentIndexedCache(File baseDir, String cacheName, int shardCount, Serializer<K> keySerializer, Serializer<V> valueSerializer, Executor writerExecutor) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1.");
+        }
+        this.displayName = "sharded cache " + cacheName + " (" + baseDir + ")";
+        this.keyHasher = new KeyHasher<K>(keySerializer);
+        this.writerExecutor = writerExecutor;
+        this.shards = new ArrayList<Shard>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            File shardFile = new File(baseDir, shardFileName(cacheName, i, shardCount));
+            shards.add(new Shard(new BTreePersistentIndexedCache<K, V>(shardFile, keySerializer, valueSerializer)));
+        }
+    }
+
+    /**
+     * The file name includes the shard count, as the keys are assigned to different shards when the count changes.
+     */
+    public static String shardFileName(String cacheName, int shard, int shardCount) {
+        return cacheName + "-" + shard + "-of-" + shardCount + ".bin";
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        return shardFor(key).get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        shardFor(key).update(key, value);
+    }
+
+    @Override
+    public void remove(K key) {
+        shardFor(key).update(key, REMOVED);
+    }
+
+    /**
+     * Waits for the writers to write the queued updates.
+     */
+    @Override
+    public void flush() {
+        Throwable failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.flush();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        Throwable failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.close();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    private Shard shardFor(K key) {
+        long hashCode;
+        synchronized (keyHasher) {
+            try {
+                hashCode = keyHasher.getHashCode(key);
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        return shards.get((int) ((hashCode & Long.MAX_VALUE) % shards.size()));
+    }
+
+    private class Shard implements Runnable {
+        private final BTreePersistentIndexedCache<K, V> cache;
+        // Protects the cache file, which is written in batches so that the shard lock is not held while writing
+        private final Lock cacheLock = new ReentrantLock();
+        private final Lock lock = new ReentrantLock();
+        private final Condition writerProgressed = lock.newCondition();
+        // Protected by lock. Maps each key to the value to write, or to REMOVED
+        private final Map<K, Object> pendingUpdates = new LinkedHashMap<K, Object>();
+        // Protected by lock. The batch being written, which reads see until it is in the file
+        private Map<K, Object> writingUpdates = Collections.emptyMap();
+        private boolean writerRunning;
+        private Throwable writeFailure;
+
+        Shard(BTreePersistentIndexedCache<K, V> cache) {
+            this.cache = cache;
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        V get(K key) {
+            lock.lock();
+            try {
+                Object pending = pendingUpdates.get(key);
+                if (pending == null) {
+                    pending = writingUpdates.get(key);
+                }
+                if (pending != null) {
+                    return pending == REMOVED ? null : (V) pending;
+                }
+            } finally {
+                lock.unlock();
+            }
+            cacheLock.lock();
+            try {
+                return cache.get(key);
+            } finally {
+                cacheLock.unlock();
+            }
+        }
+
+        void update(K key, Object value) {
+            lock.lock();
+            try {
+                rethrowWriteFailure();
+                while (pendingUpdates.size() >= MAX_PENDING_UPDATES && writerRunning) {
+                    writerProgressed.awaitUninterruptibly();
+                }
+                // Remove first, so that the entry moves to the end and is written after any earlier updates
+                pendingUpdates.remove(key);
+                pendingUpdates.put(key, value);
+                if (!writerRunning) {
+                    writerRunning = true;
+                    try {
+                        writerExecutor.execute(this);
+                    } catch (RuntimeException e) {
+                        writerRunning = false;
+                        pendingUpdates.remove(key);
+                        throw e;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Writes the pending updates, one batch at a time. The shard lock is only held to take the next batch, so reads and updates can proceed while a batch is written.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Map<K, Object> batch;
+                lock.lock();
+                try {
+                    writingUpdates = Collections.emptyMap();
+                    if (pendingUpdates.isEmpty() || writeFailure != null) {
+                        pendingUpdates.clear();
+                        writerRunning = false;
+                        writerProgressed.signalAll();
+                        return;
+                    }
+                    batch = takeBatch();
+                    writingUpdates = batch;
+                    writerProgressed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    write(batch);
+                } catch (Throwable t) {
+                    lock.lock();
+                    try {
+                        writeFailure = t;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+
+        private Map<K, Object> takeBatch() {
+            Map<K, Object> batch = new LinkedHashMap<K, Object>();
+            Iterator<Map.Entry<K, Object>> iterator = pendingUpdates.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < WRITE_BATCH_SIZE) {
+                Map.Entry<K, Object> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            return batch;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void write(Map<K, Object> batch) {
+            cacheLock.lock();
+            try {
+                for (Map.Entry<K, Object> entry : batch.entrySet()) {
+                    if (entry.getValue() == REMOVED) {
+                        cache.remove(entry.getKey());
+                    } else {
+                        cache.put(entry.getKey(), (V) entry.getValue());
+                    }
+                }
+            } finally {
+                cacheLock.unlock();
+            }
+        }
+
+        void flush() {
+            lock.lock();
+            try {
+                awaitWriter();
+                rethrowWriteFailure();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                awaitWriter();
+                try {
+                    rethrowWriteFailure();
+                } finally {
+                    cacheLock.lock();
+                    try {
+                        cache.close();
+                    } finally {
+                        cacheLock.unlock();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void awaitWriter() {
+            while (writerRunning) {
+                writerProgressed.awaitUninterruptibly();
+            }
+        }
+
+        private void rethrowWriteFailure() {
+            if (writeFailure != null) {
+                Throwable failure = writeFailure;
+                writeFailure = null;
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+        }
+    }
+}
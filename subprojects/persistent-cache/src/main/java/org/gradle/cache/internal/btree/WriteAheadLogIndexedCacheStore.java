@@ -0,0 +1,325 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.FileAccess;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Appends the updates to an indexed cache to a log file, and only writes them to the backing store, in one go, once enough updates have been logged.
+ *
+ * The log is synced to disk after every batch of updates, rather than after every update. Reads see the logged updates that have not been written to the backing store yet.
+ * When the log is opened, it is read back into memory, ignoring any partly written update at its end. This way a process that crashes loses at most the last batch of updates,
+ * and a backing store that was discarded because it was corrupt still gets the updates made since it was last written.
+ *
+ * Appending to the log does not need to mark the cache as uncleanly unlocked, as the log recovers from an append that does not complete. Writing the backing store does,
+ * so checkpoints run as a {@link FileAccess#writeFile(Runnable)} action of the given file access.
+ *
+ * Like {@link BTreePersistentIndexedCache}, this class is not thread-safe.
+ */
+public class WriteAheadLogIndexedCacheStore<K, V> implements IndexedCacheStore<K, V> {
+    public static final String LOG_FILE_EXTENSION = ".wal";
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLogIndexedCacheStore.class);
+    private static final int DEFAULT_GROUP_COMMIT_SIZE = 100;
+    private static final int DEFAULT_CHECKPOINT_THRESHOLD = 10000;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final Object REMOVED = new Object();
+
+    private final File logFile;
+    private final IndexedCacheStore<K, V> store;
+    private final FileAccess fileAccess;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int groupCommitSize;
+    private final int checkpointThreshold;
+    // Maps each logged key to its value, or to REMOVED, until it has been written to the backing store
+    private final Map<K, Object> loggedUpdates = new LinkedHashMap<K, Object>();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final KryoBackedEncoder recordEncoder = new KryoBackedEncoder(recordBytes);
+    private final CRC32 checksum = new CRC32();
+    private FileOutputStream logOutput;
+    private DataOutputStream log;
+    private int uncommittedUpdates;
+
+    public WriteAheadLogIndexedCacheStore(File logFile, IndexedCacheStore<K, V> store, FileAccess fileAccess, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(logFile, store, fileAccess, keySerializer, valueSerializer, DEFAULT_GROUP_COMMIT_SIZE, DEFAULT_CHECKPOINT_THRESHOLD);
+    }
+
+    WriteAheadLogIndexedCacheStore(File logFile, IndexedCacheStore<K, V> store, FileAccess fileAccess, Serializer<K> keySerializer, Serializer<V> valueSerializer, int groupCommitSize, int checkpointThreshold) {
+        this.logFile = logFile;
+        this.store = store;
+        this.fileAccess = fileAccess;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.groupCommitSize = groupCommitSize;
+        this.checkpointThreshold = checkpointThreshold;
+        try {
+            openLog();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    /**
+     * Writes the updates from the given log, if it exists, to the given store and deletes the log. Used when a cache that was previously opened with a log is opened without one.
+     */
+    public static <K, V> void checkpointExistingLog(File logFile, IndexedCacheStore<K, V> store, FileAccess fileAccess, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (!logFile.isFile()) {
+            return;
+        }
+        WriteAheadLogIndexedCacheStore<K, V> logStore = new WriteAheadLogIndexedCacheStore<K, V>(logFile, store, fileAccess, keySerializer, valueSerializer);
+        logStore.checkpoint();
+        logStore.closeLog();
+        if (!logFile.delete()) {
+            LOGGER.debug("Could not delete {}.", logFile);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "write-ahead log " + logFile.getName() + " (" + logFile + ")";
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Object logged = loggedUpdates.get(key);
+        if (logged != null) {
+            return logged == REMOVED ? null : (V) logged;
+        }
+        return store.get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        append(PUT, key, value);
+        loggedUpdates.remove(key);
+        loggedUpdates.put(key, value);
+        afterAppend();
+    }
+
+    @Override
+    public void remove(K key) {
+        append(REMOVE, key, null);
+        loggedUpdates.remove(key);
+        loggedUpdates.put(key, REMOVED);
+        afterAppend();
+    }
+
+    /**
+     * Syncs the logged updates to disk. They are written to the backing store the next time the log is checkpointed.
+     */
+    @Override
+    public void flush() {
+        commit();
+    }
+
+    /**
+     * Syncs the logged updates to disk, but leaves them in the log. They are written to the backing store the next time the log is checkpointed.
+     */
+    @Override
+    public void close() {
+        try {
+            closeLog();
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Writes the logged updates to the backing store and waits for them to be in its files, then empties the log.
+     */
+    void checkpoint() {
+        fileAccess.writeFile(new Runnable() {
+            @Override
+            public void run() {
+                writeLoggedUpdates();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeLoggedUpdates() {
+        LOGGER.debug("Writing {} updates from {} to the backing store.", loggedUpdates.size(), this);
+        for (Map.Entry<K, Object> entry : loggedUpdates.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                store.remove(entry.getKey());
+            } else {
+                store.put(entry.getKey(), (V) entry.getValue());
+            }
+        }
+        // The backing store may only have queued the updates, so wait for them to be written before they are dropped from the log
+        store.flush();
+        loggedUpdates.clear();
+        try {
+            log.flush();
+            FileChannel channel = logOutput.getChannel();
+            channel.truncate(0);
+            channel.force(false);
+            uncommittedUpdates = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not truncate %s.", this), e);
+        }
+    }
+
+    private void afterAppend() {
+        uncommittedUpdates++;
+        if (loggedUpdates.size() >= checkpointThreshold) {
+            checkpoint();
+        } else if (uncommittedUpdates >= groupCommitSize) {
+            commit();
+        }
+    }
+
+    private void commit() {
+        try {
+            log.flush();
+            logOutput.getChannel().force(false);
+            uncommittedUpdates = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not sync %s.", this), e);
+        }
+    }
+
+    private void closeLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            commit();
+        } finally {
+            try {
+                log.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close {}.", this, e);
+            }
+            log = null;
+            logOutput = null;
+        }
+    }
+
+    private void append(byte type, K key, @Nullable V value) {
+        try {
+            recordBytes.reset();
+            recordEncoder.writeByte(type);
+            keySerializer.write(recordEncoder, key);
+            if (type == PUT) {
+                valueSerializer.write(recordEncoder, value);
+            }
+            recordEncoder.flush();
+            byte[] record = recordBytes.toByteArray();
+            checksum.reset();
+            checksum.update(record, 0, record.length);
+            log.writeInt(record.length);
+            log.writeLong(checksum.getValue());
+            log.write(record);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    private void openLog() throws IOException {
+        long validLength = 0;
+        if (logFile.isFile()) {
+            validLength = replay();
+            if (validLength < logFile.length()) {
+                LOGGER.info("Discarding incomplete updates at the end of {}.", this);
+                RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+                try {
+                    file.setLength(validLength);
+                } finally {
+                    file.close();
+                }
+            }
+        }
+        logOutput = new FileOutputStream(logFile, true);
+        log = new DataOutputStream(new BufferedOutputStream(logOutput));
+    }
+
+    /**
+     * Reads the complete updates from the log into memory, returning the length of the log that holds them.
+     */
+    @SuppressWarnings("unchecked")
+    private long replay() throws IOException {
+        long validLength = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+        try {
+            while (true) {
+                byte[] record;
+                long expectedChecksum;
+                try {
+                    int length = input.readInt();
+                    if (length <= 0 || length > logFile.length() - validLength) {
+                        break;
+                    }
+                    expectedChecksum = input.readLong();
+                    record = new byte[length];
+                    input.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(record, 0, record.length);
+                if (checksum.getValue() != expectedChecksum) {
+                    break;
+                }
+                KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(record), record.length);
+                try {
+                    byte type = decoder.readByte();
+                    K key = keySerializer.read(decoder);
+                    loggedUpdates.remove(key);
+                    loggedUpdates.put(key, type == PUT ? valueSerializer.read(decoder) : REMOVED);
+                } catch (Exception e) {
+                    LOGGER.warn("Could not read entry from {}. Discarding the rest of the log.", this, e);
+                    break;
+                } finally {
+                    decoder.close();
+                }
+                validLength += 4 + 8 + record.length;
+            }
+        } finally {
+            input.close();
+        }
+        LOGGER.debug("Read {} updates from {}.", loggedUpdates.size(), this);
+        return validLength;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.filelock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A small memory-mapped file next to a lock file, that the processes using the lock share to signal each other without sending messages over the network.
+ *
+ * The region holds the number of times a waiting process has asked for the lock to be released, the number of times the lock has been released,
+ * and the id of the lock holder that watches for release requests, if any. The counters only ever increase, so a process finds out about a
+ * request or a release by comparing a counter with the value it read earlier. Concurrent increments may be lost, but the counter still changes.
+ *
+ * Each signal file is mapped once per process and the mapping is shared by all the signals for the same lock file, as a mapping cannot be released
+ * explicitly. The file is mapped again when it has been replaced since it was mapped.
+ */
+public class MappedLockSignal {
+    private static final int REQUEST_COUNT_POS = 0;
+    private static final int RELEASE_COUNT_POS = 8;
+    private static final int WATCHING_LOCK_ID_POS = 16;
+    private static final int REGION_SIZE = 24;
+    private static final long NO_LOCK_ID = 0;
+
+    private static final Map<File, SharedRegion> REGIONS = new HashMap<File, SharedRegion>();
+
+    private final MappedByteBuffer region;
+
+    public MappedLockSignal(File lockFile) throws IOException {
+        region = regionFor(signalFileFor(lockFile).getAbsoluteFile());
+    }
+
+    private static MappedByteBuffer regionFor(File signalFile) throws IOException {
+        synchronized (REGIONS) {
+            SharedRegion shared = REGIONS.get(signalFile);
+            // Without a file key, as on Windows, the file cannot have been replaced, as a mapped file cannot be deleted there
+            if (shared != null && signalFile.isFile() && (shared.fileKey == null || shared.fileKey.equals(fileKeyOf(signalFile)))) {
+                return shared.region;
+            }
+            RandomAccessFile file = new RandomAccessFile(signalFile, "rw");
+            MappedByteBuffer region;
+            try {
+                if (file.length() < REGION_SIZE) {
+                    file.setLength(REGION_SIZE);
+                }
+                // The mapping stays valid once the file is closed
+                region = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+            } finally {
+                file.close();
+            }
+            REGIONS.put(signalFile, new SharedRegion(fileKeyOf(signalFile), region));
+            return region;
+        }
+    }
+
+    /**
+     * Returns the identity of the file, or null when the file does not exist or the platform does not provide one.
+     */
+    private static Object fileKeyOf(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static File signalFileFor(File lockFile) {
+        return new File(lockFile.getParentFile(), lockFile.getName() + ".signal");
+    }
+
+    public long getRequestCount() {
+        return region.getLong(REQUEST_COUNT_POS);
+    }
+
+    /**
+     * Asks the holder of the lock to release it.
+     */
+    public void requestRelease() {
+        region.putLong(REQUEST_COUNT_POS, region.getLong(REQUEST_COUNT_POS) + 1);
+    }
+
+    public long getReleaseCount() {
+        return region.getLong(RELEASE_COUNT_POS);
+    }
+
+    /**
+     * Tells the waiting processes that the lock has been released.
+     */
+    public void signalRelease() {
+        region.putLong(RELEASE_COUNT_POS, region.getLong(RELEASE_COUNT_POS) + 1);
+    }
+
+    /**
+     * Returns true when the holder with the given lock id watches for release requests, so that there is no need to contact it any other way.
+     */
+    public boolean isWatchedBy(long lockId) {
+        return lockId != NO_LOCK_ID && region.getLong(WATCHING_LOCK_ID_POS) == lockId;
+    }
+
+    public void startWatching(long lockId) {
+        region.putLong(WATCHING_LOCK_ID_POS, lockId);
+    }
+
+    public void stopWatching(long lockId) {
+        if (region.getLong(WATCHING_LOCK_ID_POS) == lockId) {
+            region.putLong(WATCHING_LOCK_ID_POS, NO_LOCK_ID);
+        }
+    }
+
+    private static class SharedRegion {
+        private final Object fileKey;
+        private final MappedByteBuffer region;
+
+        SharedRegion(Object fileKey, MappedByteBuffer region) {
+            this.fileKey = fileKey;
+            this.region = region;
+        }
+    }
+}
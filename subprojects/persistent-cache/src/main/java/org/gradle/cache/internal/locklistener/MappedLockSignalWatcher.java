@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.locklistener;
+
+import org.gradle.api.Action;
+import org.gradle.cache.FileLockReleasedSignal;
+import org.gradle.cache.internal.filelock.MappedLockSignal;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Watches the {@link MappedLockSignal} of the locks held by this process for release requests from other processes on the same machine.
+ *
+ * This is an alternative to {@link DefaultFileLockContentionHandler} that does not need any network communication. While at least one lock is watched,
+ * a thread polls the request counter of each watched lock, less and less often while there are no requests. When the counter changes, the contended action of the lock is started once. There is no need
+ * to confirm the release to the requesters, as closing the lock increments the release counter that the requesters poll.
+ */
+public class MappedLockSignalWatcher implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedLockSignalWatcher.class);
+    private static final long MIN_POLL_INTERVAL = 10;
+    private static final long MAX_POLL_INTERVAL = 100;
+    private static final FileLockReleasedSignal RELEASE_ALREADY_SIGNALED = new FileLockReleasedSignal() {
+        @Override
+        public void trigger() {
+        }
+    };
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition locksWatched = lock.newCondition();
+    private final Map<Long, WatchedLock> watchedLocks = new HashMap<Long, WatchedLock>();
+    private final ExecutorFactory executorFactory;
+    private ManagedExecutor requestPoller;
+    private ManagedExecutor unlockActionExecutor;
+    private boolean stopped;
+    private long pollInterval = MIN_POLL_INTERVAL;
+
+    public MappedLockSignalWatcher(ExecutorFactory executorFactory) {
+        this.executorFactory = executorFactory;
+    }
+
+    public void watch(long lockId, MappedLockSignal signal, Action<FileLockReleasedSignal> whenContended) {
+        lock.lock();
+        try {
+            if (stopped) {
+                throw new IllegalStateException("Cannot watch for lock release requests because this watcher has been stopped.");
+            }
+            if (requestPoller == null) {
+                requestPoller = executorFactory.create("File lock request poller");
+                requestPoller.execute(new RequestPoller());
+            }
+            if (unlockActionExecutor == null) {
+                unlockActionExecutor = executorFactory.create("File lock release action executor");
+            }
+            watchedLocks.put(lockId, new WatchedLock(signal, whenContended));
+            // Requests for a newly acquired lock are likely
+            pollInterval = MIN_POLL_INTERVAL;
+            locksWatched.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unwatch(long lockId) {
+        lock.lock();
+        try {
+            watchedLocks.remove(lockId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            watchedLocks.clear();
+            locksWatched.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (requestPoller != null) {
+            requestPoller.stop();
+        }
+        if (unlockActionExecutor != null) {
+            unlockActionExecutor.stop();
+        }
+    }
+
+    private class RequestPoller implements Runnable {
+        @Override
+        public void run() {
+            try {
+                long interval;
+                while ((interval = pollOnce()) > 0) {
+                    Thread.sleep(interval);
+                }
+            } catch (InterruptedException e) {
+                // Stopped
+            } catch (Throwable t) {
+                //Logging exception here is only needed because by default Gradle does not show the stack trace
+                LOGGER.error("Problems handling incoming cache access requests.", t);
+            }
+        }
+
+        /**
+         * Returns the time to wait before polling again, or 0 when stopped.
+         */
+        private long pollOnce() throws InterruptedException {
+            List<WatchedLock> contended = new ArrayList<WatchedLock>();
+            lock.lock();
+            try {
+                while (!stopped && watchedLocks.isEmpty()) {
+                    locksWatched.await();
+                }
+                if (stopped) {
+                    return 0;
+                }
+                for (WatchedLock watchedLock : watchedLocks.values()) {
+                    if (!watchedLock.contended && watchedLock.signal.getRequestCount() != watchedLock.requestCount) {
+                        watchedLock.contended = true;
+                        contended.add(watchedLock);
+                    }
+                }
+                for (WatchedLock watchedLock : contended) {
+                    unlockActionExecutor.execute(watchedLock);
+                }
+                pollInterval = contended.isEmpty() ? Math.min(pollInterval * 2, MAX_POLL_INTERVAL) : MIN_POLL_INTERVAL;
+                return pollInterval;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class WatchedLock implements Runnable {
+        private final MappedLockSignal signal;
+        private final Action<FileLockReleasedSignal> whenContended;
+        private final long requestCount;
+        private boolean contended;
+
+        WatchedLock(MappedLockSignal signal, Action<FileLockReleasedSignal> whenContended) {
+            this.signal = signal;
+            this.whenContended = whenContended;
+            this.requestCount = signal.getRequestCount();
+        }
+
+        @Override
+        public void run() {
+            whenContended.execute(RELEASE_ALREADY_SIGNALED);
+        }
+    }
+}
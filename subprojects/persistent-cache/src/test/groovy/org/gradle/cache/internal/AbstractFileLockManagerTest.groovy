@@ -23,6 +23,7 @@ import org.gradle.cache.FileLockManager
 import org.gradle.cache.InsufficientLockModeException
 import org.gradle.cache.internal.filelock.LockInfoSerializer
 import org.gradle.cache.internal.filelock.LockOptionsBuilder
+import org.gradle.cache.internal.filelock.MappedLockSignal
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler
 import org.gradle.internal.Factory
 import org.gradle.internal.concurrent.CompositeStoppable
@@ -125,6 +126,21 @@ abstract class AbstractFileLockManagerTest extends Specification {
         lockMode << [Exclusive, Shared]
     }
 
+    def "lock signal file is used by the lock"() {
+        when:
+        def lock = createLock(lockMode)
+
+        then:
+        lock.isLockFile(MappedLockSignal.signalFileFor(tmpDir.file(testFile.name + ".lock")))
+        !lock.isLockFile(testFile)
+
+        cleanup:
+        lock?.close()
+
+        where:
+        lockMode << [Exclusive, Shared]
+    }
+
     def "can lock a directory"() {
         when:
         def lock = createLock(lockMode, testDir)
@@ -258,6 +274,30 @@ abstract class AbstractFileLockManagerTest extends Specification {
         lock?.close()
     }
 
+    def "existing lock is unlocked cleanly after appendFile() throws exception"() {
+        def failure = new RuntimeException()
+
+        when:
+        def lock = createLock(Exclusive)
+        lock.writeFile({})
+        lock.appendFile({ throw failure } as Runnable)
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+        lock.unlockedCleanly
+
+        when:
+        lock.close()
+        lock = createLock(Exclusive)
+
+        then:
+        lock.unlockedCleanly
+
+        cleanup:
+        lock?.close()
+    }
+
     def "cannot lock a file twice in single process"() {
         given:
         createLock(Exclusive);
@@ -471,6 +511,21 @@ abstract class AbstractFileLockManagerTest extends Specification {
         thrown InsufficientLockModeException
     }
 
+    def "require exclusive lock for appending"() {
+        given:
+        writeFile()
+        def lock = createLock(Shared)
+
+        when:
+        lock.appendFile {}
+
+        then:
+        thrown InsufficientLockModeException
+
+        cleanup:
+        lock?.close()
+    }
+
     def "require exclusive lock for updating"() {
         given:
         writeFile()
@@ -697,6 +697,20 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access?.close()
     }
 
+    def "throws InvalidCacheReuseException when shard count differs"() {
+        def access = newAccess(None)
+
+        when:
+        access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class))
+        access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class).withShardCount(4))
+
+        then:
+        thrown(DefaultCacheAccess.InvalidCacheReuseException)
+
+        cleanup:
+        access?.close()
+    }
+
     def "throws InvalidCacheReuseException when cache decorator differs"() {
         def access = newAccess(None)
         def decorator = Mock(CacheDecorator)
@@ -24,6 +24,7 @@ import org.gradle.cache.LockTimeoutException
 import org.gradle.cache.internal.filelock.LockOptionsBuilder
 import org.gradle.cache.internal.locklistener.DefaultFileLockContentionHandler
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler
+import org.gradle.cache.internal.locklistener.MappedLockSignalWatcher
 import org.gradle.internal.concurrent.CompositeStoppable
 import org.gradle.internal.id.LongIdGenerator
 import org.gradle.internal.remote.internal.inet.InetAddressFactory
@@ -87,6 +88,37 @@ class DefaultFileLockManagerContentionTest extends ConcurrentSpec {
         lockMode << [Exclusive, Shared]
     }
 
+    @Unroll
+    def "lock manager using mapped lock signal is asked to release its exclusive lock without network communication when another lock manager requires lock with mode #lockMode"() {
+        given:
+        def watcher = new MappedLockSignalWatcher(executorFactory)
+        def watcher2 = new MappedLockSignalWatcher(executorFactory)
+        def contentionHandler3 = Mock(FileLockContentionHandler)
+        def mappedManager = new DefaultFileLockManager(Stub(ProcessMetaDataProvider), 2000, contentionHandler3, new LongIdGenerator(), watcher)
+        def mappedManager2 = new DefaultFileLockManager(Stub(ProcessMetaDataProvider), 2000, contentionHandler3, new LongIdGenerator(), watcher2)
+        def file = tmpDir.file("lock-file.bin")
+        def action = Mock(Action)
+
+        def lock = createLock(Exclusive, file, mappedManager, action)
+
+        when:
+        def lock2 = createLock(lockMode, file, mappedManager2)
+
+        then:
+        lock2
+        1 * action.execute(_) >> { FileLockReleasedSignal signal ->
+            lock.close()
+            signal.trigger()
+        }
+        0 * contentionHandler3.maybePingOwner(_, _, _, _, _)
+
+        cleanup:
+        CompositeStoppable.stoppable(watcher, watcher2).stop()
+
+        where:
+        lockMode << [Exclusive, Shared]
+    }
+
     def "lock manage resets the timeout if the lock owner changes"() {
         given:
         FileLockContentionHandler contentionHandler3 = Mock(FileLockContentionHandler)
@@ -163,6 +163,25 @@ class DefaultFileLockManagerWithNewProtocolTest extends AbstractFileLockManagerT
         lock?.close()
     }
 
+    def "a lock has been updated when appended to while open"() {
+        given:
+        def lockManager = new DefaultFileLockManager(metaDataProvider, contentionHandler)
+        writeFile(lockManager)
+
+        and:
+        def lock = createLock(Exclusive)
+        def beforeUpdate = lock.state
+
+        when:
+        lock.appendFile { }
+
+        then:
+        lock.state.hasBeenUpdatedSince(beforeUpdate)
+
+        cleanup:
+        lock?.close()
+    }
+
     def "a lock has been updated when lock is dirty"() {
         given:
         def lockManager = new DefaultFileLockManager(metaDataProvider, contentionHandler)
@@ -20,6 +20,7 @@ import org.gradle.cache.CacheBuilder
 import org.gradle.cache.CleanupAction
 import org.gradle.cache.FileLockManager
 import org.gradle.cache.PersistentCache
+import org.gradle.cache.internal.filelock.MappedLockSignal
 import org.gradle.cache.internal.locklistener.NoOpFileLockContentionHandler
 import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.logging.progress.ProgressLoggerFactory
@@ -190,6 +191,67 @@ class DefaultPersistentDirectoryCacheTest extends AbstractProjectBuilderSpec {
         cache.close()
     }
 
+    def "keeps write-ahead logs when rebuilding cache that was not unlocked cleanly"() {
+        given:
+        def dir = createCacheDir()
+        dir.file("some.bin").createFile()
+        dir.file("some.wal").createFile()
+        def cache = new DefaultPersistentDirectoryCache(dir, "<display-name>", properties, CacheBuilder.LockTarget.DefaultTarget,
+            mode(FileLockManager.LockMode.Exclusive), initializationAction, CleanupAction.NO_OP, createDefaultFileLockManager(), Mock(ExecutorFactory), progressLoggerFactory)
+
+        when:
+        unlockUncleanly(dir)
+        cache.open()
+
+        then:
+        1 * initializationAction.execute(_ as PersistentCache)
+        dir.file("some.wal").assertIsFile()
+        dir.file("some.bin").assertDoesNotExist()
+        dir.file("some-file").assertDoesNotExist()
+
+        cleanup:
+        cache.close()
+    }
+
+    def "keeps lock signal file when rebuilding cache"() {
+        given:
+        def dir = createCacheDir()
+        def signalFile = MappedLockSignal.signalFileFor(dir.file(dir.name + ".lock"))
+        signalFile.createNewFile()
+        def cache = new DefaultPersistentDirectoryCache(dir, "<display-name>", properties, CacheBuilder.LockTarget.DefaultTarget,
+            mode(FileLockManager.LockMode.Exclusive), initializationAction, CleanupAction.NO_OP, createDefaultFileLockManager(), Mock(ExecutorFactory), progressLoggerFactory)
+
+        when:
+        unlockUncleanly(dir)
+        cache.open()
+
+        then:
+        1 * initializationAction.execute(_ as PersistentCache)
+        signalFile.isFile()
+        dir.file("some-file").assertDoesNotExist()
+
+        cleanup:
+        cache.close()
+    }
+
+    def "discards write-ahead logs when rebuilding cache whose properties have changed"() {
+        given:
+        def dir = createCacheDir()
+        dir.file("some.wal").createFile()
+        def cache = new DefaultPersistentDirectoryCache(dir, "<display-name>", properties + [prop: 'changed'], CacheBuilder.LockTarget.DefaultTarget,
+            mode(FileLockManager.LockMode.Exclusive), initializationAction, CleanupAction.NO_OP, createDefaultFileLockManager(), Mock(ExecutorFactory), progressLoggerFactory)
+
+        when:
+        cache.open()
+
+        then:
+        1 * initializationAction.execute(_ as PersistentCache)
+        dir.file("some.wal").assertDoesNotExist()
+
+        cleanup:
+        cache.close()
+    }
+
     def "will rebuild cache if cache.properties is missing and properties are not empty"() {
         given:
         def dir = createCacheDir()
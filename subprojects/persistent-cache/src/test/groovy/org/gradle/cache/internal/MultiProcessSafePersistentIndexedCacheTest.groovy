@@ -77,6 +77,24 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
+    def "appends under write lock without marking it dirty while updating logged cache"() {
+        given:
+        def loggedCache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, true)
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> backingCache
+        loggedCache.get("something")
+
+        when:
+        loggedCache.put("key", "value")
+        loggedCache.remove("key")
+
+        then:
+        2 * fileAccess.appendFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.put("key", "value")
+        1 * backingCache.remove("key")
+        0 * _._
+    }
+
     def "holds write lock while closing cache"() {
         given:
         cacheOpened()
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.AbstractSerializer
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.internal.serialize.Decoder
+import org.gradle.internal.serialize.Encoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+class ShardedBTreePersistentIndexedCacheTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "stores entries across shard files"() {
+        def cache = newCache(executor)
+
+        when:
+        100.times { cache.put("key-$it".toString(), it) }
+        cache.remove("key-50")
+        cache.close()
+
+        then:
+        (0..3).every { tmpDir.file(ShardedBTreePersistentIndexedCache.shardFileName("cache", it, 4)).isFile() }
+
+        when:
+        def reopened = newCache(executor)
+
+        then:
+        reopened.get("key-0") == 0
+        reopened.get("key-99") == 99
+        reopened.get("key-50") == null
+        (0..99).findAll { reopened.get("key-$it".toString()) != null }.size() == 99
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "reads see updates that have not been written yet"() {
+        def writers = []
+        def cache = newCache({ writers << it } as Executor)
+
+        when:
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.put("a", 3)
+        cache.remove("b")
+
+        then:
+        cache.get("a") == 3
+        cache.get("b") == null
+
+        when:
+        writers*.run()
+        cache.close()
+        def reopened = newCache(executor)
+
+        then:
+        reopened.get("a") == 3
+        reopened.get("b") == null
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "writes pending updates in several batches"() {
+        def writers = []
+        def cache = newCache({ writers << it } as Executor)
+
+        when:
+        1000.times { cache.put("key-$it".toString(), it) }
+
+        then:
+        writers.size() == 4
+
+        when:
+        writers*.run()
+        cache.close()
+        def reopened = newCache(executor)
+
+        then:
+        (0..999).every { reopened.get("key-$it".toString()) == it }
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "rethrows write failure on close"() {
+        def cache = new ShardedBTreePersistentIndexedCache<String, Integer>(tmpDir.testDirectory, "cache", 2, BaseSerializerFactory.STRING_SERIALIZER, new FailingSerializer(), executor)
+
+        when:
+        cache.put("a", 1)
+        cache.close()
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message.contains("Could not add entry 'a'")
+    }
+
+    def "flush waits for the writers and rethrows write failure"() {
+        def cache = new ShardedBTreePersistentIndexedCache<String, Integer>(tmpDir.testDirectory, "cache", 2, BaseSerializerFactory.STRING_SERIALIZER, new FailingSerializer(), executor)
+
+        when:
+        cache.put("a", 1)
+        cache.flush()
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message.contains("Could not add entry 'a'")
+
+        cleanup:
+        cache.close()
+    }
+
+    def "uses a separate set of files for each shard count"() {
+        when:
+        def cache = newCache(executor)
+        cache.put("a", 1)
+        cache.close()
+        def resharded = new ShardedBTreePersistentIndexedCache<String, Integer>(tmpDir.testDirectory, "cache", 2, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, executor)
+
+        then:
+        resharded.get("a") == null
+
+        cleanup:
+        resharded?.close()
+    }
+
+    ShardedBTreePersistentIndexedCache<String, Integer> newCache(Executor executor) {
+        new ShardedBTreePersistentIndexedCache<String, Integer>(tmpDir.testDirectory, "cache", 4, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, executor)
+    }
+
+    static class FailingSerializer extends AbstractSerializer<Integer> {
+        @Override
+        Integer read(Decoder decoder) {
+            throw new UnsupportedOperationException()
+        }
+
+        @Override
+        void write(Encoder encoder, Integer value) {
+            throw new IOException("broken")
+        }
+    }
+}
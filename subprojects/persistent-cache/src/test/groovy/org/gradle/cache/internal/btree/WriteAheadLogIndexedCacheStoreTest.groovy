@@ -0,0 +1,200 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.cache.FileAccess
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class WriteAheadLogIndexedCacheStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    TestFile cacheFile = tmpDir.file("cache.bin")
+    TestFile logFile = tmpDir.file("cache.wal")
+    FileAccess fileAccess = Stub(FileAccess) {
+        writeFile(_) >> { Runnable action -> action.run() }
+    }
+
+    def "keeps updates in the log until checkpointed"() {
+        def store = newStore()
+
+        when:
+        store.put("a", 1)
+        store.put("b", 2)
+        store.remove("b")
+
+        then:
+        store.get("a") == 1
+        store.get("b") == null
+
+        when:
+        store.close()
+
+        then:
+        withCacheFile { it.get("a") } == null
+
+        when:
+        def reopened = newStore()
+
+        then:
+        reopened.get("a") == 1
+        reopened.get("b") == null
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "writes updates to the cache file once enough updates have been logged"() {
+        def store = newStore()
+
+        when:
+        4.times { store.put("key-$it".toString(), it) }
+
+        then:
+        logFile.length() > 0
+
+        when:
+        store.put("key-4", 4)
+
+        then:
+        logFile.length() == 0
+        store.get("key-0") == 0
+        store.get("key-4") == 4
+
+        cleanup:
+        store?.close()
+    }
+
+    def "writes logged updates to the backing store and waits for them to be written before truncating the log"() {
+        def fileAccess = Mock(FileAccess)
+        def backingStore = Mock(IndexedCacheStore)
+        def store = new WriteAheadLogIndexedCacheStore<String, Integer>(logFile, backingStore, fileAccess, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, 2, 5)
+
+        when:
+        5.times { store.put("key-$it".toString(), it) }
+
+        then:
+        1 * fileAccess.writeFile(_) >> { Runnable action -> action.run() }
+        5 * backingStore.put(_, _)
+
+        then:
+        1 * backingStore.flush() >> {
+            assert logFile.length() > 0
+        }
+        0 * _
+
+        and:
+        logFile.length() == 0
+
+        cleanup:
+        store?.close()
+    }
+
+    def "replays log of a store that was not closed"() {
+        def store = newStore()
+        store.put("a", 1)
+        store.put("b", 2)
+
+        when:
+        def reopened = newStore()
+
+        then:
+        reopened.get("a") == 1
+        reopened.get("b") == 2
+
+        cleanup:
+        reopened?.close()
+        store?.close()
+    }
+
+    def "discards incomplete update at the end of the log"() {
+        def store = newStore()
+        store.put("a", 1)
+        store.close()
+        def completeLength = logFile.length()
+        logFile << ([0, 0, 0, 20, 1, 2, 3] as byte[])
+
+        when:
+        def reopened = newStore()
+        reopened.put("b", 2)
+        reopened.close()
+        reopened = newStore()
+
+        then:
+        logFile.length() > completeLength
+        reopened.get("a") == 1
+        reopened.get("b") == 2
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "replays log when cache file has been discarded"() {
+        def store = newStore()
+        store.put("a", 1)
+        store.close()
+
+        when:
+        cacheFile.delete()
+        def reopened = newStore()
+
+        then:
+        reopened.get("a") == 1
+
+        cleanup:
+        reopened?.close()
+    }
+
+    def "writes existing log to the cache file when opened without a log"() {
+        def store = newStore()
+        store.put("a", 1)
+        store.remove("a")
+        store.put("b", 2)
+        store.close()
+
+        when:
+        def cache = newCache()
+        WriteAheadLogIndexedCacheStore.checkpointExistingLog(logFile, cache, fileAccess, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER)
+
+        then:
+        !logFile.exists()
+        cache.get("a") == null
+        cache.get("b") == 2
+
+        cleanup:
+        cache?.close()
+    }
+
+    private WriteAheadLogIndexedCacheStore<String, Integer> newStore() {
+        new WriteAheadLogIndexedCacheStore<String, Integer>(logFile, newCache(), fileAccess, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, 2, 5)
+    }
+
+    private BTreePersistentIndexedCache<String, Integer> newCache() {
+        new BTreePersistentIndexedCache<String, Integer>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER)
+    }
+
+    private <T> T withCacheFile(Closure<T> action) {
+        def cache = newCache()
+        try {
+            return action(cache)
+        } finally {
+            cache.close()
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.filelock
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedLockSignalTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def lockFile = tmpDir.file("cache.lock")
+
+    def "signals are visible to other users of the signal file"() {
+        def holder = new MappedLockSignal(lockFile)
+        def waiter = new MappedLockSignal(lockFile)
+
+        expect:
+        MappedLockSignal.signalFileFor(lockFile) == tmpDir.file("cache.lock.signal")
+        waiter.requestCount == 0
+        waiter.releaseCount == 0
+
+        when:
+        waiter.requestRelease()
+        holder.signalRelease()
+
+        then:
+        holder.requestCount == 1
+        waiter.releaseCount == 1
+    }
+
+    def "only the lock holder that started watching is watching"() {
+        def holder = new MappedLockSignal(lockFile)
+        def waiter = new MappedLockSignal(lockFile)
+
+        when:
+        holder.startWatching(12)
+
+        then:
+        waiter.isWatchedBy(12)
+        !waiter.isWatchedBy(13)
+
+        when:
+        holder.stopWatching(13)
+
+        then:
+        waiter.isWatchedBy(12)
+
+        when:
+        holder.stopWatching(12)
+
+        then:
+        !waiter.isWatchedBy(12)
+        !waiter.isWatchedBy(0)
+    }
+
+    def "keeps counters when reopened"() {
+        def signal = new MappedLockSignal(lockFile)
+        signal.requestRelease()
+        signal.signalRelease()
+        signal.signalRelease()
+
+        when:
+        signal = new MappedLockSignal(lockFile)
+
+        then:
+        signal.requestCount == 1
+        signal.releaseCount == 2
+    }
+
+    @Requires(TestPrecondition.NOT_WINDOWS)
+    def "maps the signal file again when it has been replaced"() {
+        def signal = new MappedLockSignal(lockFile)
+        signal.requestRelease()
+
+        when:
+        MappedLockSignal.signalFileFor(lockFile).delete()
+        def replaced = new MappedLockSignal(lockFile)
+
+        then:
+        replaced.requestCount == 0
+        signal.requestCount == 1
+    }
+}
@@ -76,7 +76,7 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
     }
 
     private HttpResponseResource wrapResponse(URI uri, HttpClientResponse response) {
-        return new HttpResponseResource("GET", uri, response);
+        return new HttpResponseResource("GET", uri, response, http);
     }
 
 }
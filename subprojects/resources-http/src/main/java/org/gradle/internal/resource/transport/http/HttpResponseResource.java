@@ -16,7 +16,9 @@
 package org.gradle.internal.resource.transport.http;
 
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.utils.DateUtils;
+import org.gradle.internal.IoActions;
 import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.resource.metadata.DefaultExternalResourceMetaData;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
@@ -24,6 +26,7 @@ import org.gradle.internal.resource.transfer.ExternalResourceReadResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -34,13 +37,23 @@ public class HttpResponseResource implements ExternalResourceReadResponse {
     private final String method;
     private final URI source;
     private final HttpClientResponse response;
+    private final HttpClientHelper http;
     private final ExternalResourceMetaData metaData;
     private boolean wasOpened;
+    private InputStream content;
 
     public HttpResponseResource(String method, URI source, HttpClientResponse response) {
+        this(method, source, response, null);
+    }
+
+    /**
+     * @param http When not null, used to resume the download of the content with a range request when the connection fails part way through.
+     */
+    public HttpResponseResource(String method, URI source, HttpClientResponse response, @Nullable HttpClientHelper http) {
         this.method = method;
         this.source = source;
         this.response = response;
+        this.http = http;
 
         String etag = getEtag(response);
         this.metaData = new DefaultExternalResourceMetaData(source, getLastModified(), getContentLength(), getContentType(), etag, getSha1(response, etag));
@@ -106,12 +119,21 @@ public class HttpResponseResource implements ExternalResourceReadResponse {
         }
         LOGGER.debug("Attempting to download resource {}.", source);
         this.wasOpened = true;
-        return response.getContent();
+        if (http == null || getStatusCode() != HttpStatus.SC_OK) {
+            return response.getContent();
+        }
+        content = ResumableHttpInputStream.open(http, response, getContentLength());
+        return content;
     }
 
     @Override
     public void close() {
-        response.close();
+        try {
+            // Also releases any response the content was resumed from
+            IoActions.closeQuietly(content);
+        } finally {
+            response.close();
+        }
     }
 
     private static String getEtag(HttpClientResponse response) {
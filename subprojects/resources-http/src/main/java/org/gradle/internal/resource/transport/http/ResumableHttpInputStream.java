@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Reads the content of a GET response, resuming the download with a range request when the connection fails part way through,
+ * so that a dropped connection does not restart a large download from the beginning.
+ *
+ * The download is only resumed when the server identified the content with a strong entity tag or a modification date, which the
+ * range request sends back as {@code If-Range}. A server that has a different version of the resource then answers with the full
+ * content instead of the requested range, and the original failure is reported.
+ */
+class ResumableHttpInputStream extends InputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResumableHttpInputStream.class);
+    private static final int MAX_RESUME_ATTEMPTS = 3;
+
+    private final HttpClientHelper http;
+    private final URI uri;
+    private final long contentLength;
+    private final String validator;
+    private HttpClientResponse response;
+    private InputStream content;
+    private long position;
+    private int resumeAttempts;
+
+    private ResumableHttpInputStream(HttpClientHelper http, HttpClientResponse response, InputStream content, long contentLength, String validator) {
+        this.http = http;
+        this.uri = response.getEffectiveUri();
+        this.response = response;
+        this.content = content;
+        this.contentLength = contentLength;
+        this.validator = validator;
+    }
+
+    /**
+     * Returns a stream over the content of the given response, that resumes the download if possible.
+     */
+    static InputStream open(HttpClientHelper http, HttpClientResponse response, long contentLength) throws IOException {
+        InputStream content = response.getContent();
+        String validator = validatorFor(response);
+        if (contentLength <= 0 || validator == null || "none".equalsIgnoreCase(response.getHeader(HttpHeaders.ACCEPT_RANGES)) || response.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            return content;
+        }
+        return new ResumableHttpInputStream(http, response, content, contentLength, validator);
+    }
+
+    @Nullable
+    private static String validatorFor(HttpClientResponse response) {
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        // Weak entity tags cannot be used for range requests
+        return response.getHeader(HttpHeaders.LAST_MODIFIED);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            try {
+                int read = content.read();
+                if (read >= 0) {
+                    position++;
+                    return read;
+                }
+                if (position >= contentLength) {
+                    return read;
+                }
+                resume(new EOFException(String.format("Unexpected end of content after %d of %d bytes.", position, contentLength)));
+            } catch (IOException e) {
+                resume(e);
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            try {
+                int read = content.read(b, off, len);
+                if (read >= 0) {
+                    position += read;
+                    return read;
+                }
+                if (position >= contentLength) {
+                    return read;
+                }
+                resume(new EOFException(String.format("Unexpected end of content after %d of %d bytes.", position, contentLength)));
+            } catch (IOException e) {
+                resume(e);
+            }
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return content.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            content.close();
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Continues reading the content from the current position with a range request, or rethrows the given failure when that is not possible.
+     */
+    private void resume(IOException failure) throws IOException {
+        if (resumeAttempts >= MAX_RESUME_ATTEMPTS || position >= contentLength) {
+            throw failure;
+        }
+        resumeAttempts++;
+        LOGGER.info("Resuming download of {} at {} of {} bytes after failure: {}", uri, position, contentLength, failure.getMessage());
+        response.close();
+
+        HttpGet request = new HttpGet(uri);
+        request.addHeader(HttpHeaders.RANGE, "bytes=" + position + "-");
+        request.addHeader(HttpHeaders.IF_RANGE, validator);
+        try {
+            response = http.performHttpRequest(request);
+        } catch (IOException e) {
+            LOGGER.debug("Could not resume download of {}.", uri, e);
+            throw failure;
+        }
+        String contentRange = response.getHeader(HttpHeaders.CONTENT_RANGE);
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT || contentRange == null || !contentRange.startsWith("bytes " + position + "-")) {
+            // The server does not support ranges, or the resource has changed since the download started
+            LOGGER.debug("Could not resume download of {}: HTTP {}, Content-Range: {}", uri, response.getStatusLine(), contentRange);
+            response.close();
+            throw failure;
+        }
+        content = response.getContent();
+    }
+}
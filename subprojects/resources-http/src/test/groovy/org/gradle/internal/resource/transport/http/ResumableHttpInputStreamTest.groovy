@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.HttpEntity
+import org.apache.http.HttpHeaders
+import org.apache.http.ProtocolVersion
+import org.apache.http.client.methods.CloseableHttpResponse
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.message.BasicHeader
+import org.apache.http.message.BasicStatusLine
+import spock.lang.Specification
+
+class ResumableHttpInputStreamTest extends Specification {
+    def uri = new URI("http://gradle.org/some.jar")
+    def http = Mock(HttpClientHelper)
+
+    def "returns content unchanged when download cannot be resumed"() {
+        def content = new ByteArrayInputStream("abc".bytes)
+        def response = httpResponse(200, content, headers)
+
+        expect:
+        ResumableHttpInputStream.open(http, response, 3).is(content)
+
+        where:
+        headers << [
+            [:],
+            [(HttpHeaders.ETAG): 'W/"weak"'],
+            [(HttpHeaders.ETAG): '"abc"', (HttpHeaders.ACCEPT_RANGES): "none"],
+            [(HttpHeaders.ETAG): '"abc"', (HttpHeaders.CONTENT_ENCODING): "gzip"]
+        ]
+    }
+
+    def "resumes download with range request when connection fails"() {
+        def response = httpResponse(200, failingAfter("abc"), [(HttpHeaders.ETAG): '"tag"'])
+        def resumed = httpResponse(206, new ByteArrayInputStream("def".bytes), [(HttpHeaders.CONTENT_RANGE): "bytes 3-5/6"])
+
+        when:
+        def text = ResumableHttpInputStream.open(http, response, 6).text
+
+        then:
+        text == "abcdef"
+        1 * http.performHttpRequest({ HttpGet request ->
+            request.URI == uri &&
+                request.getFirstHeader(HttpHeaders.RANGE).value == "bytes=3-" &&
+                request.getFirstHeader(HttpHeaders.IF_RANGE).value == '"tag"'
+        }) >> resumed
+    }
+
+    def "resumes download when content ends early"() {
+        def response = httpResponse(200, new ByteArrayInputStream("abc".bytes), [(HttpHeaders.LAST_MODIFIED): "Wed, 21 Oct 2015 07:28:00 GMT"])
+        def resumed = httpResponse(206, new ByteArrayInputStream("def".bytes), [(HttpHeaders.CONTENT_RANGE): "bytes 3-5/6"])
+
+        when:
+        def text = ResumableHttpInputStream.open(http, response, 6).text
+
+        then:
+        text == "abcdef"
+        1 * http.performHttpRequest({ HttpGet request -> request.getFirstHeader(HttpHeaders.IF_RANGE).value == "Wed, 21 Oct 2015 07:28:00 GMT" }) >> resumed
+    }
+
+    def "rethrows original failure when server does not return requested range"() {
+        def response = httpResponse(200, failingAfter("abc"), [(HttpHeaders.ETAG): '"tag"'])
+        def resumed = httpResponse(200, new ByteArrayInputStream("abcdef".bytes), [:])
+
+        when:
+        ResumableHttpInputStream.open(http, response, 6).text
+
+        then:
+        def e = thrown(IOException)
+        e.message == "broken"
+        1 * http.performHttpRequest(_) >> resumed
+    }
+
+    def "gives up after a limited number of attempts"() {
+        def response = httpResponse(200, failingAfter("a"), [(HttpHeaders.ETAG): '"tag"'])
+
+        when:
+        ResumableHttpInputStream.open(http, response, 6).text
+
+        then:
+        def e = thrown(IOException)
+        e.message == "broken"
+        3 * http.performHttpRequest(_) >> { httpResponse(206, failingAfter("b"), [(HttpHeaders.CONTENT_RANGE): "bytes 1-5/6"]) } >> { httpResponse(206, failingAfter("c"), [(HttpHeaders.CONTENT_RANGE): "bytes 2-5/6"]) } >> { httpResponse(206, failingAfter("d"), [(HttpHeaders.CONTENT_RANGE): "bytes 3-5/6"]) }
+    }
+
+    HttpClientResponse httpResponse(int statusCode, InputStream content, Map<String, String> headers) {
+        def entity = Stub(HttpEntity) {
+            getContent() >> content
+        }
+        def response = Stub(CloseableHttpResponse) {
+            getStatusLine() >> new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), statusCode, "")
+            getEntity() >> entity
+            getFirstHeader(_) >> { String name -> headers.containsKey(name) ? new BasicHeader(name, headers[name]) : null }
+        }
+        new HttpClientResponse("GET", uri, response)
+    }
+
+    InputStream failingAfter(String text) {
+        new SequenceInputStream(new ByteArrayInputStream(text.bytes), new InputStream() {
+            @Override
+            int read() throws IOException {
+                throw new IOException("broken")
+            }
+        })
+    }
+}
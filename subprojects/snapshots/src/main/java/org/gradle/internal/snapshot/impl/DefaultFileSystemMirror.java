@@ -22,7 +22,12 @@ import org.gradle.internal.snapshot.FileSystemMirror;
 import org.gradle.internal.snapshot.WellKnownFileLocations;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -95,6 +100,61 @@ public class DefaultFileSystemMirror implements FileSystemMirror {
         cacheFiles.clear();
     }
 
+    /**
+     * Discards the state for files that live in an append-only cache, keeping the state for all other files.
+     * Used when the state for other files is kept up-to-date across builds by some other means.
+     */
+    public void beforeBuildFinishedRetainingState() {
+        cacheMetadata.clear();
+        cacheFiles.clear();
+    }
+
+    /**
+     * Discards all state for the given locations and for everything below them, and the state of every directory containing them.
+     */
+    public void invalidate(Collection<String> changedPaths) {
+        if (changedPaths.isEmpty()) {
+            return;
+        }
+        Set<String> removedPaths = new HashSet<String>();
+        for (String changedPath : changedPaths) {
+            // Every directory snapshot containing the changed location is stale, too, but the state of the other files in these directories is not
+            for (String path = changedPath; path != null && removedPaths.add(path); path = parentOf(path)) {
+                metadata.remove(path);
+                files.remove(path);
+                cacheMetadata.remove(path);
+                cacheFiles.remove(path);
+            }
+        }
+        // A changed directory may have been moved or deleted as a whole, so discard everything below it
+        Set<String> changedDirectories = new HashSet<String>(changedPaths);
+        removeDescendants(metadata.keySet(), changedDirectories);
+        removeDescendants(files.keySet(), changedDirectories);
+        removeDescendants(cacheMetadata.keySet(), changedDirectories);
+        removeDescendants(cacheFiles.keySet(), changedDirectories);
+    }
+
+    private static void removeDescendants(Set<String> paths, Set<String> changedPaths) {
+        Iterator<String> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            for (String ancestor = parentOf(iterator.next()); ancestor != null; ancestor = parentOf(ancestor)) {
+                if (changedPaths.contains(ancestor)) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static String parentOf(String absolutePath) {
+        int lastSeparator = absolutePath.lastIndexOf(File.separatorChar);
+        if (lastSeparator <= 0) {
+            return null;
+        }
+        return absolutePath.substring(0, lastSeparator);
+    }
+
     public void beforeOutputChange(Iterable<String> affectedOutputPaths) {
         for (String affectedOutputPath : affectedOutputPaths) {
             metadata.remove(affectedOutputPath);
@@ -70,11 +70,15 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final DirectorySnapshotter directorySnapshotter;
 
     public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror, String... defaultExcludes) {
+        this(hasher, stringInterner, fileSystem, fileSystemMirror, FileHashingExecutor.SEQUENTIAL, defaultExcludes);
+    }
+
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, FileSystemMirror fileSystemMirror, FileHashingExecutor hashingExecutor, String... defaultExcludes) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.fileSystemMirror = fileSystemMirror;
-        this.directorySnapshotter = new DirectorySnapshotter(hasher, fileSystem, stringInterner, defaultExcludes);
+        this.directorySnapshotter = new DirectorySnapshotter(hasher, fileSystem, stringInterner, hashingExecutor, defaultExcludes);
     }
 
     @Override
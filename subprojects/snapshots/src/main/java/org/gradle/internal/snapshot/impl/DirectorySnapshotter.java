@@ -23,6 +23,7 @@ import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.gradle.api.GradleException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.RelativePath;
@@ -40,6 +41,7 @@ import org.gradle.internal.nativeintegration.filesystem.Stat;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.RelativePathSegmentsTracker;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -53,26 +55,37 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class DirectorySnapshotter {
     private final FileHasher hasher;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final DefaultExcludes defaultExcludes;
+    private final FileHashingExecutor hashingExecutor;
 
     public DirectorySnapshotter(FileHasher hasher, FileSystem fileSystem, StringInterner stringInterner, String... defaultExcludes) {
+        this(hasher, fileSystem, stringInterner, FileHashingExecutor.SEQUENTIAL, defaultExcludes);
+    }
+
+    public DirectorySnapshotter(FileHasher hasher, FileSystem fileSystem, StringInterner stringInterner, FileHashingExecutor hashingExecutor, String... defaultExcludes) {
         this.hasher = hasher;
         this.fileSystem = fileSystem;
         this.stringInterner = stringInterner;
+        this.hashingExecutor = hashingExecutor;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
     }
 
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable PatternSet patterns, final MutableBoolean hasBeenFiltered) {
         Path rootPath = Paths.get(absolutePath);
         final Spec<FileTreeElement> spec = (patterns == null || patterns.isEmpty()) ? null : patterns.getAsSpec();
-        final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        final TreeBuilder builder = hashingExecutor.isParallel() ? new ParallelHashingTreeBuilder() : new SequentialTreeBuilder();
 
         try {
             Files.walkFileTree(rootPath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new java.nio.file.FileVisitor<Path>() {
@@ -133,9 +146,7 @@ public class DirectorySnapshotter {
                 private void addFileSnapshot(Path file, String name, BasicFileAttributes attrs) {
                     Preconditions.checkNotNull(attrs, "Unauthorized access to %", file);
                     DefaultFileMetadata metadata = new DefaultFileMetadata(FileType.RegularFile, attrs.lastModifiedTime().toMillis(), attrs.size());
-                    HashCode hash = hasher.hash(file.toFile(), metadata);
-                    RegularFileSnapshot fileSnapshot = new RegularFileSnapshot(internedAbsolutePath(file), name, hash, metadata.getLastModified());
-                    builder.visit(fileSnapshot);
+                    builder.visitFile(file.toFile(), internedAbsolutePath(file), name, metadata);
                 }
 
                 private String internedAbsolutePath(Path file) {
@@ -161,11 +172,172 @@ public class DirectorySnapshotter {
                 }
             });
         } catch (IOException e) {
+            builder.cancel();
             throw new GradleException(String.format("Could not list contents of directory '%s'.", rootPath), e);
+        } catch (RuntimeException e) {
+            builder.cancel();
+            throw e;
         }
         return builder.getResult();
     }
 
+    /**
+     * Receives the walked tree and assembles it into a {@link MerkleDirectorySnapshotBuilder}.
+     */
+    private interface TreeBuilder {
+        boolean isRoot();
+
+        Iterable<String> getRelativePath();
+
+        void preVisitDirectory(String absolutePath, String name);
+
+        void visitFile(File file, String absolutePath, String name, DefaultFileMetadata metadata);
+
+        void postVisitDirectory();
+
+        void cancel();
+
+        FileSystemLocationSnapshot getResult();
+    }
+
+    private class SequentialTreeBuilder implements TreeBuilder {
+        private final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+
+        @Override
+        public boolean isRoot() {
+            return builder.isRoot();
+        }
+
+        @Override
+        public Iterable<String> getRelativePath() {
+            return builder.getRelativePath();
+        }
+
+        @Override
+        public void preVisitDirectory(String absolutePath, String name) {
+            builder.preVisitDirectory(absolutePath, name);
+        }
+
+        @Override
+        public void visitFile(File file, String absolutePath, String name, DefaultFileMetadata metadata) {
+            HashCode hash = hasher.hash(file, metadata);
+            builder.visit(new RegularFileSnapshot(absolutePath, name, hash, metadata.getLastModified()));
+        }
+
+        @Override
+        public void postVisitDirectory() {
+            builder.postVisitDirectory();
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public FileSystemLocationSnapshot getResult() {
+            return builder.getResult();
+        }
+    }
+
+    /**
+     * Hashes the visited files on the hashing executor while the walk continues.
+     *
+     * The walk is recorded and replayed into a {@link MerkleDirectorySnapshotBuilder} once all hashes are known,
+     * so the resulting tree is the same as the one produced by {@link SequentialTreeBuilder}.
+     */
+    private class ParallelHashingTreeBuilder implements TreeBuilder {
+        private final RelativePathSegmentsTracker relativePathSegmentsTracker = new RelativePathSegmentsTracker();
+        private final List<WalkedEntry> entries = new ArrayList<WalkedEntry>();
+
+        @Override
+        public boolean isRoot() {
+            return relativePathSegmentsTracker.isRoot();
+        }
+
+        @Override
+        public Iterable<String> getRelativePath() {
+            return relativePathSegmentsTracker.getRelativePath();
+        }
+
+        @Override
+        public void preVisitDirectory(String absolutePath, String name) {
+            relativePathSegmentsTracker.enter(name);
+            entries.add(new WalkedEntry(absolutePath, name, 0, null));
+        }
+
+        @Override
+        public void visitFile(final File file, String absolutePath, String name, final DefaultFileMetadata metadata) {
+            FutureTask<HashCode> hash = new FutureTask<HashCode>(new Callable<HashCode>() {
+                @Override
+                public HashCode call() {
+                    return hasher.hash(file, metadata);
+                }
+            });
+            hashingExecutor.execute(hash);
+            entries.add(new WalkedEntry(absolutePath, name, metadata.getLastModified(), hash));
+        }
+
+        @Override
+        public void postVisitDirectory() {
+            relativePathSegmentsTracker.leave();
+            entries.add(WalkedEntry.END_OF_DIRECTORY);
+        }
+
+        @Override
+        public void cancel() {
+            for (WalkedEntry entry : entries) {
+                if (entry.hash != null) {
+                    entry.hash.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public FileSystemLocationSnapshot getResult() {
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            try {
+                for (WalkedEntry entry : entries) {
+                    if (entry == WalkedEntry.END_OF_DIRECTORY) {
+                        builder.postVisitDirectory();
+                    } else if (entry.hash == null) {
+                        builder.preVisitDirectory(entry.absolutePath, entry.name);
+                    } else {
+                        builder.visit(new RegularFileSnapshot(entry.absolutePath, entry.name, getHash(entry.hash), entry.lastModified));
+                    }
+                }
+            } catch (RuntimeException e) {
+                cancel();
+                throw e;
+            }
+            return builder.getResult();
+        }
+
+        private HashCode getHash(Future<HashCode> hash) {
+            try {
+                return Uninterruptibles.getUninterruptibly(hash);
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+        }
+    }
+
+    private static class WalkedEntry {
+        private static final WalkedEntry END_OF_DIRECTORY = new WalkedEntry(null, null, 0, null);
+
+        private final String absolutePath;
+        private final String name;
+        private final long lastModified;
+        // Null for directories
+        private final Future<HashCode> hash;
+
+        private WalkedEntry(@Nullable String absolutePath, @Nullable String name, long lastModified, @Nullable Future<HashCode> hash) {
+            this.absolutePath = absolutePath;
+            this.name = name;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
     @VisibleForTesting
     static class DefaultExcludes {
         private final ImmutableSet<String> excludeFileNames;
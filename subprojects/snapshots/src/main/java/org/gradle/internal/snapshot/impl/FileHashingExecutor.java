@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot.impl;
+
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.ParallelismConfigurationListener;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+
+/**
+ * Executes the hashing of files found by {@link DirectorySnapshotter}, using at most as many threads as there are workers.
+ *
+ * The pool is dedicated to hashing, so a thread waiting for hashes never waits for work queued behind itself.
+ */
+public class FileHashingExecutor implements Executor, ParallelismConfigurationListener, Stoppable {
+    public static final FileHashingExecutor SEQUENTIAL = new FileHashingExecutor(null, null, 1);
+
+    private final ManagedExecutor executor;
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private volatile int maxWorkerCount;
+
+    public FileHashingExecutor(ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        this(executorFactory.create("File hashing", parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount()),
+            parallelismConfigurationManager,
+            parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount());
+        parallelismConfigurationManager.addListener(this);
+    }
+
+    private FileHashingExecutor(@Nullable ManagedExecutor executor, @Nullable ParallelismConfigurationManager parallelismConfigurationManager, int maxWorkerCount) {
+        this.executor = executor;
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+        this.maxWorkerCount = maxWorkerCount;
+    }
+
+    /**
+     * Returns whether files should be hashed in parallel, based on the current parallelism configuration.
+     */
+    public boolean isParallel() {
+        return executor != null && maxWorkerCount > 1;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (executor == null) {
+            command.run();
+        } else {
+            executor.execute(command);
+        }
+    }
+
+    @Override
+    public void onParallelismConfigurationChange(ParallelismConfiguration parallelismConfiguration) {
+        maxWorkerCount = parallelismConfiguration.getMaxWorkerCount();
+        if (executor != null) {
+            executor.setFixedPoolSize(maxWorkerCount);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            parallelismConfigurationManager.removeListener(this);
+            executor.stop();
+        }
+    }
+}
@@ -132,4 +132,56 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getMetadata(file.path) == null
         mirror.getSnapshot(file.path) == null
     }
+
+    def "discards state about changed files, their descendants and their ancestors"() {
+        def dir = tmpDir.file("dir")
+        def changed = dir.file("sub")
+        def child = changed.file("child")
+        def sibling = dir.file("sibling")
+        def nephew = sibling.file("nephew")
+        def snapshots = [dir, changed, child, sibling, nephew].collect { file ->
+            def snapshot = Stub(FileSystemLocationSnapshot)
+            _ * snapshot.absolutePath >> file.path
+            snapshot
+        }
+
+        given:
+        snapshots.each { mirror.putSnapshot(it) }
+
+        when:
+        mirror.invalidate([changed.path])
+
+        then:
+        mirror.getSnapshot(dir.path) == null
+        mirror.getSnapshot(changed.path) == null
+        mirror.getSnapshot(child.path) == null
+        mirror.getSnapshot(sibling.path) == snapshots[3]
+        mirror.getSnapshot(nephew.path) == snapshots[4]
+    }
+
+    def "can retain state about a file until it is invalidated"() {
+        def file = tmpDir.file("a")
+        def cachedFile = cacheDir.file("some/dir/a")
+        def fileSnapshot = Stub(RegularFileSnapshot)
+        def cachedFileSnapshot = Stub(RegularFileSnapshot)
+
+        given:
+        _ * fileSnapshot.absolutePath >> file.path
+        _ * cachedFileSnapshot.absolutePath >> cachedFile.path
+        mirror.putSnapshot(fileSnapshot)
+        mirror.putSnapshot(cachedFileSnapshot)
+
+        when:
+        mirror.beforeBuildFinishedRetainingState()
+
+        then:
+        mirror.getSnapshot(file.path) == fileSnapshot
+        mirror.getSnapshot(cachedFile.path) == null
+
+        when:
+        mirror.invalidate([file.path])
+
+        then:
+        mirror.getSnapshot(file.path) == null
+    }
 }
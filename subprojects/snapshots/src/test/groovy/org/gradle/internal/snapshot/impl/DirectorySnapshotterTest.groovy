@@ -21,6 +21,9 @@ import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.tasks.util.PatternSet
 import org.gradle.internal.MutableBoolean
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.hash.TestFileHasher
 import org.gradle.internal.snapshot.DirectorySnapshot
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot
@@ -152,8 +155,34 @@ class DirectorySnapshotterTest extends Specification {
         !defaultExcludes.excludeFile('.svnsomething')
         !defaultExcludes.excludeFile('#some')
     }
+
+    def "hashing files in parallel produces the same snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        (1..20).each { i ->
+            rootDir.file("dir${i % 4}/sub${i % 3}/file${i}.txt").text = "content ${i}"
+        }
+        rootDir.file("empty").createDir()
+        def parallelismConfigurationManager = Stub(ParallelismConfigurationManager)
+        _ * parallelismConfigurationManager.parallelismConfiguration >> new DefaultParallelismConfiguration(false, 4)
+        def hashingExecutor = new FileHashingExecutor(new DefaultExecutorFactory(), parallelismConfigurationManager)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, TestFiles.fileSystem(), new StringInterner(), hashingExecutor)
+
+        when:
+        def sequential = directorySnapshotter.snapshot(rootDir.absolutePath, null, new MutableBoolean(false))
+        def parallel = parallelSnapshotter.snapshot(rootDir.absolutePath, null, new MutableBoolean(false))
+
+        then:
+        hashingExecutor.parallel
+        parallel.hash == sequential.hash
+        parallel.absolutePath == sequential.absolutePath
+
+        cleanup:
+        hashingExecutor.stop()
+    }
 }
 
+
 abstract class RelativePathTrackingVisitor implements FileSystemSnapshotVisitor {
     private Deque<String> relativePath = new ArrayDeque<String>()
 
@@ -16,22 +16,51 @@
 
 package org.gradle.api.internal.tasks.testing.junit.result;
 
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
-import org.gradle.internal.io.RandomAccessFileInputStream;
-import org.gradle.internal.UncheckedException;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
-
-import java.io.*;
+import org.gradle.internal.IoActions;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
+/**
+ * Stores the output of the tests.
+ *
+ * <p>The output of each test class is buffered and written to the outputs file as compressed chunks, each holding the output of a single test class.
+ * The index file holds a table of the test classes, sorted by id, and a table of their chunks. The readers load the index file once,
+ * so that reading the output of a test class only looks up the index entries and reads the chunks of that class.</p>
+ */
 public class TestOutputStore {
+    private static final int INDEX_VERSION = 2;
+    private static final int INDEX_HEADER_SIZE = 12;
+    private static final int CLASS_ENTRY_SIZE = 20;
+    private static final int CHUNK_ENTRY_SIZE = 16;
+    private static final int HAS_STDOUT = 1;
+    private static final int HAS_STDERR = 2;
+    // The output of a class is written as a chunk once it reaches this size
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // All the buffered output is written once it reaches this size
+    private static final int MAX_BUFFERED_SIZE = 1024 * 1024;
 
     private final File resultsDir;
     private final Charset messageStorageCharset;
@@ -49,34 +78,36 @@ public class TestOutputStore {
         return new File(resultsDir, getOutputsFile().getName() + ".idx");
     }
 
-    private static class Region {
-        long start;
-        long stop;
+    private static class Chunk {
+        final long offset;
+        final int compressedLength;
+        final int length;
 
-        private Region() {
-            start = -1;
-            stop = -1;
-        }
-
-        private Region(long start, long stop) {
-            this.start = start;
-            this.stop = stop;
+        Chunk(long offset, int compressedLength, int length) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.length = length;
         }
     }
 
-    private static class TestCaseRegion {
-        Region stdOutRegion = new Region();
-        Region stdErrRegion = new Region();
+    private static class ClassOutput {
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        ByteArrayOutputStream buffer;
+        DataOutputStream bufferOutput;
+        int flags;
     }
 
     public class Writer implements Closeable {
-        private final KryoBackedEncoder output;
-
-        private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
+        private final OutputStream output;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] compressBuffer = new byte[CHUNK_SIZE];
+        private final Map<Long, ClassOutput> index = new HashMap<Long, ClassOutput>();
+        private long writePosition;
+        private int bufferedSize;
 
         public Writer() {
             try {
-                output = new KryoBackedEncoder(new FileOutputStream(getOutputsFile()));
+                output = new BufferedOutputStream(new FileOutputStream(getOutputsFile()));
             } catch (FileNotFoundException e) {
                 throw new UncheckedIOException(e);
             }
@@ -84,7 +115,18 @@ public class TestOutputStore {
 
         @Override
         public void close() {
-            output.close();
+            try {
+                try {
+                    for (Map.Entry<Long, ClassOutput> entry : index.entrySet()) {
+                        writeChunk(entry.getValue());
+                    }
+                } finally {
+                    output.close();
+                    deflater.end();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
             writeIndex();
         }
 
@@ -94,75 +136,100 @@ public class TestOutputStore {
 
         public void onOutput(long classId, long testId, TestOutputEvent outputEvent) {
             boolean stdout = outputEvent.getDestination() == TestOutputEvent.Destination.StdOut;
-            mark(classId, testId, stdout);
-
-            output.writeBoolean(stdout);
-            output.writeSmallLong(classId);
-            output.writeSmallLong(testId);
+            ClassOutput classOutput = index.get(classId);
+            if (classOutput == null) {
+                classOutput = new ClassOutput();
+                index.put(classId, classOutput);
+            }
+            classOutput.flags |= stdout ? HAS_STDOUT : HAS_STDERR;
+            if (classOutput.buffer == null) {
+                classOutput.buffer = new ByteArrayOutputStream();
+                classOutput.bufferOutput = new DataOutputStream(classOutput.buffer);
+            }
 
-            byte[] bytes;
+            byte[] bytes = outputEvent.getMessage().getBytes(messageStorageCharset);
             try {
-                bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
-            } catch (UnsupportedEncodingException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
+                int sizeBefore = classOutput.buffer.size();
+                classOutput.bufferOutput.writeBoolean(stdout);
+                classOutput.bufferOutput.writeLong(testId);
+                classOutput.bufferOutput.writeInt(bytes.length);
+                classOutput.bufferOutput.write(bytes);
+                bufferedSize += classOutput.buffer.size() - sizeBefore;
+
+                if (classOutput.buffer.size() >= CHUNK_SIZE) {
+                    writeChunk(classOutput);
+                }
+                if (bufferedSize >= MAX_BUFFERED_SIZE) {
+                    for (ClassOutput buffered : index.values()) {
+                        writeChunk(buffered);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            output.writeSmallInt(bytes.length);
-            output.writeBytes(bytes, 0, bytes.length);
         }
 
-        private void mark(long classId, long testId, boolean isStdout) {
-            if (!index.containsKey(classId)) {
-                index.put(classId, new LinkedHashMap<Long, TestCaseRegion>());
-            }
-
-            Map<Long, TestCaseRegion> testCaseRegions = index.get(classId);
-            if (!testCaseRegions.containsKey(testId)) {
-                TestCaseRegion region = new TestCaseRegion();
-                testCaseRegions.put(testId, region);
+        private void writeChunk(ClassOutput classOutput) throws IOException {
+            if (classOutput.buffer == null) {
+                return;
             }
-
-            TestCaseRegion region = testCaseRegions.get(testId);
-
-            Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
-
-            long total = output.getWritePosition();
-            if (streamRegion.start < 0) {
-                streamRegion.start = total;
+            byte[] bytes = classOutput.buffer.toByteArray();
+            classOutput.buffer = null;
+            classOutput.bufferOutput = null;
+            bufferedSize -= bytes.length;
+
+            deflater.reset();
+            deflater.setInput(bytes);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                int count = deflater.deflate(compressBuffer);
+                output.write(compressBuffer, 0, count);
+                compressedLength += count;
             }
-            streamRegion.stop = total;
+            classOutput.chunks.add(new Chunk(writePosition, compressedLength, bytes.length));
+            writePosition += compressedLength;
         }
 
         private void writeIndex() {
-            Output indexOutput;
+            // Sorted by class id, so that readers can search the class table
+            Map<Long, ClassOutput> classes = new TreeMap<Long, ClassOutput>(index);
+            DataOutputStream indexOutput;
             try {
-                indexOutput = new Output(new FileOutputStream(getIndexFile()));
+                indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getIndexFile())));
             } catch (FileNotFoundException e) {
                 throw new UncheckedIOException(e);
             }
 
-
             try {
-                indexOutput.writeInt(index.size(), true);
-
-                for (Map.Entry<Long, Map<Long, TestCaseRegion>> classEntry : index.entrySet()) {
-                    Long classId = classEntry.getKey();
-                    Map<Long, TestCaseRegion> regions = classEntry.getValue();
-
-                    indexOutput.writeLong(classId, true);
-                    indexOutput.writeInt(regions.size(), true);
-
-                    for (Map.Entry<Long, TestCaseRegion> testCaseEntry : regions.entrySet()) {
-                        long id = testCaseEntry.getKey();
-                        TestCaseRegion region = testCaseEntry.getValue();
-                        indexOutput.writeLong(id, true);
-                        indexOutput.writeLong(region.stdOutRegion.start);
-                        indexOutput.writeLong(region.stdOutRegion.stop);
-                        indexOutput.writeLong(region.stdErrRegion.start);
-                        indexOutput.writeLong(region.stdErrRegion.stop);
+                int chunkCount = 0;
+                for (ClassOutput classOutput : classes.values()) {
+                    chunkCount += classOutput.chunks.size();
+                }
+                indexOutput.writeInt(INDEX_VERSION);
+                indexOutput.writeInt(classes.size());
+                indexOutput.writeInt(chunkCount);
+
+                int firstChunk = 0;
+                for (Map.Entry<Long, ClassOutput> classEntry : classes.entrySet()) {
+                    ClassOutput classOutput = classEntry.getValue();
+                    indexOutput.writeLong(classEntry.getKey());
+                    indexOutput.writeInt(firstChunk);
+                    indexOutput.writeInt(classOutput.chunks.size());
+                    indexOutput.writeInt(classOutput.flags);
+                    firstChunk += classOutput.chunks.size();
+                }
+                for (ClassOutput classOutput : classes.values()) {
+                    for (Chunk chunk : classOutput.chunks) {
+                        indexOutput.writeLong(chunk.offset);
+                        indexOutput.writeInt(chunk.compressedLength);
+                        indexOutput.writeInt(chunk.length);
                     }
                 }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             } finally {
-                indexOutput.close();
+                IoActions.closeQuietly(indexOutput);
             }
         }
     }
@@ -171,55 +238,11 @@ public class TestOutputStore {
         return new Writer();
     }
 
-    private static class Index {
-        final ImmutableMap<Long, Index> children;
-        final Region stdOut;
-        final Region stdErr;
-
-        private Index(Region stdOut, Region stdErr) {
-            this.children = ImmutableMap.of();
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
-        }
-
-        private Index(ImmutableMap<Long, Index> children, Region stdOut, Region stdErr) {
-            this.children = children;
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
-        }
-    }
-
-    private static class IndexBuilder {
-        final Region stdOut = new Region();
-        final Region stdErr = new Region();
-
-        private final ImmutableMap.Builder<Long, Index> children = ImmutableMap.builder();
-
-        void add(long key, Index index) {
-            if (stdOut.start < 0) {
-                stdOut.start = index.stdOut.start;
-            }
-            if (stdErr.start < 0) {
-                stdErr.start = index.stdErr.start;
-            }
-            if (index.stdOut.stop > stdOut.stop) {
-                stdOut.stop = index.stdOut.stop;
-            }
-            if (index.stdErr.stop > stdErr.stop) {
-                stdErr.stop = index.stdErr.stop;
-            }
-
-            children.put(key, index);
-        }
-
-        Index build() {
-            return new Index(children.build(), stdOut, stdErr);
-        }
-    }
-
     public class Reader implements Closeable {
-        private final Index index;
+        private final ByteBuffer index;
         private final RandomAccessFile dataFile;
+        private final Inflater inflater = new Inflater();
+        private final int classCount;
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -230,37 +253,11 @@ public class TestOutputStore {
                     throw new IllegalStateException(String.format("Test outputs data file '%s' exists but the index file '%s' does not", outputsFile, indexFile));
                 }
 
-                Input input;
-                try {
-                    input = new Input(new FileInputStream(indexFile));
-                } catch (FileNotFoundException e) {
-                    throw new UncheckedIOException(e);
+                index = readIndex(indexFile);
+                if (index.getInt(0) != INDEX_VERSION) {
+                    throw new IllegalStateException(String.format("Test outputs index file '%s' has an unexpected format", indexFile));
                 }
-
-                IndexBuilder rootBuilder = null;
-                try {
-                    int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
-
-                    for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
-                        long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
-
-                        int numEntries = input.readInt(true);
-                        for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
-                            long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
-                        }
-
-                        rootBuilder.add(classId, classBuilder.build());
-                    }
-                } finally {
-                    input.close();
-                }
-
-                index = rootBuilder.build();
+                classCount = index.getInt(4);
 
                 try {
                     dataFile = new RandomAccessFile(getOutputsFile(), "r");
@@ -274,28 +271,66 @@ public class TestOutputStore {
 
                 index = null;
                 dataFile = null;
+                classCount = 0;
+            }
+        }
+
+        private ByteBuffer readIndex(File indexFile) {
+            try {
+                RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+                try {
+                    // Read the index into the heap, as a mapping would only be released once garbage collected, keeping the file open on some platforms
+                    byte[] content = new byte[(int) file.length()];
+                    file.readFully(content);
+                    return ByteBuffer.wrap(content);
+                } finally {
+                    file.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
 
         @Override
         public void close() throws IOException {
+            inflater.end();
             if (dataFile != null) {
                 dataFile.close();
             }
         }
 
+        /**
+         * Returns the position of the index entry of the given class, or -1 when the class has no output.
+         */
+        private int findClass(long classId) {
+            int low = 0;
+            int high = classCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int position = INDEX_HEADER_SIZE + middle * CLASS_ENTRY_SIZE;
+                long middleId = index.getLong(position);
+                if (middleId < classId) {
+                    low = middle + 1;
+                } else if (middleId > classId) {
+                    high = middle - 1;
+                } else {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
         public boolean hasOutput(long classId, TestOutputEvent.Destination destination) {
             if (dataFile == null) {
                 return false;
             }
 
-            Index classIndex = index.children.get(classId);
-            if (classIndex == null) {
+            int classEntry = findClass(classId);
+            if (classEntry < 0) {
                 return false;
-            } else {
-                Region region = destination == TestOutputEvent.Destination.StdOut ? classIndex.stdOut : classIndex.stdErr;
-                return region.start >= 0;
             }
+            int flags = index.getInt(classEntry + 16);
+            return (flags & (destination == TestOutputEvent.Destination.StdOut ? HAS_STDOUT : HAS_STDERR)) != 0;
         }
 
         public void writeAllOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
@@ -311,75 +346,68 @@ public class TestOutputStore {
         }
 
         private void doRead(long classId, long testId, boolean allClassOutput, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            if (dataFile == null) {
+            if (dataFile == null || !hasOutput(classId, destination)) {
                 return;
             }
 
-            Index targetIndex = index.children.get(classId);
-            if (targetIndex != null && testId != 0) {
-                targetIndex = targetIndex.children.get(testId);
-            }
-
-            if (targetIndex == null) {
-                return;
-            }
+            int classEntry = findClass(classId);
+            int firstChunk = index.getInt(classEntry + 8);
+            int chunkCount = index.getInt(classEntry + 12);
+            int chunkTable = INDEX_HEADER_SIZE + classCount * CLASS_ENTRY_SIZE;
 
             boolean stdout = destination == TestOutputEvent.Destination.StdOut;
-            Region region = stdout ? targetIndex.stdOut : targetIndex.stdErr;
-
-            if (region.start < 0) {
-                return;
-            }
-
             boolean ignoreClassLevel = !allClassOutput && testId != 0;
             boolean ignoreTestLevel = !allClassOutput && testId == 0;
 
             try {
-                dataFile.seek(region.start);
-                long maxPos = region.stop - region.start;
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
-                while (decoder.getReadPosition() <= maxPos) {
-                    boolean readStdout = decoder.readBoolean();
-                    long readClassId = decoder.readSmallLong();
-                    long readTestId = decoder.readSmallLong();
-                    int readLength = decoder.readSmallInt();
-
-                    boolean isClassLevel = readTestId == 0;
-
-                    if (stdout != readStdout || classId != readClassId) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
-
-                    if (ignoreClassLevel && isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
-
-                    if (ignoreTestLevel && !isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
+                for (int chunk = firstChunk; chunk < firstChunk + chunkCount; chunk++) {
+                    int chunkEntry = chunkTable + chunk * CHUNK_ENTRY_SIZE;
+                    byte[] bytes = readChunk(index.getLong(chunkEntry), index.getInt(chunkEntry + 8), index.getInt(chunkEntry + 12));
+                    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+                    while (input.available() > 0) {
+                        boolean readStdout = input.readBoolean();
+                        long readTestId = input.readLong();
+                        int readLength = input.readInt();
+
+                        boolean isClassLevel = readTestId == 0;
+                        boolean matches = stdout == readStdout
+                            && !(ignoreClassLevel && isClassLevel)
+                            && !(ignoreTestLevel && !isClassLevel)
+                            && (testId == 0 || testId == readTestId);
+
+                        if (matches) {
+                            int start = bytes.length - input.available();
+                            writer.write(new String(bytes, start, readLength, messageStorageCharset));
+                        }
+                        input.skipBytes(readLength);
                     }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-                    if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
+        private byte[] readChunk(long offset, int compressedLength, int length) throws IOException {
+            byte[] compressed = new byte[compressedLength];
+            dataFile.seek(offset);
+            dataFile.readFully(compressed);
 
-                        writer.write(message);
-                    } else {
-                        decoder.skipBytes(readLength);
+            byte[] bytes = new byte[length];
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                int read = 0;
+                while (read < length) {
+                    int count = inflater.inflate(bytes, read, length - read);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Test outputs data file is truncated");
                     }
+                    read += count;
                 }
-            } catch (IOException e1) {
-                throw new UncheckedIOException(e1);
+            } catch (DataFormatException e) {
+                throw new IOException(e);
             }
+            return bytes;
         }
     }
 
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TestResultProcessor} which passes on at most the given number of characters of output for each test, and drops the rest.
+ * Used in the test worker, so that the dropped output is never sent to the build process.
+ */
+public class LimitTestOutputTestResultProcessor implements TestResultProcessor {
+    /**
+     * The maximum number of characters of output kept for each test, when set on the test worker.
+     */
+    public static final String MAX_OUTPUT_PER_TEST_PROPERTY = "org.gradle.internal.testing.max-output-per-test";
+
+    private final TestResultProcessor processor;
+    private final long maxOutputPerTest;
+    private final ConcurrentMap<Object, AtomicLong> outputPerTest = new ConcurrentHashMap<Object, AtomicLong>();
+
+    public LimitTestOutputTestResultProcessor(TestResultProcessor processor, long maxOutputPerTest) {
+        this.processor = processor;
+        this.maxOutputPerTest = maxOutputPerTest;
+    }
+
+    /**
+     * Decorates the given processor when a maximum is set on this process.
+     */
+    public static TestResultProcessor maybeLimitOutput(TestResultProcessor processor) {
+        long maxOutputPerTest = Long.getLong(MAX_OUTPUT_PER_TEST_PROPERTY, 0);
+        return maxOutputPerTest > 0 ? new LimitTestOutputTestResultProcessor(processor, maxOutputPerTest) : processor;
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        processor.started(test, event);
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        outputPerTest.remove(testId);
+        processor.completed(testId, event);
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        AtomicLong output = outputPerTest.get(testId);
+        if (output == null) {
+            outputPerTest.putIfAbsent(testId, new AtomicLong());
+            output = outputPerTest.get(testId);
+        }
+        String message = event.getMessage();
+        long total = output.addAndGet(message.length());
+        long before = total - message.length();
+        if (total <= maxOutputPerTest) {
+            processor.output(testId, event);
+        } else if (before < maxOutputPerTest) {
+            int end = (int) (maxOutputPerTest - before);
+            if (end > 0 && Character.isHighSurrogate(message.charAt(end - 1))) {
+                // Do not split a surrogate pair
+                end--;
+            }
+            processor.output(testId, new DefaultTestOutputEvent(event.getDestination(), message.substring(0, end)));
+            processor.output(testId, new DefaultTestOutputEvent(event.getDestination(), String.format("%n[Output truncated: the test produced more than %d characters of output]%n", maxOutputPerTest)));
+        }
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        processor.failure(testId, result);
+    }
+}
@@ -30,25 +30,31 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Assigns each test class to the processor with the least estimated
+ * work assigned so far. When no durations are known, this is a simple round-robin.
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final TestClassDurations durations;
     private TestResultProcessor resultProcessor;
-    private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
+    private List<Long> assignedWork = new ArrayList<Long>();
     private List<TestClassProcessor> rawProcessors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
     private volatile boolean stoppedNow;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, TestClassDurations.none());
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, TestClassDurations durations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.durations = durations;
     }
 
     @Override
@@ -65,6 +71,7 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
         }
 
         TestClassProcessor processor;
+        int pos;
         if (processors.size() < maxProcessors) {
             processor = factory.create();
             rawProcessors.add(processor);
@@ -72,14 +79,27 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
             processor = actor.getProxy(TestClassProcessor.class);
             actors.add(actor);
             processors.add(processor);
+            assignedWork.add(0L);
+            pos = processors.size() - 1;
             processor.startProcessing(resultProcessor);
         } else {
+            pos = leastLoadedProcessor();
             processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
         }
+        assignedWork.set(pos, assignedWork.get(pos) + durations.estimate(testClass.getTestClassName()));
         processor.processTestClass(testClass);
     }
 
+    private int leastLoadedProcessor() {
+        int leastLoaded = 0;
+        for (int i = 1; i < assignedWork.size(); i++) {
+            if (assignedWork.get(i) < assignedWork.get(leastLoaded)) {
+                leastLoaded = i;
+            }
+        }
+        return leastLoaded;
+    }
+
     @Override
     public void stop() {
         try {
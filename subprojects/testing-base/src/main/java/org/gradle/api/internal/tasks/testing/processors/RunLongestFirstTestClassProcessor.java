@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Passes the test classes to its delegate in order of their estimated duration, longest first, so that the long running
+ * test classes do not end up running last, on a single process, while the other processes are idle.
+ *
+ * <p>A test class is passed on as soon as it is found, when no test class found later can have a longer estimate: all the test classes
+ * that ran previously with a longer duration have been found, and the test class is not estimated shorter than the test classes that
+ * did not run previously. The other test classes are held back until then, or until the processor is stopped.</p>
+ */
+public class RunLongestFirstTestClassProcessor implements TestClassProcessor {
+    private final TestClassDurations durations;
+    private final TestClassProcessor delegate;
+    private final List<String> previousTestClasses;
+    private final Set<String> foundTestClasses = new HashSet<String>();
+    private final PriorityQueue<HeldTestClass> heldTestClasses = new PriorityQueue<HeldTestClass>();
+    private int nextPreviousTestClass;
+    private long found;
+
+    public RunLongestFirstTestClassProcessor(TestClassDurations durations, TestClassProcessor delegate) {
+        this.durations = durations;
+        this.delegate = delegate;
+        this.previousTestClasses = durations.getPreviousTestClassesLongestFirst();
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        delegate.startProcessing(resultProcessor);
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        foundTestClasses.add(testClass.getTestClassName());
+        heldTestClasses.add(new HeldTestClass(testClass, durations.estimate(testClass.getTestClassName()), found++));
+        long longestNotFound = longestEstimateNotFound();
+        while (!heldTestClasses.isEmpty()) {
+            long estimate = heldTestClasses.peek().estimate;
+            if (estimate < longestNotFound || estimate < durations.getDefaultEstimate()) {
+                break;
+            }
+            delegate.processTestClass(heldTestClasses.poll().testClass);
+        }
+    }
+
+    private long longestEstimateNotFound() {
+        while (nextPreviousTestClass < previousTestClasses.size() && foundTestClasses.contains(previousTestClasses.get(nextPreviousTestClass))) {
+            nextPreviousTestClass++;
+        }
+        return nextPreviousTestClass < previousTestClasses.size() ? durations.estimate(previousTestClasses.get(nextPreviousTestClass)) : 0;
+    }
+
+    @Override
+    public void stop() {
+        while (!heldTestClasses.isEmpty()) {
+            delegate.processTestClass(heldTestClasses.poll().testClass);
+        }
+        delegate.stop();
+    }
+
+    @Override
+    public void stopNow() {
+        delegate.stopNow();
+    }
+
+    private static class HeldTestClass implements Comparable<HeldTestClass> {
+        private final TestClassRunInfo testClass;
+        private final long estimate;
+        private final long order;
+
+        HeldTestClass(TestClassRunInfo testClass, long estimate, long order) {
+            this.testClass = testClass;
+            this.estimate = estimate;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(HeldTestClass other) {
+            // Test classes with the same estimate keep the order in which they were found
+            int result = Long.compare(other.estimate, estimate);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+}
@@ -20,21 +20,26 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * In order to speed up the development feedback cycle, this class guarantee previous failed test classes
  * to be passed to its delegate first.
+ *
+ * <p>Previous failed test classes are passed on as soon as they are found. The other test classes are held back until all the previous
+ * failed test classes have been found, or until the processor is stopped.</p>
  */
 public class RunPreviousFailedFirstTestClassProcessor implements TestClassProcessor {
     private final Set<String> previousFailedTestClasses;
     private final TestClassProcessor delegate;
-    private final LinkedHashSet<TestClassRunInfo> prioritizedTestClasses = new LinkedHashSet<TestClassRunInfo>();
+    private final Set<String> previousFailedTestClassesNotFound;
     private final LinkedHashSet<TestClassRunInfo> otherTestClasses = new LinkedHashSet<TestClassRunInfo>();
 
     public RunPreviousFailedFirstTestClassProcessor(Set<String> previousFailedTestClasses, TestClassProcessor delegate) {
         this.previousFailedTestClasses = previousFailedTestClasses;
+        this.previousFailedTestClassesNotFound = new HashSet<String>(previousFailedTestClasses);
         this.delegate = delegate;
     }
 
@@ -46,20 +51,29 @@ public class RunPreviousFailedFirstTestClassProcessor implements TestClassProces
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
         if (previousFailedTestClasses.contains(testClass.getTestClassName())) {
-            prioritizedTestClasses.add(testClass);
+            if (previousFailedTestClassesNotFound.remove(testClass.getTestClassName())) {
+                delegate.processTestClass(testClass);
+                if (previousFailedTestClassesNotFound.isEmpty()) {
+                    processOtherTestClasses();
+                }
+            }
+        } else if (previousFailedTestClassesNotFound.isEmpty()) {
+            delegate.processTestClass(testClass);
         } else {
             otherTestClasses.add(testClass);
         }
     }
 
-    @Override
-    public void stop() {
-        for (TestClassRunInfo test : prioritizedTestClasses) {
-            delegate.processTestClass(test);
-        }
+    private void processOtherTestClasses() {
         for (TestClassRunInfo test : otherTestClasses) {
             delegate.processTestClass(test);
         }
+        otherTestClasses.clear();
+    }
+
+    @Override
+    public void stop() {
+        processOtherTestClasses();
         delegate.stop();
     }
 
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates how long each test class takes to run, based on the durations of the test classes in the previous run.
+ * A test class that did not run previously is estimated to take the average duration of the test classes that did.
+ */
+public class TestClassDurations {
+    private static final TestClassDurations NONE = new TestClassDurations(Collections.<String, Long>emptyMap());
+
+    private final Map<String, Long> previousDurations;
+    private final long defaultEstimate;
+
+    public TestClassDurations(Map<String, Long> previousDurations) {
+        this.previousDurations = previousDurations;
+        long total = 0;
+        for (Long duration : previousDurations.values()) {
+            total += duration;
+        }
+        // Never estimate 0, so that test classes without any estimate are spread evenly
+        this.defaultEstimate = Math.max(1, previousDurations.isEmpty() ? 1 : total / previousDurations.size());
+    }
+
+    public static TestClassDurations none() {
+        return NONE;
+    }
+
+    public long estimate(String testClassName) {
+        Long duration = previousDurations.get(testClassName);
+        return duration == null ? defaultEstimate : Math.max(1, duration);
+    }
+
+    /**
+     * The estimate of the test classes that did not run previously.
+     */
+    public long getDefaultEstimate() {
+        return defaultEstimate;
+    }
+
+    /**
+     * The names of the test classes that ran previously, longest first.
+     */
+    public List<String> getPreviousTestClassesLongestFirst() {
+        List<String> testClassNames = new ArrayList<String>(previousDurations.keySet());
+        Collections.sort(testClassNames, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Long.compare(estimate(o2), estimate(o1));
+            }
+        });
+        return testClassNames;
+    }
+}
@@ -91,6 +91,16 @@ public class ClassTestResults extends CompositeTestResults {
         return results;
     }
 
+    /**
+     * Discards the results of the individual tests of this class, once the page of the class has been rendered. Keeps the counts, and the names of the failed and ignored tests.
+     */
+    public void discardTestDetails() {
+        results.clear();
+        for (TestResult failure : getFailures()) {
+            failure.discardFailures();
+        }
+    }
+
     public TestResult addTest(String testName, String testDisplayName, long duration) {
         TestResult test = new TestResult(testName, testDisplayName, duration, this);
         results.add(test);
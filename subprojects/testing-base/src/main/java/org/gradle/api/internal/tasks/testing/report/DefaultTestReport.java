@@ -35,13 +35,18 @@ import org.gradle.reporting.HtmlReportRenderer;
 import org.gradle.reporting.ReportRenderer;
 import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SKIPPED;
 
 public class DefaultTestReport implements TestReporter {
+    // Enough pages to keep every worker busy, while holding the results of only a few classes at a time
+    private static final int MAX_QUEUED_CLASS_PAGES = 2 * Runtime.getRuntime().availableProcessors();
+
     private final BuildOperationExecutor buildOperationExecutor;
     private final static Logger LOG = Logging.getLogger(DefaultTestReport.class);
 
@@ -49,39 +54,16 @@ public class DefaultTestReport implements TestReporter {
         this.buildOperationExecutor = buildOperationExecutor;
     }
 
+    /**
+     * Renders the page of each test class as soon as the class is visited, and then discards the results of its individual tests,
+     * so that only the aggregated results are kept in memory to render the package pages and the overview page at the end.
+     * When too many class pages are waiting to be rendered, the next page is rendered before reading more results.
+     */
     @Override
-    public void generateReport(TestResultsProvider resultsProvider, File reportDir) {
+    public void generateReport(final TestResultsProvider resultsProvider, final File reportDir) {
         LOG.info("Generating HTML test report...");
 
         Timer clock = Time.startTimer();
-        AllTestResults model = loadModelFromProvider(resultsProvider);
-        generateFiles(model, resultsProvider, reportDir);
-        LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
-    }
-
-    private AllTestResults loadModelFromProvider(TestResultsProvider resultsProvider) {
-        final AllTestResults model = new AllTestResults();
-        resultsProvider.visitClasses(new Action<TestClassResult>() {
-            public void execute(TestClassResult classResult) {
-                model.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName());
-                List<TestMethodResult> collectedResults = classResult.getResults();
-                for (TestMethodResult collectedResult : collectedResults) {
-                    final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName(), collectedResult.getName(), collectedResult.getDisplayName(), collectedResult.getDuration());
-                    if (collectedResult.getResultType() == SKIPPED) {
-                        testResult.setIgnored();
-                    } else {
-                        List<TestFailure> failures = collectedResult.getFailures();
-                        for (TestFailure failure : failures) {
-                            testResult.addFailure(failure);
-                        }
-                    }
-                }
-            }
-        });
-        return model;
-    }
-
-    private void generateFiles(AllTestResults model, final TestResultsProvider resultsProvider, final File reportDir) {
         try {
             HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
             buildOperationExecutor.run(new RunnableBuildOperation() {
@@ -98,18 +80,27 @@ public class DefaultTestReport implements TestReporter {
                 }
             });
 
-            htmlRenderer.render(model, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
+            htmlRenderer.render(new AllTestResults(), new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
                 @Override
                 public void render(final AllTestResults model, final HtmlReportBuilder output) throws IOException {
                     buildOperationExecutor.runAll(new Action<BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>>>() {
                         @Override
-                        public void execute(BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                        public void execute(final BuildOperationQueue<HtmlReportFileGenerator<? extends CompositeTestResults>> queue) {
+                            final Semaphore queuedClassPages = new Semaphore(MAX_QUEUED_CLASS_PAGES);
+                            resultsProvider.visitClasses(new Action<TestClassResult>() {
+                                public void execute(TestClassResult classResult) {
+                                    ClassTestResults classResults = addTestClass(model, classResult);
+                                    if (queuedClassPages.tryAcquire()) {
+                                        queue.add(new ClassPageGenerator(classResults, new ClassPageRenderer(resultsProvider), output, queuedClassPages));
+                                    } else {
+                                        // Rendering has fallen behind, so render this page before reading more results
+                                        buildOperationExecutor.run(new ClassPageGenerator(classResults, new ClassPageRenderer(resultsProvider), output, null));
+                                    }
+                                }
+                            });
                             queue.add(generator("index.html", model, new OverviewPageRenderer(), output));
                             for (PackageTestResults packageResults : model.getPackages()) {
                                 queue.add(generator(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer(), output));
-                                for (ClassTestResults classResults : packageResults.getClasses()) {
-                                    queue.add(generator(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider), output));
-                                }
                             }
                         }
                     });
@@ -118,6 +109,24 @@ public class DefaultTestReport implements TestReporter {
         } catch (Exception e) {
             throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
         }
+        LOG.info("Finished generating test html results ({}) into: {}", clock.getElapsed(), reportDir);
+    }
+
+    private static ClassTestResults addTestClass(AllTestResults model, TestClassResult classResult) {
+        ClassTestResults classResults = model.addTestClass(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName());
+        List<TestMethodResult> collectedResults = classResult.getResults();
+        for (TestMethodResult collectedResult : collectedResults) {
+            final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), classResult.getClassDisplayName(), collectedResult.getName(), collectedResult.getDisplayName(), collectedResult.getDuration());
+            if (collectedResult.getResultType() == SKIPPED) {
+                testResult.setIgnored();
+            } else {
+                List<TestFailure> failures = collectedResult.getFailures();
+                for (TestFailure failure : failures) {
+                    testResult.addFailure(failure);
+                }
+            }
+        }
+        return classResults;
     }
 
     public static <T extends CompositeTestResults> HtmlReportFileGenerator<T> generator(String fileUrl, T results, PageRenderer<T> renderer, HtmlReportBuilder output) {
@@ -147,4 +156,28 @@ public class DefaultTestReport implements TestReporter {
             output.renderHtmlPage(fileUrl, results, renderer);
         }
     }
+
+    private static class ClassPageGenerator extends HtmlReportFileGenerator<ClassTestResults> {
+        private final ClassTestResults classResults;
+        private final Semaphore queueSlot;
+
+        ClassPageGenerator(ClassTestResults classResults, PageRenderer<ClassTestResults> renderer, HtmlReportBuilder output, @Nullable Semaphore queueSlot) {
+            super(classResults.getBaseUrl(), classResults, renderer, output);
+            this.classResults = classResults;
+            this.queueSlot = queueSlot;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            try {
+                super.run(context);
+                // The other pages only need the aggregated results of the class
+                classResults.discardTestDetails();
+            } finally {
+                if (queueSlot != null) {
+                    queueSlot.release();
+                }
+            }
+        }
+    }
 }
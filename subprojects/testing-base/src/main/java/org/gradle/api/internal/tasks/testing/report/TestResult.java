@@ -28,6 +28,7 @@ public class TestResult extends TestResultModel implements Comparable<TestResult
     final List<TestFailure> failures = new ArrayList<TestFailure>();
     final String name;
     final String displayName;
+    boolean failed;
     boolean ignored;
 
     public TestResult(String name, long duration, ClassTestResults classResults) {
@@ -63,7 +64,7 @@ public class TestResult extends TestResultModel implements Comparable<TestResult
         if (ignored) {
             return ResultType.SKIPPED;
         }
-        return failures.isEmpty() ? ResultType.SUCCESS : ResultType.FAILURE;
+        return failed ? ResultType.FAILURE : ResultType.SUCCESS;
     }
 
     @Override
@@ -91,6 +92,11 @@ public class TestResult extends TestResultModel implements Comparable<TestResult
     public void addFailure(TestFailure failure) {
         classResults.failed(this);
         failures.add(failure);
+        failed = true;
+    }
+
+    void discardFailures() {
+        failures.clear();
     }
 
     public void setIgnored() {
@@ -27,13 +27,16 @@ import org.gradle.internal.remote.ObjectConnection;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.process.internal.ExecException;
+import org.gradle.process.internal.JavaExecHandleBuilder;
 import org.gradle.process.internal.worker.WorkerProcess;
 import org.gradle.process.internal.worker.WorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -46,15 +49,24 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
+    private final TestWorkerPool workerPool;
     private final Lock lock = new ReentrantLock();
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
+    private PooledTestWorker pooledWorker;
     private TestResultProcessor resultProcessor;
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
     private DocumentationRegistry documentationRegistry;
     private boolean stoppedNow;
 
     public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, DocumentationRegistry documentationRegistry) {
+        this(parentWorkerLease, workerFactory, processorFactory, options, classPath, buildConfigAction, moduleRegistry, documentationRegistry, null);
+    }
+
+    /**
+     * @param workerPool When not null, the tests run in a reusable worker taken from the pool, which is returned to the pool when the tests are done.
+     */
+    public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, DocumentationRegistry documentationRegistry, @Nullable TestWorkerPool workerPool) {
         this.currentWorkerLease = parentWorkerLease;
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
@@ -63,6 +75,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
         this.documentationRegistry = documentationRegistry;
+        this.workerPool = workerPool;
     }
 
     @Override
@@ -96,14 +109,11 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
-        builder.setBaseName("Gradle Test Executor");
-        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
-        builder.applicationClasspath(classPath);
-        options.copyTo(builder.getJavaCommand());
-        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
-        buildConfigAction.execute(builder);
+        if (workerPool != null) {
+            return startPooledWorkerSession();
+        }
 
+        WorkerProcessBuilder builder = createWorkerProcessBuilder(new TestWorker(processorFactory), getTestWorkerImplementationClasspath(), classPath);
         workerProcess = builder.build();
         workerProcess.start();
 
@@ -116,6 +126,64 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         return remoteProcessor;
     }
 
+    private WorkerProcessBuilder createWorkerProcessBuilder(TestWorker worker, List<URL> implementationClasspath, Iterable<File> applicationClasspath) {
+        WorkerProcessBuilder builder = workerFactory.create(worker);
+        builder.setBaseName("Gradle Test Executor");
+        builder.setImplementationClasspath(implementationClasspath);
+        builder.applicationClasspath(applicationClasspath);
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
+        buildConfigAction.execute(builder);
+        return builder;
+    }
+
+    /**
+     * Runs the tests in a reusable worker. The worker is started with the jars of the test runtime classpath, which are usually libraries,
+     * and loads the directories of the classpath, which hold the classes of the project, in a ClassLoader of the session.
+     * Idle workers are reused when they were started with the same settings and jars, and the jars have not changed since.
+     */
+    private RemoteTestClassProcessor startPooledWorkerSession() {
+        List<File> libraries = new ArrayList<File>();
+        List<File> sessionClasspath = new ArrayList<File>();
+        for (File file : classPath) {
+            if (file.isFile()) {
+                libraries.add(file);
+            } else {
+                sessionClasspath.add(file);
+            }
+        }
+        List<URL> implementationClasspath = getTestWorkerImplementationClasspath();
+        WorkerProcessBuilder builder = createWorkerProcessBuilder(TestWorker.reusable(), implementationClasspath, libraries);
+        Object key = workerKey(builder, implementationClasspath, libraries);
+
+        pooledWorker = workerPool.reserveIdleWorker(key);
+        if (pooledWorker == null) {
+            pooledWorker = new PooledTestWorker(key, builder.build());
+            pooledWorker.start();
+        }
+        workerProcess = pooledWorker.getWorkerProcess();
+        return pooledWorker.startSession(new TestWorkerSession(processorFactory, sessionClasspath), resultProcessor);
+    }
+
+    private static Object workerKey(WorkerProcessBuilder builder, List<URL> implementationClasspath, List<File> libraries) {
+        JavaExecHandleBuilder javaCommand = builder.getJavaCommand();
+        List<Object> key = new ArrayList<Object>();
+        key.add(javaCommand.getExecutable());
+        key.add(javaCommand.getAllJvmArgs());
+        key.add(javaCommand.getActualEnvironment());
+        key.add(javaCommand.getWorkingDir());
+        key.add(builder.getSharedPackages());
+        key.add(builder.getLogLevel());
+        key.add(implementationClasspath.toString());
+        for (File library : libraries) {
+            // The worker may have loaded classes of a jar that has changed since
+            key.add(library.getAbsolutePath());
+            key.add(library.length());
+            key.add(library.lastModified());
+        }
+        return key;
+    }
+
     List<URL> getTestWorkerImplementationClasspath() {
         return CollectionUtils.flattenCollections(URL.class,
             moduleRegistry.getModule("gradle-core-api").getImplementationClasspath().getAsURLs(),
@@ -153,7 +221,14 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
                 } finally {
                     lock.unlock();
                 }
-                workerProcess.waitForStop();
+                if (pooledWorker == null) {
+                    workerProcess.waitForStop();
+                } else if (!stoppedNow && pooledWorker.waitForSessionCompleted()) {
+                    workerPool.release(pooledWorker);
+                } else {
+                    // The worker was stopped, or has gone away
+                    workerProcess.waitForStop();
+                }
             }
         } catch (ExecException e) {
             if (!stoppedNow) {
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.dispatch.StreamCompletion;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.worker.WorkerProcess;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A reusable test worker process, which runs the tests of one test task at a time. Forwards the results of the current session to the result processor of the session.
+ */
+class PooledTestWorker implements ReusableTestResultProcessor, StreamCompletion {
+    private final Object key;
+    private final WorkerProcess workerProcess;
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private ReusableRemoteTestClassProcessor remoteProcessor;
+    private volatile TestResultProcessor resultProcessor;
+    private boolean sessionRunning;
+    private boolean ended;
+
+    PooledTestWorker(Object key, WorkerProcess workerProcess) {
+        this.key = key;
+        this.workerProcess = workerProcess;
+    }
+
+    /**
+     * Starts the worker process. The worker process should have been built with a {@link TestWorker#reusable()} worker.
+     */
+    void start() {
+        workerProcess.start();
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(ReusableTestResultProcessor.class, this);
+        remoteProcessor = connection.addOutgoing(ReusableRemoteTestClassProcessor.class);
+        connection.connect();
+    }
+
+    Object getKey() {
+        return key;
+    }
+
+    WorkerProcess getWorkerProcess() {
+        return workerProcess;
+    }
+
+    /**
+     * Starts running the tests of a session, sending their results to the given processor.
+     */
+    RemoteTestClassProcessor startSession(TestWorkerSession session, TestResultProcessor resultProcessor) {
+        lock.lock();
+        try {
+            this.resultProcessor = resultProcessor;
+            sessionRunning = true;
+        } finally {
+            lock.unlock();
+        }
+        remoteProcessor.startSession(session);
+        remoteProcessor.startProcessing();
+        return remoteProcessor;
+    }
+
+    /**
+     * Waits until the worker has finished the current session, after {@link RemoteTestClassProcessor#stop()} has been called.
+     *
+     * @return true when the session completed and the worker can be reused, false when the worker process has gone away.
+     */
+    boolean waitForSessionCompleted() {
+        lock.lock();
+        try {
+            while (sessionRunning && !ended) {
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            resultProcessor = null;
+            return !ended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEnded() {
+        lock.lock();
+        try {
+            return ended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops an idle worker.
+     */
+    void stop() {
+        if (!isEnded()) {
+            remoteProcessor.stopWorker();
+        }
+        workerProcess.waitForStop();
+    }
+
+    void stopNow() {
+        workerProcess.stopNow();
+    }
+
+    @Override
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        resultProcessor.started(test, event);
+    }
+
+    @Override
+    public void completed(Object testId, TestCompleteEvent event) {
+        resultProcessor.completed(testId, event);
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        resultProcessor.output(testId, event);
+    }
+
+    @Override
+    public void failure(Object testId, Throwable result) {
+        resultProcessor.failure(testId, result);
+    }
+
+    @Override
+    public void sessionCompleted() {
+        lock.lock();
+        try {
+            sessionRunning = false;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void endStream() {
+        lock.lock();
+        try {
+            ended = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+/**
+ * The protocol of a test worker that is kept alive to run the tests of several test tasks, one session at a time.
+ * {@link #stop()} ends the current session rather than the worker.
+ */
+public interface ReusableRemoteTestClassProcessor extends RemoteTestClassProcessor {
+    /**
+     * Starts a session, which the calls up to the next {@link #stop()} apply to. Does not block.
+     */
+    void startSession(TestWorkerSession session);
+
+    /**
+     * Stops the worker. Does not block.
+     */
+    void stopWorker();
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+
+/**
+ * Receives the test results of a reusable test worker. The end of each session is sent over the same channel as the results,
+ * so that it is received after all the results of the session.
+ */
+public interface ReusableTestResultProcessor extends TestResultProcessor {
+    /**
+     * Notifies this processor that the worker has finished the current session, and is ready for another one.
+     */
+    void sessionCompleted();
+}
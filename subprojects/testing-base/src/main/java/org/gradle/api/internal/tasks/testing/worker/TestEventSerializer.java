@@ -20,8 +20,16 @@ import org.gradle.api.internal.tasks.testing.*;
 import org.gradle.api.tasks.testing.TestOutputEvent;
 import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.id.CompositeIdGenerator;
+import org.gradle.internal.io.ClassLoaderObjectInputStream;
 import org.gradle.internal.serialize.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 public class TestEventSerializer {
     public static SerializerRegistry create() {
         BaseSerializerFactory factory = new BaseSerializerFactory();
@@ -37,6 +45,7 @@ public class TestEventSerializer {
         registry.register(TestCompleteEvent.class, new TestCompleteEventSerializer());
         registry.register(DefaultTestOutputEvent.class, new DefaultTestOutputEventSerializer());
         registry.register(Throwable.class, factory.getSerializerFor(Throwable.class));
+        registry.register(TestWorkerSession.class, new TestWorkerSessionSerializer());
         return registry;
     }
 
@@ -234,4 +243,32 @@ public class TestEventSerializer {
             encoder.writeString(value.getName());
         }
     }
+
+    private static class TestWorkerSessionSerializer implements Serializer<TestWorkerSession> {
+        @Override
+        public TestWorkerSession read(Decoder decoder) throws Exception {
+            int count = decoder.readSmallInt();
+            List<File> classpath = new ArrayList<File>(count);
+            for (int i = 0; i < count; i++) {
+                classpath.add(new File(decoder.readString()));
+            }
+            // The processor factory is an implementation class of the test framework, which is visible to the ClassLoader of this class in the worker
+            ClassLoaderObjectInputStream instr = new ClassLoaderObjectInputStream(new ByteArrayInputStream(decoder.readBinary()), getClass().getClassLoader());
+            WorkerTestClassProcessorFactory processorFactory = (WorkerTestClassProcessorFactory) instr.readObject();
+            return new TestWorkerSession(processorFactory, classpath);
+        }
+
+        @Override
+        public void write(Encoder encoder, TestWorkerSession value) throws Exception {
+            encoder.writeSmallInt(value.getClasspath().size());
+            for (File file : value.getClasspath()) {
+                encoder.writeString(file.getPath());
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream outstr = new ObjectOutputStream(bytes);
+            outstr.writeObject(value.getProcessorFactory());
+            outstr.close();
+            encoder.writeBinary(bytes.toByteArray());
+        }
+    }
 }
@@ -24,10 +24,14 @@ import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.actor.internal.DefaultActorFactory;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.gradle.internal.classloader.VisitableURLClassLoader;
+import org.gradle.internal.classpath.DefaultClassPath;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.dispatch.ContextClassLoaderProxy;
+import org.gradle.internal.dispatch.StreamCompletion;
 import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.LongIdGenerator;
@@ -41,31 +45,54 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.security.AccessControlException;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 
-public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable, Stoppable {
+/**
+ * Runs the tests of a test task in a worker process.
+ *
+ * <p>A reusable worker, created with {@link #reusable()}, runs the tests of several test tasks one after the other, one session per task.
+ * The classes of each session are loaded by a ClassLoader that is discarded at the end of the session, and the system properties
+ * and security manager are reset between sessions.</p>
+ */
+public class TestWorker implements Action<WorkerProcessContext>, ReusableRemoteTestClassProcessor, Serializable, Stoppable, StreamCompletion {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
+    // Null for a reusable worker, which receives the factory of each session
     private final WorkerTestClassProcessorFactory factory;
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private WorkerProcessContext workerProcessContext;
+    private ServiceRegistry testServices;
+    private SecurityManager securityManager;
+    private Properties sessionSystemProperties;
+    private ClassLoader sessionClassLoader;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
         this.factory = factory;
     }
 
+    /**
+     * Creates a worker that runs the tests of several sessions, started with {@link #startSession(TestWorkerSession)}.
+     */
+    public static TestWorker reusable() {
+        return new TestWorker(null);
+    }
+
     @Override
     public void execute(final WorkerProcessContext workerProcessContext) {
         LOGGER.info("{} started executing tests.", workerProcessContext.getDisplayName());
 
-        SecurityManager securityManager = System.getSecurityManager();
+        securityManager = System.getSecurityManager();
         completed = new CountDownLatch(1);
 
         System.setProperty(WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
 
         DefaultServiceRegistry testServices = new TestFrameworkServiceRegistry(workerProcessContext);
-        startReceivingTests(workerProcessContext, testServices);
+        this.workerProcessContext = workerProcessContext;
+        this.testServices = testServices;
+        startReceivingTests(workerProcessContext);
 
         try {
             try {
@@ -76,33 +103,42 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         } finally {
             LOGGER.info("{} finished executing tests.", workerProcessContext.getDisplayName());
 
-            if (System.getSecurityManager() != securityManager) {
-                try {
-                    // Reset security manager the tests seem to have installed
-                    System.setSecurityManager(securityManager);
-                } catch (SecurityException e) {
-                    LOGGER.warn("Unable to reset SecurityManager. Continuing anyway...", e);
-                }
-            }
+            resetSecurityManager();
             testServices.close();
         }
     }
 
-    private void startReceivingTests(WorkerProcessContext workerProcessContext, ServiceRegistry testServices) {
+    private void startReceivingTests(WorkerProcessContext workerProcessContext) {
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        serverConnection.useParameterSerializers(TestEventSerializer.create());
+        if (factory == null) {
+            this.resultProcessor = serverConnection.addOutgoing(ReusableTestResultProcessor.class);
+            serverConnection.addIncoming(ReusableRemoteTestClassProcessor.class, this);
+        } else {
+            processor = createProcessor(factory, workerProcessContext.getApplicationClassLoader());
+            this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+            serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
+        }
+        serverConnection.connect();
+    }
+
+    private TestClassProcessor createProcessor(WorkerTestClassProcessorFactory factory, ClassLoader applicationClassLoader) {
         TestClassProcessor targetProcessor = factory.create(testServices);
         IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
 
         targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
                 workerProcessContext.getDisplayName(), testServices.get(Clock.class));
         ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
-                TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
-        processor = proxy.getSource();
+                TestClassProcessor.class, targetProcessor, applicationClassLoader);
+        return proxy.getSource();
+    }
 
-        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
-        serverConnection.useParameterSerializers(TestEventSerializer.create());
-        this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
-        serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
-        serverConnection.connect();
+    @Override
+    public void startSession(TestWorkerSession session) {
+        Thread.currentThread().setName("Test worker");
+        sessionSystemProperties = (Properties) System.getProperties().clone();
+        sessionClassLoader = new VisitableURLClassLoader("test-session-loader", workerProcessContext.getApplicationClassLoader(), DefaultClassPath.of(session.getClasspath()));
+        processor = createProcessor(session.getProcessorFactory(), sessionClassLoader);
     }
 
     @Override
@@ -131,13 +167,49 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         try {
             processor.stop();
         } finally {
-            completed.countDown();
+            if (factory == null) {
+                endSession();
+            } else {
+                completed.countDown();
+            }
             // Clean the interrupted status
             // because some test class processors do work here, e.g. JUnitPlatform
             Thread.interrupted();
         }
     }
 
+    private void endSession() {
+        processor = null;
+        resetSecurityManager();
+        System.setProperties(sessionSystemProperties);
+        sessionSystemProperties = null;
+        ClassLoaderUtils.tryClose(sessionClassLoader);
+        sessionClassLoader = null;
+        ((ReusableTestResultProcessor) resultProcessor).sessionCompleted();
+    }
+
+    @Override
+    public void stopWorker() {
+        completed.countDown();
+    }
+
+    @Override
+    public void endStream() {
+        // The build process has gone away
+        completed.countDown();
+    }
+
+    private void resetSecurityManager() {
+        if (System.getSecurityManager() != securityManager) {
+            try {
+                // Reset security manager the tests seem to have installed
+                System.setSecurityManager(securityManager);
+            } catch (SecurityException e) {
+                LOGGER.warn("Unable to reset SecurityManager. Continuing anyway...", e);
+            }
+        }
+    }
+
     private static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
         private final WorkerProcessContext workerProcessContext;
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the reusable test worker processes of this process alive across test tasks and builds, and hands out idle workers that were started
+ * with the same settings: the same JVM, JVM arguments, boot classpath, environment, working directory and library jars.
+ *
+ * <p>Reusing test workers is opt-in, see {@link #REUSE_FORKS_PROPERTY}.</p>
+ */
+@ThreadSafe
+public class TestWorkerPool implements Stoppable {
+    /**
+     * When set, the test workers of test tasks that do not fork every so many test classes are kept alive and reused.
+     *
+     * <p>Only the directories of the test runtime classpath are loaded by a class loader of their own for each session. The jars on it, framework
+     * or not, are loaded once by the application class loader of the worker, so any static state they hold leaks from one test task, and one build,
+     * to the next. Such state can also reference classes of a session, such as listeners registered with a library, and so keep the class loader
+     * of the session and all of its classes in memory for as long as the worker lives.</p>
+     */
+    public static final String REUSE_FORKS_PROPERTY = "org.gradle.internal.testing.reuse-forks";
+
+    private static final Logger LOGGER = Logging.getLogger(TestWorkerPool.class);
+    static final int MAX_IDLE_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private final Object lock = new Object();
+    // Most recently released last
+    private final List<PooledTestWorker> idleWorkers = new ArrayList<PooledTestWorker>();
+    private boolean stopped;
+
+    /**
+     * Reserves an idle worker started with the given settings, if there is one.
+     */
+    @Nullable
+    PooledTestWorker reserveIdleWorker(Object key) {
+        synchronized (lock) {
+            for (int i = idleWorkers.size() - 1; i >= 0; i--) {
+                PooledTestWorker worker = idleWorkers.get(i);
+                if (worker.getKey().equals(key)) {
+                    idleWorkers.remove(i);
+                    return worker;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns a worker that has completed its session to the pool. Stops the least recently used idle workers when there are too many.
+     */
+    void release(PooledTestWorker worker) {
+        List<PooledTestWorker> workersToStop = new ArrayList<PooledTestWorker>();
+        synchronized (lock) {
+            if (stopped || worker.isEnded()) {
+                workersToStop.add(worker);
+            } else {
+                idleWorkers.add(worker);
+                while (idleWorkers.size() > MAX_IDLE_WORKERS) {
+                    workersToStop.add(idleWorkers.remove(0));
+                }
+            }
+        }
+        stopWorkers(workersToStop);
+    }
+
+    @Override
+    public void stop() {
+        List<PooledTestWorker> workersToStop;
+        synchronized (lock) {
+            stopped = true;
+            // Workers in use are stopped when they are released
+            workersToStop = new ArrayList<PooledTestWorker>(idleWorkers);
+            idleWorkers.clear();
+        }
+        stopWorkers(workersToStop);
+    }
+
+    private static void stopWorkers(List<PooledTestWorker> workersToStop) {
+        for (PooledTestWorker worker : workersToStop) {
+            try {
+                worker.stop();
+            } catch (Exception e) {
+                LOGGER.debug("Could not stop test worker {}.", worker.getWorkerProcess(), e);
+            }
+        }
+        if (!workersToStop.isEmpty()) {
+            LOGGER.debug("Stopped {} idle test worker(s).", workersToStop.size());
+        }
+    }
+}
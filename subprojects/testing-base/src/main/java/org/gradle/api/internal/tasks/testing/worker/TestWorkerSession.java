@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The tests of one test task that a reusable test worker runs. The classpath of the session is loaded by a ClassLoader of its own,
+ * on top of the application classpath the worker was started with, and is discarded at the end of the session.
+ */
+public class TestWorkerSession {
+    private final WorkerTestClassProcessorFactory processorFactory;
+    private final List<File> classpath;
+
+    public TestWorkerSession(WorkerTestClassProcessorFactory processorFactory, List<File> classpath) {
+        this.processorFactory = processorFactory;
+        this.classpath = classpath;
+    }
+
+    public WorkerTestClassProcessorFactory getProcessorFactory() {
+        return processorFactory;
+    }
+
+    public List<File> getClasspath() {
+        return classpath;
+    }
+}
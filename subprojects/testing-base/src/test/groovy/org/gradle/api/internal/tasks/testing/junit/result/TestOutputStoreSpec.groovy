@@ -98,6 +98,29 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "reads output of a test class written in many chunks"() {
+        def message = "x" * 10000
+
+        when:
+        def writer = output.writer()
+        200.times {
+            writer.onOutput(1, 1, output(StdOut, "[$it]" + message))
+            writer.onOutput(2, 1, output(StdOut, message))
+        }
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        def classOutput = collectAllOutput(reader, 1, StdOut)
+        classOutput.length() == 200 * 10000 + (0..<200).sum { "[$it]".length() }
+        classOutput.startsWith("[0]x")
+        classOutput.endsWith("[199]" + message)
+        output.outputsFile.length() < 200 * 10000
+
+        cleanup:
+        reader.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }
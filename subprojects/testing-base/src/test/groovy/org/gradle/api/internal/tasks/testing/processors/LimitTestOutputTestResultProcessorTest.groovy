@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import spock.lang.Specification
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class LimitTestOutputTestResultProcessorTest extends Specification {
+    TestResultProcessor target = Mock()
+    def processor = new LimitTestOutputTestResultProcessor(target, 10)
+
+    def "passes on output of each test up to the maximum"() {
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "12345"))
+        processor.output("2", new DefaultTestOutputEvent(StdOut, "1234567890"))
+        processor.output("1", new DefaultTestOutputEvent(StdErr, "67890abc"))
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "def"))
+
+        then:
+        1 * target.output("1", { it.destination == StdOut && it.message == "12345" })
+        1 * target.output("2", { it.message == "1234567890" })
+        1 * target.output("1", { it.destination == StdErr && it.message == "67890" })
+        1 * target.output("1", { it.destination == StdErr && it.message.contains("Output truncated") })
+        0 * target._
+    }
+
+    def "starts counting again when the test runs again"() {
+        def completed = new TestCompleteEvent(100)
+
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "1234567890"))
+        processor.completed("1", completed)
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "1234567890"))
+
+        then:
+        2 * target.output("1", { it.message == "1234567890" })
+        1 * target.completed("1", completed)
+        0 * target._
+    }
+
+    def "does not split a surrogate pair when truncating"() {
+        when:
+        processor.output("1", new DefaultTestOutputEvent(StdOut, "123456789\uD83D\uDE00"))
+
+        then:
+        1 * target.output("1", { it.message == "123456789" })
+        1 * target.output("1", { it.message.contains("Output truncated") })
+        0 * target._
+    }
+}
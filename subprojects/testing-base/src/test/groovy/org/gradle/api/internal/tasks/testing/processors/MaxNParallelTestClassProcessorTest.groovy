@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.tasks.testing.processors
 
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
@@ -168,6 +169,31 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * asyncProcessor2.processTestClass(test)
     }
 
+    def assignsTestClassesToProcessorWithLeastEstimatedWork() {
+        def durations = new TestClassDurations([Long1: 100L, Long2: 60L, Short1: 50L, Short2: 10L])
+        def balancingProcessor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, durations)
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Stub() { getProxy(TestClassProcessor) >> asyncProcessor1 }
+        Actor actor2 = Stub() { getProxy(TestClassProcessor) >> asyncProcessor2 }
+        factory.create() >>> [processor1, processor2]
+        actorFactory.createActor(processor1) >> actor1
+        actorFactory.createActor(processor2) >> actor2
+        actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        balancingProcessor.startProcessing(resultProcessor)
+
+        when:
+        ['Long1', 'Long2', 'Short1', 'Short2'].each { balancingProcessor.processTestClass(new DefaultTestClassRunInfo(it)) }
+
+        then:
+        1 * asyncProcessor1.processTestClass(new DefaultTestClassRunInfo('Long1'))
+        1 * asyncProcessor2.processTestClass(new DefaultTestClassRunInfo('Long2'))
+        1 * asyncProcessor2.processTestClass(new DefaultTestClassRunInfo('Short1'))
+        1 * asyncProcessor1.processTestClass(new DefaultTestClassRunInfo('Short2'))
+    }
+
     def "stopNow propagates to factory created processors"() {
         TestClassRunInfo test = Mock()
         TestClassProcessor processor1 = Mock()
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import spock.lang.Specification
+
+class RunLongestFirstTestClassProcessorTest extends Specification {
+    TestClassProcessor delegate = Mock()
+    TestResultProcessor testResultProcessor = Mock()
+
+    def 'test classes are passed to delegate longest first'() {
+        given:
+        def processor = new RunLongestFirstTestClassProcessor(new TestClassDurations([Class1: 10L, Class2: 300L, Class4: 10L]), delegate)
+
+        when:
+        processor.startProcessing(testResultProcessor)
+        ['Class1', 'Class2', 'Class3', 'Class4'].each { processor.processTestClass(new DefaultTestClassRunInfo(it)) }
+        processor.stop()
+
+        then:
+        1 * delegate.startProcessing(testResultProcessor)
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class2'))
+        then:
+        // No previous duration, so estimated as the average
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class3'))
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class1'))
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class4'))
+        then:
+        1 * delegate.stop()
+    }
+
+    def 'test classes are passed to delegate as soon as no longer test class can follow'() {
+        given:
+        def processor = new RunLongestFirstTestClassProcessor(new TestClassDurations([Class1: 300L, Class2: 10L, Class3: 200L]), delegate)
+
+        when:
+        processor.startProcessing(testResultProcessor)
+        processor.processTestClass(new DefaultTestClassRunInfo('Class3'))
+
+        then:
+        1 * delegate.startProcessing(testResultProcessor)
+        0 * delegate._
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo('Class1'))
+
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class1'))
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class3'))
+        0 * delegate._
+
+        when:
+        // Shorter than the estimate of a test class that did not run previously, which may still be found
+        processor.processTestClass(new DefaultTestClassRunInfo('Class2'))
+
+        then:
+        0 * delegate._
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo('Class4'))
+
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class4'))
+        0 * delegate._
+
+        when:
+        processor.stop()
+
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class2'))
+        then:
+        1 * delegate.stop()
+    }
+
+    def 'test classes are passed to delegate as soon as they are found when there are no previous durations'() {
+        given:
+        def processor = new RunLongestFirstTestClassProcessor(TestClassDurations.none(), delegate)
+
+        when:
+        processor.startProcessing(testResultProcessor)
+        processor.processTestClass(new DefaultTestClassRunInfo('Class1'))
+
+        then:
+        1 * delegate.startProcessing(testResultProcessor)
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class1'))
+    }
+}
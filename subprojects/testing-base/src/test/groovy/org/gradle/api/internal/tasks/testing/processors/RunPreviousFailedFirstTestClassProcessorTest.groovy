@@ -46,4 +46,37 @@ class RunPreviousFailedFirstTestClassProcessorTest extends Specification {
         then:
         1 * delegate.stop()
     }
+
+    def 'other test classes are passed to delegate once all previous failed test classes are found'() {
+        given:
+        processor = new RunPreviousFailedFirstTestClassProcessor(['Class2', 'Class3'] as Set, delegate)
+
+        when:
+        processor.startProcessing(testResultProcessor)
+        processor.processTestClass(new DefaultTestClassRunInfo('Class1'))
+        processor.processTestClass(new DefaultTestClassRunInfo('Class2'))
+
+        then:
+        1 * delegate.startProcessing(testResultProcessor)
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class2'))
+        0 * delegate._
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo('Class3'))
+
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class3'))
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class1'))
+        0 * delegate._
+
+        when:
+        processor.processTestClass(new DefaultTestClassRunInfo('Class4'))
+        processor.stop()
+
+        then:
+        1 * delegate.processTestClass(new DefaultTestClassRunInfo('Class4'))
+        then:
+        1 * delegate.stop()
+    }
 }
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.tasks.testing.report
 
+import org.gradle.api.internal.tasks.testing.junit.result.TestFailure
+import org.gradle.api.tasks.testing.TestResult.ResultType
 import spock.lang.Specification
 
 class ClassTestResultsTest extends Specification {
@@ -25,4 +27,24 @@ class ClassTestResultsTest extends Specification {
         new ClassTestResults(1, 'org.gradle.Test', 'TestDisplay', null).reportName == 'TestDisplay'
         new ClassTestResults(2, 'Test', 'TestDisplay', null).reportName == 'TestDisplay'
     }
+
+    def keepsCountsAndFailedTestsWhenTestDetailsAreDiscarded() {
+        given:
+        def results = new ClassTestResults(1, 'org.gradle.Test', null)
+        results.addTest('passed', 'passed', 100)
+        def failed = results.addTest('failed', 'failed', 200)
+        failed.addFailure(new TestFailure("broken", "stack trace", "java.lang.RuntimeException"))
+
+        when:
+        results.discardTestDetails()
+
+        then:
+        results.testResults.empty
+        results.testCount == 2
+        results.failureCount == 1
+        results.duration == 300
+        results.failures == [failed] as Set
+        failed.resultType == ResultType.FAILURE
+        failed.failures.empty
+    }
 }
@@ -466,6 +466,31 @@ class DefaultTestReportTest extends Specification {
         numThreads << [ 1, 4 ]
     }
 
+    @Unroll
+    def "generates a page for each class when there are more classes than can be queued - #numThreads parallel thread(s)"() {
+        given:
+        report = reportWithMaxThreads(numThreads)
+        def classCount = 4 * Runtime.runtime.availableProcessors() + 10
+        def testTestResults = buildResults {
+            classCount.times { index ->
+                testClassResult("org.gradle.Test" + index) {
+                    testcase("test") {
+                        duration = 0
+                    }
+                }
+            }
+        }
+
+        when:
+        report.generateReport(testTestResults, reportDir)
+
+        then:
+        (0..<classCount).each { results(reportDir.file("classes/org.gradle.Test${it}.html")).assertHasTests(1) }
+
+        where:
+        numThreads << [ 1, 4 ]
+    }
+
     def reportsOnClassesInDefaultPackage() {
         given:
         report = reportWithMaxThreads(1)
@@ -21,6 +21,7 @@ import org.gradle.api.internal.DocumentationRegistry
 import org.gradle.api.internal.classpath.Module
 import org.gradle.api.internal.classpath.ModuleRegistry
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
 import org.gradle.internal.classpath.ClassPath
 import org.gradle.internal.remote.ObjectConnection
@@ -31,10 +32,14 @@ import org.gradle.process.internal.JavaExecHandleBuilder
 import org.gradle.process.internal.worker.WorkerProcess
 import org.gradle.process.internal.worker.WorkerProcessBuilder
 import org.gradle.process.internal.worker.WorkerProcessFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Subject
 
 class ForkingTestClassProcessorTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
     WorkerLeaseRegistry.WorkerLease workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
     WorkerProcessBuilder workerProcessBuilder = Mock(WorkerProcessBuilder)
     WorkerProcess workerProcess = Mock(WorkerProcess)
@@ -49,7 +54,12 @@ class ForkingTestClassProcessorTest extends Specification {
     def setup() {
         workerProcessBuilder.build() >> workerProcess
         workerProcessFactory.create(_) >> workerProcessBuilder
-        workerProcessBuilder.getJavaCommand() >> Stub (JavaExecHandleBuilder)
+        workerProcessBuilder.getJavaCommand() >> Stub(JavaExecHandleBuilder) {
+            getExecutable() >> "java"
+            getAllJvmArgs() >> []
+            getActualEnvironment() >> [:]
+            getWorkingDir() >> new File("work")
+        }
     }
 
     def "acquires worker lease and starts worker process on first test"() {
@@ -123,6 +133,155 @@ class ForkingTestClassProcessorTest extends Specification {
         notThrown(ExecException)
     }
 
+    def "runs tests in a reusable worker from the pool and returns the worker to the pool when done"() {
+        def pool = new TestWorkerPool()
+        def remoteProcessor = Mock(ReusableRemoteTestClassProcessor)
+        ReusableTestResultProcessor results = null
+        workerProcess.getConnection() >> Stub(ObjectConnection) {
+            addIncoming(ReusableTestResultProcessor, _) >> { results = it[1] }
+            addOutgoing(ReusableRemoteTestClassProcessor) >> remoteProcessor
+        }
+
+        when:
+        2.times {
+            def processor = new ForkingTestClassProcessor(Stub(WorkerLeaseRegistry.WorkerLease), workerProcessFactory, Mock(WorkerTestClassProcessorFactory), options, [new File("classes")], Mock(Action), Stub(ModuleRegistry), documentationRegistry, pool)
+            processor.startProcessing(Mock(TestResultProcessor))
+            processor.processTestClass(Mock(TestClassRunInfo))
+            processor.stop()
+        }
+
+        then:
+        1 * workerProcessBuilder.build() >> workerProcess
+        1 * workerProcess.start()
+        2 * remoteProcessor.startSession({ it.classpath == [new File("classes")] })
+        2 * remoteProcessor.startProcessing()
+        2 * remoteProcessor.processTestClass(_)
+        2 * remoteProcessor.stop() >> { results.sessionCompleted() }
+        0 * workerProcess.waitForStop()
+        0 * remoteProcessor._
+    }
+
+    def "does not reuse a worker started with other library jars"() {
+        def pool = new TestWorkerPool()
+        def first = reusableWorkerProcess()
+        def second = reusableWorkerProcess()
+
+        when:
+        runPooledSession(pool, [jar("a.jar")])
+        runPooledSession(pool, [jar("b.jar")])
+
+        then:
+        2 * workerProcessBuilder.build() >>> [first, second]
+        1 * first.start()
+        1 * second.start()
+
+        cleanup:
+        pool.stop()
+    }
+
+    def "does not reuse a worker when a library jar has changed since it was started"() {
+        def pool = new TestWorkerPool()
+        def first = reusableWorkerProcess()
+        def second = reusableWorkerProcess()
+        def library = jar("a.jar")
+
+        when:
+        runPooledSession(pool, [library])
+        library << "changed"
+        library.setLastModified(library.lastModified() + 2000)
+        runPooledSession(pool, [library])
+
+        then:
+        2 * workerProcessBuilder.build() >>> [first, second]
+        1 * first.start()
+        1 * second.start()
+
+        cleanup:
+        pool.stop()
+    }
+
+    def "does not return a worker that went away during a session to the pool"() {
+        def pool = new TestWorkerPool()
+        def exiting = reusableWorkerProcess(true)
+        def next = reusableWorkerProcess()
+        def library = jar("a.jar")
+
+        when:
+        runPooledSession(pool, [library])
+        runPooledSession(pool, [library])
+
+        then:
+        2 * workerProcessBuilder.build() >>> [exiting, next]
+        1 * exiting.waitForStop()
+        0 * next.waitForStop()
+
+        cleanup:
+        pool.stop()
+    }
+
+    def "stopNow stops the pooled worker and does not return it to the pool"() {
+        def pool = new TestWorkerPool()
+        def stopped = reusableWorkerProcess()
+        def next = reusableWorkerProcess()
+        def library = jar("a.jar")
+        def processor = pooledProcessor(pool, [library])
+
+        when:
+        processor.startProcessing(Mock(TestResultProcessor))
+        processor.processTestClass(Mock(TestClassRunInfo))
+        processor.stopNow()
+        processor.stop()
+        runPooledSession(pool, [library])
+
+        then:
+        2 * workerProcessBuilder.build() >>> [stopped, next]
+        1 * stopped.stopNow()
+        1 * stopped.waitForStop()
+        0 * next.waitForStop()
+
+        cleanup:
+        pool.stop()
+    }
+
+    ForkingTestClassProcessor pooledProcessor(TestWorkerPool pool, List<File> classpath) {
+        new ForkingTestClassProcessor(Stub(WorkerLeaseRegistry.WorkerLease), workerProcessFactory, Mock(WorkerTestClassProcessorFactory), options, classpath, Mock(Action), Stub(ModuleRegistry), documentationRegistry, pool)
+    }
+
+    void runPooledSession(TestWorkerPool pool, List<File> classpath) {
+        def processor = pooledProcessor(pool, classpath)
+        processor.startProcessing(Mock(TestResultProcessor))
+        processor.processTestClass(Mock(TestClassRunInfo))
+        processor.stop()
+    }
+
+    /**
+     * Creates a worker process that completes each session when asked to stop, or goes away instead.
+     */
+    WorkerProcess reusableWorkerProcess(boolean exitsDuringSession = false) {
+        def process = Mock(WorkerProcess)
+        ReusableTestResultProcessor results = null
+        def remoteProcessor = Stub(ReusableRemoteTestClassProcessor) {
+            stop() >> {
+                if (exitsDuringSession) {
+                    results.endStream()
+                } else {
+                    results.sessionCompleted()
+                }
+            }
+        }
+        process.connection >> Stub(ObjectConnection) {
+            addIncoming(ReusableTestResultProcessor, _) >> { results = it[1] }
+            addOutgoing(ReusableRemoteTestClassProcessor) >> remoteProcessor
+        }
+        return process
+    }
+
+    TestFile jar(String name) {
+        def jar = tmpDir.file(name)
+        jar << "jar"
+        return jar
+    }
+
     def module(String module) {
         return Stub(Module) {
             _ * getImplementationClasspath() >> {
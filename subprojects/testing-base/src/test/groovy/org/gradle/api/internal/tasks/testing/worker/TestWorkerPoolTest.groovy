@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.internal.remote.ObjectConnection
+import org.gradle.process.internal.worker.WorkerProcess
+import spock.lang.Specification
+import spock.lang.Subject
+
+class TestWorkerPoolTest extends Specification {
+    @Subject TestWorkerPool pool = new TestWorkerPool()
+    Map<PooledTestWorker, WorkerProcess> processes = [:]
+    Map<PooledTestWorker, ReusableRemoteTestClassProcessor> remoteProcessors = [:]
+
+    def "reserves an idle worker started with the same settings"() {
+        def worker = worker("key")
+
+        when:
+        pool.release(worker)
+
+        then:
+        pool.reserveIdleWorker("other") == null
+        pool.reserveIdleWorker("key") == worker
+        pool.reserveIdleWorker("key") == null
+    }
+
+    def "reserves the most recently released worker first"() {
+        def first = worker("key")
+        def second = worker("key")
+
+        when:
+        pool.release(first)
+        pool.release(second)
+
+        then:
+        pool.reserveIdleWorker("key") == second
+        pool.reserveIdleWorker("key") == first
+    }
+
+    def "stops a released worker whose process has gone away"() {
+        def worker = worker("key")
+        worker.endStream()
+
+        when:
+        pool.release(worker)
+
+        then:
+        0 * remoteProcessors[worker].stopWorker()
+        1 * processes[worker].waitForStop()
+
+        and:
+        pool.reserveIdleWorker("key") == null
+    }
+
+    def "stops the least recently used idle workers when there are too many"() {
+        def workers = (0..TestWorkerPool.MAX_IDLE_WORKERS).collect { worker("key-" + it) }
+        def oldest = workers.first()
+
+        when:
+        workers.each { pool.release(it) }
+
+        then:
+        1 * remoteProcessors[oldest].stopWorker()
+        1 * processes[oldest].waitForStop()
+
+        and:
+        pool.reserveIdleWorker("key-0") == null
+        workers.tail().every { pool.reserveIdleWorker(it.key) == it }
+    }
+
+    def "stops idle workers and workers released later when stopped"() {
+        def idle = worker("idle")
+        def inUse = worker("in-use")
+        pool.release(idle)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * remoteProcessors[idle].stopWorker()
+        1 * processes[idle].waitForStop()
+        0 * remoteProcessors[inUse].stopWorker()
+
+        when:
+        pool.release(inUse)
+
+        then:
+        1 * remoteProcessors[inUse].stopWorker()
+        1 * processes[inUse].waitForStop()
+
+        and:
+        pool.reserveIdleWorker("idle") == null
+        pool.reserveIdleWorker("in-use") == null
+    }
+
+    def "continues stopping idle workers when a worker fails to stop"() {
+        def broken = worker("broken")
+        def other = worker("other")
+        pool.release(broken)
+        pool.release(other)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * processes[broken].waitForStop() >> { throw new RuntimeException("broken") }
+        1 * processes[other].waitForStop()
+    }
+
+    PooledTestWorker worker(Object key) {
+        def process = Mock(WorkerProcess)
+        def remoteProcessor = Mock(ReusableRemoteTestClassProcessor)
+        process.connection >> Stub(ObjectConnection) {
+            addOutgoing(ReusableRemoteTestClassProcessor) >> remoteProcessor
+        }
+        def worker = new PooledTestWorker(key, process)
+        worker.start()
+        processes[worker] = process
+        remoteProcessors[worker] = remoteProcessor
+        return worker
+    }
+}
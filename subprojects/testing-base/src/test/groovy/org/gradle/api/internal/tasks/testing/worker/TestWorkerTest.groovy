@@ -30,6 +30,8 @@ import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 import org.gradle.util.SetSystemProperties
 import org.junit.Rule
 
+import java.security.Permission
+
 public class TestWorkerTest extends ConcurrentSpec {
     @Rule SetSystemProperties properties = new SetSystemProperties()
     def workerContext = Mock(WorkerProcessContext)
@@ -76,4 +78,96 @@ public class TestWorkerTest extends ConcurrentSpec {
         1 * processor.processTestClass(test)
         1 * processor.stop()
     }
+
+    def "reusable worker runs each session with a ClassLoader of its own and resets the system properties"() {
+        def reusableWorker = TestWorker.reusable()
+        def resultProcessor = Mock(ReusableTestResultProcessor)
+        def sessionClasspath = [new File("classes")]
+        def sessionClassLoaders = []
+        workerContext.applicationClassLoader >> getClass().classLoader
+
+        when:
+        async {
+            reusableWorker.execute(workerContext)
+            instant.completed
+        }
+
+        then:
+        instant.completed > instant.stopped
+        sessionClassLoaders.size() == 2
+        sessionClassLoaders[0] != sessionClassLoaders[1]
+        sessionClassLoaders.every { it.parent == getClass().classLoader }
+        System.getProperty("session.property") == null
+
+        and:
+        1 * connection.addOutgoing(ReusableTestResultProcessor) >> resultProcessor
+        1 * connection.addIncoming(ReusableRemoteTestClassProcessor, reusableWorker)
+        1 * connection.connect() >> {
+            start {
+                2.times {
+                    reusableWorker.startSession(new TestWorkerSession(factory, sessionClasspath))
+                    reusableWorker.startProcessing()
+                    reusableWorker.processTestClass(test)
+                    reusableWorker.stop()
+                }
+                instant.stopped
+                reusableWorker.stopWorker()
+            }
+        }
+        2 * factory.create(_) >> processor
+        2 * processor.startProcessing(_)
+        2 * processor.processTestClass(test) >> {
+            sessionClassLoaders << Thread.currentThread().contextClassLoader
+            System.setProperty("session.property", "value")
+        }
+        2 * processor.stop()
+        2 * resultProcessor.sessionCompleted()
+    }
+
+    def "reusable worker resets the security manager installed by the tests of a session"() {
+        def reusableWorker = TestWorker.reusable()
+        def resultProcessor = Mock(ReusableTestResultProcessor)
+        def securityManagers = []
+        workerContext.applicationClassLoader >> getClass().classLoader
+
+        when:
+        async {
+            reusableWorker.execute(workerContext)
+        }
+
+        then:
+        securityManagers.size() == 2
+        securityManagers.every { it == null }
+        System.securityManager == null
+
+        and:
+        1 * connection.addOutgoing(ReusableTestResultProcessor) >> resultProcessor
+        1 * connection.connect() >> {
+            start {
+                2.times {
+                    reusableWorker.startSession(new TestWorkerSession(factory, []))
+                    reusableWorker.startProcessing()
+                    reusableWorker.processTestClass(test)
+                    reusableWorker.stop()
+                }
+                reusableWorker.stopWorker()
+            }
+        }
+        2 * factory.create(_) >> processor
+        2 * processor.processTestClass(test) >> {
+            securityManagers << System.securityManager
+            System.securityManager = new PermissiveSecurityManager()
+        }
+        2 * resultProcessor.sessionCompleted()
+    }
+
+    static class PermissiveSecurityManager extends SecurityManager {
+        @Override
+        void checkPermission(Permission perm) {
+        }
+
+        @Override
+        void checkPermission(Permission perm, Object context) {
+        }
+    }
 }
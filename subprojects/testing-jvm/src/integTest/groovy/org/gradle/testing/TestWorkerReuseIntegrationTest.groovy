@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.testing
+
+import org.gradle.api.internal.tasks.testing.worker.TestWorkerPool
+import org.gradle.integtests.fixtures.AbstractIntegrationSpec
+
+class TestWorkerReuseIntegrationTest extends AbstractIntegrationSpec {
+    def setup() {
+        buildFile << """
+            apply plugin: 'java'
+            ${jcenterRepository()}
+            dependencies { testCompile 'junit:junit:4.12' }
+
+            tasks.withType(Test) {
+                systemProperty 'workers.file', file('build/workers.txt').absolutePath
+            }
+
+            task otherTest(type: Test) {
+                testClassesDirs = sourceSets.test.output.classesDirs
+                classpath = sourceSets.test.runtimeClasspath
+                mustRunAfter test
+            }
+        """.stripIndent()
+
+        file("src/test/java/WorkerTest.java") << """
+            import java.io.FileWriter;
+            import java.lang.management.ManagementFactory;
+            import org.junit.Test;
+
+            public class WorkerTest {
+                @Test
+                public void recordsWorker() throws Exception {
+                    FileWriter writer = new FileWriter(System.getProperty("workers.file"), true);
+                    try {
+                        writer.write(ManagementFactory.getRuntimeMXBean().getName() + "\\n");
+                    } finally {
+                        writer.close();
+                    }
+                }
+            }
+        """.stripIndent()
+    }
+
+    def "test tasks with the same settings share a worker when reusing forks"() {
+        when:
+        executer.withArgument("-D${TestWorkerPool.REUSE_FORKS_PROPERTY}=true")
+        succeeds 'test', 'otherTest'
+
+        then:
+        def workers = file('build/workers.txt').readLines()
+        workers.size() == 2
+        workers[0] == workers[1]
+    }
+
+    def "test tasks use a worker each when not reusing forks"() {
+        when:
+        succeeds 'test', 'otherTest'
+
+        then:
+        def workers = file('build/workers.txt').readLines()
+        workers.size() == 2
+        workers[0] != workers[1]
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.api.internal.tasks.testing.detection;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.gradle.api.Transformer;
 import org.gradle.api.internal.file.RelativeFile;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
@@ -34,20 +35,23 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Base class for test framework detectors. Test class files can be processed concurrently.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTestFrameworkDetector.class);
     private static final String JAVA_LANG_OBJECT = "java/lang/Object";
 
     private List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
-    private final Map<File, Boolean> superClasses;
+    private final ConcurrentMap<String, Boolean> superClasses;
     private TestClassProcessor testClassProcessor;
 
     private Set<File> testClassesDirectories;
@@ -56,13 +60,13 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<String, Boolean>();
     }
 
     protected abstract T createClassVisitor();
 
-    private File getSuperTestClassFile(String superClassName) {
-        prepareClasspath();
+    private TestClass readSuperTestClass(String superClassName) {
+        List<File> testClassDirectories = prepareClasspath();
         if (StringUtils.isEmpty(superClassName)) {
             throw new IllegalArgumentException("superClassName is empty!");
         }
@@ -76,19 +80,19 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
 
         if (superTestClassFile != null) {
-            return superTestClassFile;
+            return readClassFile(superTestClassFile, Factories.constant(superClassName));
         } else if (JAVA_LANG_OBJECT.equals(superClassName)) {
             // java.lang.Object found, which is not a test class
             return null;
         } else {
             // super test class file not in test class directories
-            return classFileExtractionManager.getLibraryClassFile(superClassName);
+            return readLibraryClass(superClassName);
         }
     }
 
-    private void prepareClasspath() {
+    private synchronized List<File> prepareClasspath() {
         if (testClassDirectories != null) {
-            return;
+            return testClassDirectories;
         }
 
         testClassDirectories = new ArrayList<File>();
@@ -105,6 +109,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
                 }
             }
         }
+        return testClassDirectories;
     }
 
     @Override
@@ -117,15 +122,16 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClasspath = testClasspath;
     }
 
-    private TestClass readClassFile(File testClassFile, Factory<String> fallbackClassNameProvider) {
-        final TestClassVisitor classVisitor = createClassVisitor();
+    @Override
+    public void setHierarchyCache(TestClassHierarchyCache hierarchyCache) {
+        classFileExtractionManager.setHierarchyCache(hierarchyCache);
+    }
 
+    private TestClass readClassFile(File testClassFile, Factory<String> fallbackClassNameProvider) {
         InputStream classStream = null;
         try {
             classStream = new BufferedInputStream(new FileInputStream(testClassFile));
-            final ClassReader classReader = new ClassReader(IOUtils.toByteArray(classStream));
-            classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
-            return TestClass.forParseableFile(classVisitor);
+            return readClass(IOUtils.toByteArray(classStream));
         } catch (Throwable e) {
             LOGGER.debug("Failed to read class file " + testClassFile.getAbsolutePath() + "; assuming it's a test class and continuing", e);
             return TestClass.forUnparseableFile(fallbackClassNameProvider.create());
@@ -134,14 +140,38 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
     }
 
+    private TestClass readLibraryClass(final String className) {
+        return classFileExtractionManager.getLibraryClass(className, getClass().getName(), new Transformer<TestClass, byte[]>() {
+            @Override
+            public TestClass transform(byte[] classBytes) {
+                try {
+                    return readClass(classBytes);
+                } catch (Throwable e) {
+                    LOGGER.debug("Failed to read library class " + className + "; assuming it's a test class and continuing", e);
+                    return TestClass.forUnparseableFile(className);
+                }
+            }
+        });
+    }
+
+    private TestClass readClass(byte[] classBytes) {
+        final TestClassVisitor classVisitor = createClassVisitor();
+        final ClassReader classReader = new ClassReader(classBytes);
+        classReader.accept(classVisitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+        return TestClass.forParseableFile(classVisitor);
+    }
+
     @Override
     public boolean processTestClass(final RelativeFile testClassFile) {
-        return processTestClass(testClassFile.getFile(), false, new Factory<String>() {
+        TestClass testClass = readClassFile(testClassFile.getFile(), new Factory<String>() {
             @Override
             public String create() {
                 return testClassFile.getRelativePath().getPathString().replace(".class", "");
             }
         });
+        boolean isTest = isTest(testClass);
+        publishTestClass(isTest, testClass);
+        return isTest;
     }
 
     /**
@@ -149,103 +179,51 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
      * class is a test class. First the package of the parent class is checked, if it is a java.lang or groovy.lang the class can't be a test class, otherwise the parent class is scanned. <p/> When a
      * parent class is a test class all the extending classes are marked as test classes.
      */
-    private boolean processTestClass(File testClassFile, boolean superClass, Factory<String> fallbackClassNameProvider) {
-        TestClass testClass = readClassFile(testClassFile, fallbackClassNameProvider);
-
-        boolean isTest = testClass.isTest();
-
-        if (!isTest) { // scan parent class
-            String superClassName = testClass.getSuperClassName();
-
-            if (isKnownTestCaseClassName(superClassName)) {
-                isTest = true;
-            } else {
-                File superClassFile = getSuperTestClassFile(superClassName);
-
-                if (superClassFile != null) {
-                    isTest = processSuperClass(superClassFile, superClassName);
-                } else {
-                    LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file",
-                        superClassName);
-                }
-            }
+    private boolean isTest(TestClass testClass) {
+        if (testClass.isTest()) {
+            return true;
         }
 
-        publishTestClass(isTest, testClass, superClass);
-
-        return isTest;
+        // scan parent class
+        String superClassName = testClass.getSuperClassName();
+        return isKnownTestCaseClassName(superClassName) || isSuperTest(superClassName);
     }
 
     protected abstract boolean isKnownTestCaseClassName(String testCaseClassName);
 
-    private boolean processSuperClass(File testClassFile, String superClassName) {
-        boolean isTest;
-
-        Boolean isSuperTest = superClasses.get(testClassFile);
+    private boolean isSuperTest(String superClassName) {
+        Boolean isSuperTest = superClasses.get(superClassName);
 
         if (isSuperTest == null) {
-            isTest = processTestClass(testClassFile, true, Factories.constant(superClassName));
+            TestClass superClass = readSuperTestClass(superClassName);
+            if (superClass != null) {
+                isSuperTest = isTest(superClass);
+            } else {
+                LOGGER.debug("test-class-scan : failed to scan parent class {}, could not find the class file", superClassName);
+                isSuperTest = false;
+            }
 
-            superClasses.put(testClassFile, isTest);
-        } else {
-            isTest = isSuperTest;
+            superClasses.put(superClassName, isSuperTest);
         }
 
-        return isTest;
+        return isSuperTest;
     }
 
     /**
-     * In none super class mode a test class is published when the class is a test and it is not abstract. In super class mode it must not publish the class otherwise it will get published multiple
+     * A test class is published when the class is a test and it is not abstract. Super classes are never published, otherwise they would get published multiple
      * times (for each extending class).
      */
-    private void publishTestClass(boolean isTest, TestClass testClass, boolean superClass) {
-        if (isTest && !testClass.isAbstract() && !superClass) {
+    private void publishTestClass(boolean isTest, TestClass testClass) {
+        if (isTest && !testClass.isAbstract()) {
             String className = Type.getObjectType(testClass.getClassName()).getClassName();
-            testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
+            synchronized (this) {
+                testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
+            }
         }
     }
 
     @Override
-    public void startDetection(TestClassProcessor testClassProcessor) {
+    public synchronized void startDetection(TestClassProcessor testClassProcessor) {
         this.testClassProcessor = testClassProcessor;
     }
-
-    private static class TestClass {
-        private final boolean test;
-        private final boolean isAbstract;
-        private final String className;
-        private final String superClassName;
-
-        static TestClass forParseableFile(TestClassVisitor testClassVisitor) {
-            return new TestClass(testClassVisitor.isTest(), testClassVisitor.isAbstract(), testClassVisitor.getClassName(), testClassVisitor.getSuperClassName());
-        }
-
-        static TestClass forUnparseableFile(String className) {
-            return new TestClass(true, false, className, null);
-        }
-
-        private TestClass(boolean test, boolean isAbstract, String className, String superClassName) {
-            this.test = test;
-            this.isAbstract = isAbstract;
-            this.className = className;
-            this.superClassName = superClassName;
-        }
-
-        boolean isTest() {
-            return test;
-        }
-
-        boolean isAbstract() {
-            return isAbstract;
-        }
-
-        String getClassName() {
-            return className;
-        }
-
-        String getSuperClassName() {
-            return superClassName;
-        }
-    }
-
 }
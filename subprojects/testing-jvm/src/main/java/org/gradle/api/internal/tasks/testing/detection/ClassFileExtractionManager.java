@@ -15,126 +15,54 @@
  */
 package org.gradle.api.internal.tasks.testing.detection;
 
-import org.apache.commons.lang.text.StrBuilder;
-import org.gradle.api.GradleException;
-import org.gradle.api.internal.file.DefaultTemporaryFileProvider;
-import org.gradle.api.internal.file.TemporaryFileProvider;
-import org.gradle.internal.Factory;
-import org.gradle.util.JarUtil;
+import org.gradle.api.Transformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
-import java.io.IOException;
-import java.util.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * This class manages class file extraction from library jar files.
+ * This class manages reading class files from library jar files. The class files are read in memory, rather than extracted to temporary files,
+ * and what is learned about them is kept in the {@link TestClassHierarchyCache}, when there is one.
  */
 public class ClassFileExtractionManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClassFileExtractionManager.class);
-    private final Map<String, Set<File>> packageJarFilesMappings;
-    private final Map<String, File> extractedJarClasses;
-    private final Set<String> unextractableClasses;
-    private final TemporaryFileProvider tempDirProvider;
+    private final Map<File, LibraryJar> libraryJars = new LinkedHashMap<File, LibraryJar>();
+    private TestClassHierarchyCache hierarchyCache;
 
-    public ClassFileExtractionManager(final Factory<File> tempDirFactory) {
-        assert tempDirFactory != null;
-        tempDirProvider = new DefaultTemporaryFileProvider(tempDirFactory);
-        packageJarFilesMappings = new HashMap<String, Set<File>>();
-        extractedJarClasses = new HashMap<String, File>();
-        unextractableClasses = new TreeSet<String>();
+    public void setHierarchyCache(@Nullable TestClassHierarchyCache hierarchyCache) {
+        this.hierarchyCache = hierarchyCache;
     }
 
     /**
-     * Add all packages found in the jar file to the package <> jar(s) index.
+     * Add the classes found in the jar file to the library classes. When a class is found in multiple jars, the jar added first is used.
      *
      * @param libraryJar Jar file to add to the index.
      */
-    public void addLibraryJar(final File libraryJar) {
-        new JarFilePackageLister().listJarPackages(libraryJar, new JarFilePackageListener() {
-            public void receivePackage(String packageName) {
-                Set<File> jarFiles = packageJarFilesMappings.get(packageName);
-                if (jarFiles == null) {
-                    jarFiles = new TreeSet<File>();
-                }
-                jarFiles.add(libraryJar);
-
-                packageJarFilesMappings.put(packageName, jarFiles);
-            }
-        });
+    public void addLibraryJar(File libraryJar) {
+        if (!libraryJars.containsKey(libraryJar)) {
+            libraryJars.put(libraryJar, hierarchyCache != null ? hierarchyCache.getLibraryJar(libraryJar) : LibraryJar.scan(libraryJar));
+        }
     }
 
     /**
-     * Retrieve the file that contains the extracted class file. <p/> This method will extract the class file if it is
-     * not extracted yet. Extracted class files are deleted on exit of the Gradle process. The same class is only
-     * extracted once.
+     * Retrieve what the given detector has learned about the given library class, reading the class file when it has not been read yet.
      *
-     * @param className Name of the class to extract.
-     * @return File that contains the extracted class file.
+     * @param className Name of the class to read.
+     * @return The class, or null when the class is not found in the library jars.
      */
-    public File getLibraryClassFile(final String className) {
-        if (unextractableClasses.contains(className)) {
-            return null;
-        } else {
-            if (!extractedJarClasses.containsKey(className)) {
-                if (!extractClassFile(className)) {
-                    unextractableClasses.add(className);
-                }
+    @Nullable
+    TestClass getLibraryClass(String className, String detector, Transformer<TestClass, byte[]> classReader) {
+        for (Map.Entry<File, LibraryJar> entry : libraryJars.entrySet()) {
+            if (entry.getValue().containsClass(className)) {
+                LOGGER.debug("reading class {} from {}", className, entry.getKey().getName());
+                return entry.getValue().getTestClass(detector, className, entry.getKey(), classReader);
             }
-
-            return extractedJarClasses.get(className);
         }
-    }
-
-    private boolean extractClassFile(final String className) {
-        boolean classFileExtracted = false;
-
-        final File extractedClassFile = tempFile();
-        final String classFileName = new StrBuilder().append(className).append(".class").toString();
-        final String classNamePackage = classNamePackage(className);
-        final Set<File> packageJarFiles = packageJarFilesMappings.get(classNamePackage);
-
-        File classFileSourceJar = null;
-
-        if (packageJarFiles != null && !packageJarFiles.isEmpty()) {
-            final Iterator<File> packageJarFilesIt = packageJarFiles.iterator();
-
-            while (!classFileExtracted && packageJarFilesIt.hasNext()) {
-                final File jarFile = packageJarFilesIt.next();
-
-                try {
-                    classFileExtracted = JarUtil.extractZipEntry(jarFile, classFileName, extractedClassFile);
-
-                    if (classFileExtracted) {
-                        classFileSourceJar = jarFile;
-                    }
-                } catch (IOException e) {
-                    throw new GradleException("failed to extract class file from jar (" + jarFile + ")", e);
-                }
-            }
-
-            if (classFileExtracted) {
-                LOGGER.debug("extracted class {} from {}", className, classFileSourceJar.getName());
-
-                extractedJarClasses.put(className, extractedClassFile);
-            }
-        } // super class not on the classpath - unable to scan parent class
-
-        return classFileExtracted;
-    }
-
-    private String classNamePackage(final String className) {
-        final int lastSlashIndex = className.lastIndexOf('/');
-
-        if (lastSlashIndex == -1) {
-            return null; // class in root package - should not happen
-        } else {
-            return className.substring(0, lastSlashIndex + 1);
-        }
-    }
-
-    private File tempFile() {
-        return tempDirProvider.createTemporaryFile("jar_extract_", "_tmp"); // Could throw UncheckedIOException
+        // super class not on the classpath - unable to scan parent class
+        return null;
     }
 }
@@ -23,24 +23,39 @@ import org.gradle.api.internal.file.RelativeFile;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 
+import javax.annotation.Nullable;
 import java.util.regex.Pattern;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * When given an executor factory and more than one thread, the detection scan reads the class files concurrently,
+ * and test classes are passed on as they are detected rather than in the order of the class files.
  */
 public class DefaultTestClassScanner implements Runnable {
     private static final Pattern ANONYMOUS_CLASS_NAME = Pattern.compile(".*\\$\\d+");
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorFactory executorFactory;
+    private final int scanThreads;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null, 1);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, @Nullable ExecutorFactory executorFactory, int scanThreads) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.executorFactory = executorFactory;
+        this.scanThreads = scanThreads;
     }
 
     @Override
@@ -54,6 +69,10 @@ public class DefaultTestClassScanner implements Runnable {
 
     private void detectionScan() {
         testFrameworkDetector.startDetection(testClassProcessor);
+        if (executorFactory != null && scanThreads > 1) {
+            parallelDetectionScan();
+            return;
+        }
         candidateClassFiles.visit(new ClassFileVisitor() {
             public void visitClassFile(FileVisitDetails fileDetails) {
                 testFrameworkDetector.processTestClass(new RelativeFile(fileDetails.getFile(), fileDetails.getRelativePath()));
@@ -61,6 +80,26 @@ public class DefaultTestClassScanner implements Runnable {
         });
     }
 
+    private void parallelDetectionScan() {
+        final ManagedExecutor executor = executorFactory.create("Test class scanner", scanThreads);
+        try {
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final RelativeFile testClassFile = new RelativeFile(fileDetails.getFile(), fileDetails.getRelativePath());
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            testFrameworkDetector.processTestClass(testClassFile);
+                        }
+                    });
+                }
+            });
+        } finally {
+            // Waits for the class files to be read, and rethrows any failure
+            executor.stop();
+        }
+    }
+
     private void filenameScan() {
         candidateClassFiles.visit(new ClassFileVisitor() {
             public void visitClassFile(FileVisitDetails fileDetails) {
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.Transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The classes of a library jar, and what each test framework detector has learned about the ones it has read.
+ * Does not refer to the jar file itself, as the same content may be found at different locations.
+ */
+class LibraryJar {
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final Set<String> classNames;
+    private final ConcurrentMap<String, ConcurrentMap<String, TestClass>> testClassesByDetector = new ConcurrentHashMap<String, ConcurrentMap<String, TestClass>>();
+
+    private LibraryJar(Set<String> classNames) {
+        this.classNames = classNames;
+    }
+
+    static LibraryJar scan(File jarFile) {
+        Set<String> classNames = new HashSet<String>();
+        try {
+            ZipFile zipFile = new ZipFile(jarFile);
+            try {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.endsWith(CLASS_SUFFIX) && !name.startsWith("META-INF/")) {
+                        classNames.add(name.substring(0, name.length() - CLASS_SUFFIX.length()));
+                    }
+                }
+            } finally {
+                zipFile.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException("failed to scan jar file for classes (" + jarFile.getAbsolutePath() + ")", e);
+        }
+        return new LibraryJar(classNames);
+    }
+
+    boolean containsClass(String className) {
+        return classNames.contains(className);
+    }
+
+    /**
+     * Returns what the given detector has learned about the given class of this jar, reading the class from the given jar file when it has not read it before.
+     */
+    TestClass getTestClass(String detector, String className, File jarFile, Transformer<TestClass, byte[]> classReader) {
+        ConcurrentMap<String, TestClass> testClasses = testClassesByDetector.get(detector);
+        if (testClasses == null) {
+            testClassesByDetector.putIfAbsent(detector, new ConcurrentHashMap<String, TestClass>());
+            testClasses = testClassesByDetector.get(detector);
+        }
+        TestClass testClass = testClasses.get(className);
+        if (testClass == null) {
+            testClass = classReader.transform(readClassBytes(jarFile, className));
+            testClasses.putIfAbsent(className, testClass);
+        }
+        return testClass;
+    }
+
+    private static byte[] readClassBytes(File jarFile, String className) {
+        try {
+            ZipFile zipFile = new ZipFile(jarFile);
+            try {
+                ZipEntry entry = zipFile.getEntry(className + CLASS_SUFFIX);
+                if (entry == null) {
+                    throw new IOException("class file " + className + CLASS_SUFFIX + " not found");
+                }
+                InputStream inputStream = zipFile.getInputStream(entry);
+                try {
+                    return IOUtils.toByteArray(inputStream);
+                } finally {
+                    inputStream.close();
+                }
+            } finally {
+                zipFile.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException("failed to read class file from jar (" + jarFile + ")", e);
+        }
+    }
+}
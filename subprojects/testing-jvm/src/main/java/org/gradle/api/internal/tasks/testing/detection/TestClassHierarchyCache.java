@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import net.jcip.annotations.ThreadSafe;
+import org.gradle.api.Transformer;
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+
+/**
+ * Caches what test class detection has learned about the classes of the library jars on the test runtime classpath, by the hash of each jar,
+ * so that later test runs in the same daemon do not read the same library classes again.
+ */
+@ThreadSafe
+public class TestClassHierarchyCache {
+    private final CrossBuildInMemoryCache<HashCode, LibraryJar> libraryJars;
+    private final FileHasher fileHasher;
+
+    public TestClassHierarchyCache(CrossBuildInMemoryCacheFactory cacheFactory, FileHasher fileHasher) {
+        this.libraryJars = cacheFactory.newCache();
+        this.fileHasher = fileHasher;
+    }
+
+    LibraryJar getLibraryJar(final File jarFile) {
+        return libraryJars.get(fileHasher.hash(jarFile), new Transformer<LibraryJar, HashCode>() {
+            @Override
+            public LibraryJar transform(HashCode hashCode) {
+                return LibraryJar.scan(jarFile);
+            }
+        });
+    }
+}
@@ -29,4 +29,6 @@ public interface TestFrameworkDetector {
     void setTestClasses(Set<File> testClasses);
 
     void setTestClasspath(Set<File> classpath);
+
+    void setHierarchyCache(TestClassHierarchyCache hierarchyCache);
 }
@@ -22,6 +22,7 @@ import org.gradle.api.file.FileVisitor
 import org.gradle.api.file.RelativePath
 import org.gradle.api.internal.file.DefaultFileVisitDetails
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.junit.Test
 import spock.lang.Specification
 import spock.lang.Subject
@@ -78,6 +79,31 @@ class DefaultTestClassScannerTest extends Specification {
         0 * _._
     }
 
+    @Test
+    void passesEachClassFileToTestClassDetectorConcurrently() {
+        given:
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelScanner = new DefaultTestClassScanner(files, detector, processor, executorFactory, 2)
+        def classes = (1..10).collect { stubFileVisitDetails("class$it") }
+
+        when:
+        parallelScanner.run()
+
+        then:
+        1 * detector.startDetection(processor)
+        then:
+        1 * files.visit(_) >> { args ->
+            FileVisitor visitor = args[0]
+            classes.each { visitor.visitFile(it) }
+        }
+        10 * detector.processTestClass({ it.file in classes*.file })
+
+        0 * _._
+
+        cleanup:
+        executorFactory.stop()
+    }
+
     FileVisitDetails stubFileVisitDetails(String className) {
         return new DefaultFileVisitDetails(new File("${className}.class"), new RelativePath(false, "${className}.class"), null, null, null)
     }
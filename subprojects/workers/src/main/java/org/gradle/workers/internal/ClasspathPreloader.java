@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Runs in a worker daemon, and loads the classes of the application classpath of the daemon without initializing them, so that the first work item does not have to.
+ */
+public class ClasspathPreloader implements Runnable {
+    private static final Logger LOGGER = Logging.getLogger(ClasspathPreloader.class);
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final List<File> classpath;
+
+    @Inject
+    public ClasspathPreloader(List<File> classpath) {
+        this.classpath = classpath;
+    }
+
+    @Override
+    public void run() {
+        Timer clock = Time.startTimer();
+        // The application classes are loaded by the system ClassLoader in a worker process
+        ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        int loaded = 0;
+        for (File file : classpath) {
+            if (!file.isFile()) {
+                continue;
+            }
+            try {
+                loaded += preload(file, classLoader);
+            } catch (IOException e) {
+                LOGGER.debug("Could not preload classes from {}.", file, e);
+            }
+        }
+        LOGGER.debug("Preloaded {} classes ({}).", loaded, clock.getElapsed());
+    }
+
+    private static int preload(File jar, ClassLoader classLoader) throws IOException {
+        int loaded = 0;
+        ZipFile zipFile = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(CLASS_SUFFIX) || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                    continue;
+                }
+                String className = name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.');
+                try {
+                    Class.forName(className, false, classLoader);
+                    loaded++;
+                } catch (Throwable t) {
+                    // Ignore classes that cannot be loaded, for example because they depend on optional libraries
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+        return loaded;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.workers.internal;
 
+import com.google.common.collect.Lists;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.operations.BuildOperationRef;
@@ -50,6 +51,13 @@ class WorkerDaemonClient implements Worker, Stoppable {
         return workerDaemonProcess.execute(spec);
     }
 
+    /**
+     * Loads the classes of the classpath of the daemon ahead of the first work item. Does not count as a use of the daemon.
+     */
+    void preloadClasspath() {
+        workerDaemonProcess.execute(new SimpleActionExecutionSpec(ClasspathPreloader.class, "classpath preloader", new Object[]{Lists.newArrayList(forkOptions.getClasspath())}));
+    }
+
     public boolean isCompatibleWith(DaemonForkOptions required) {
         return forkOptions.isCompatibleWith(required);
     }
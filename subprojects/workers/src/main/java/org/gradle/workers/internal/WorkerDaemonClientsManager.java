@@ -25,6 +25,8 @@ import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Spec;
 import org.gradle.initialization.SessionLifecycleListener;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.exceptions.DefaultMultiCauseException;
@@ -42,13 +44,24 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Keeps track of the worker daemons of this process, and reuses idle daemons that are compatible with the requested fork options.
+ *
+ * When a number of warm daemons is configured, the manager remembers the fork options of the daemons it starts that are kept alive across builds.
+ * At the start of each build session, it starts daemons in the background for each of these fork options, until there are that many idle daemons,
+ * and has them load their classpath. This way the work of the build does not wait for the daemons to start.
+ */
 public class WorkerDaemonClientsManager implements Stoppable {
+    public static final String WARM_DAEMONS_PROPERTY_KEY = "org.gradle.workers.internal.warm-daemons";
 
     private static final Logger LOGGER = Logging.getLogger(WorkerDaemonClientsManager.class);
+    private static final int MAX_WARM_DAEMON_SHAPES = 8;
 
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
+    // The fork options to keep warm daemons for, most recently used last
+    private final List<WarmDaemonShape> warmDaemonShapes = new ArrayList<WarmDaemonShape>();
     private final Action<WorkerProcess> workerProcessCleanupAction = new WorkerProcessCleanupAction();
 
     private final WorkerDaemonStarter workerDaemonStarter;
@@ -59,9 +72,18 @@ public class WorkerDaemonClientsManager implements Stoppable {
     private final OutputEventListener logLevelChangeEventListener;
     private final WorkerDaemonExpiration workerDaemonExpiration;
     private final MemoryManager memoryManager;
+    private final ExecutorFactory executorFactory;
+    private final int warmDaemonsPerShape;
+    private final SessionLifecycleListener startWarmWorkers;
+    private ManagedExecutor warmDaemonStarter;
+    private boolean stopped;
     private volatile LogLevel currentLogLevel;
 
     public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo) {
+        this(workerDaemonStarter, listenerManager, loggingManager, memoryManager, memoryInfo, null, 0);
+    }
+
+    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo, ExecutorFactory executorFactory, int warmDaemonsPerShape) {
         this.workerDaemonStarter = workerDaemonStarter;
         this.listenerManager = listenerManager;
         this.loggingManager = loggingManager;
@@ -74,6 +96,12 @@ public class WorkerDaemonClientsManager implements Stoppable {
         this.memoryManager = memoryManager;
         this.workerDaemonExpiration = new WorkerDaemonExpiration(this, getTotalPhysicalMemory());
         memoryManager.addMemoryHolder(workerDaemonExpiration);
+        this.executorFactory = executorFactory;
+        this.warmDaemonsPerShape = executorFactory == null ? 0 : warmDaemonsPerShape;
+        this.startWarmWorkers = new StartWarmWorkers();
+        if (this.warmDaemonsPerShape > 0) {
+            listenerManager.addListener(startWarmWorkers);
+        }
     }
 
     // TODO - should supply and check for the same parameters as passed to reserveNewClient()
@@ -106,10 +134,94 @@ public class WorkerDaemonClientsManager implements Stoppable {
         WorkerDaemonClient client = workerDaemonStarter.startDaemon(workerProtocolImplementationClass, forkOptions, workerProcessCleanupAction);
         synchronized (lock) {
             allClients.add(client);
+            if (warmDaemonsPerShape > 0 && forkOptions.getKeepAliveMode() == KeepAliveMode.DAEMON) {
+                rememberWarmDaemonShape(workerProtocolImplementationClass, forkOptions);
+            }
         }
         return client;
     }
 
+    private void rememberWarmDaemonShape(Class<? extends WorkerProtocol> workerProtocolImplementationClass, DaemonForkOptions forkOptions) {
+        Iterator<WarmDaemonShape> it = warmDaemonShapes.iterator();
+        while (it.hasNext()) {
+            WarmDaemonShape shape = it.next();
+            if (shape.isSameAs(workerProtocolImplementationClass, forkOptions)) {
+                it.remove();
+                warmDaemonShapes.add(shape);
+                return;
+            }
+        }
+        if (warmDaemonShapes.size() >= MAX_WARM_DAEMON_SHAPES) {
+            warmDaemonShapes.remove(0);
+        }
+        warmDaemonShapes.add(new WarmDaemonShape(workerProtocolImplementationClass, forkOptions));
+    }
+
+    /**
+     * Starts daemons in the background for each of the remembered fork options, until there are enough idle daemons for each of them.
+     */
+    void startWarmDaemons() {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            for (final WarmDaemonShape shape : warmDaemonShapes) {
+                int warmDaemons = shape.starting;
+                for (WorkerDaemonClient client : idleClients) {
+                    if (client.isCompatibleWith(shape.forkOptions) && client.getLogLevel() == currentLogLevel) {
+                        warmDaemons++;
+                    }
+                }
+                for (int i = warmDaemons; i < warmDaemonsPerShape; i++) {
+                    if (warmDaemonStarter == null) {
+                        warmDaemonStarter = executorFactory.create("Worker daemon starter");
+                    }
+                    shape.starting++;
+                    warmDaemonStarter.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            startWarmDaemon(shape);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private void startWarmDaemon(WarmDaemonShape shape) {
+        WorkerDaemonClient client = null;
+        try {
+            client = workerDaemonStarter.startDaemon(shape.workerProtocolImplementationClass, shape.forkOptions, workerProcessCleanupAction);
+            synchronized (lock) {
+                if (stopped) {
+                    client.stop();
+                    return;
+                }
+                allClients.add(client);
+            }
+            client.preloadClasspath();
+            synchronized (lock) {
+                // The daemon may have failed or been stopped in the meantime
+                if (allClients.contains(client) && !client.isFailed()) {
+                    idleClients.add(client);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.info("Could not start warm worker daemon with fork options {}.", shape.forkOptions, e);
+            if (client != null) {
+                synchronized (lock) {
+                    if (allClients.remove(client)) {
+                        client.stop();
+                    }
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                shape.starting--;
+            }
+        }
+    }
+
     public void release(WorkerDaemonClient client) {
         synchronized (lock) {
             if (!client.isFailed()) {
@@ -120,15 +232,23 @@ public class WorkerDaemonClientsManager implements Stoppable {
 
     @Override
     public void stop() {
+        ManagedExecutor warmDaemonStarter;
         synchronized (lock) {
+            stopped = true;
             stopWorkers(allClients);
             allClients.clear();
             idleClients.clear();
             listenerManager.removeListener(stopSessionScopeWorkers);
+            listenerManager.removeListener(startWarmWorkers);
             memoryManager.removeMemoryHolder(workerDaemonExpiration);
+            warmDaemonStarter = this.warmDaemonStarter;
         }
         // Do not hold lock while removing listener, as the listener may still be receiving events on another thread and will need to acquire the lock to handle these events
         loggingManager.removeOutputEventListener(logLevelChangeEventListener);
+        // Do not hold lock while waiting for the warm daemons to start, as starting them needs the lock
+        if (warmDaemonStarter != null) {
+            warmDaemonStarter.stop();
+        }
     }
 
     private long getTotalPhysicalMemory() {
@@ -203,6 +323,34 @@ public class WorkerDaemonClientsManager implements Stoppable {
         }
     }
 
+    private class StartWarmWorkers implements SessionLifecycleListener {
+        @Override
+        public void afterStart() {
+            startWarmDaemons();
+        }
+
+        @Override
+        public void beforeComplete() { }
+    }
+
+    private static class WarmDaemonShape {
+        private final Class<? extends WorkerProtocol> workerProtocolImplementationClass;
+        private final DaemonForkOptions forkOptions;
+        // Protected by the lock of the manager
+        private int starting;
+
+        WarmDaemonShape(Class<? extends WorkerProtocol> workerProtocolImplementationClass, DaemonForkOptions forkOptions) {
+            this.workerProtocolImplementationClass = workerProtocolImplementationClass;
+            this.forkOptions = forkOptions;
+        }
+
+        boolean isSameAs(Class<? extends WorkerProtocol> workerProtocolImplementationClass, DaemonForkOptions forkOptions) {
+            return this.workerProtocolImplementationClass.equals(workerProtocolImplementationClass)
+                && this.forkOptions.isCompatibleWith(forkOptions)
+                && forkOptions.isCompatibleWith(this.forkOptions);
+        }
+    }
+
     private class LogLevelChangeEventListener implements OutputEventListener {
         @Override
         public void onOutput(OutputEvent event) {
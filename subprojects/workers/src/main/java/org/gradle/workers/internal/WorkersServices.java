@@ -83,8 +83,10 @@ public class WorkersServices extends AbstractPluginServiceRegistry {
                                                                     LoggingManagerInternal loggingManager,
                                                                     ListenerManager listenerManager,
                                                                     MemoryManager memoryManager,
-                                                                    OsMemoryInfo memoryInfo) {
-            return new WorkerDaemonClientsManager(new WorkerDaemonStarter(workerFactory, loggingManager), listenerManager, loggingManager, memoryManager, memoryInfo);
+                                                                    OsMemoryInfo memoryInfo,
+                                                                    ExecutorFactory executorFactory) {
+            int warmDaemons = Integer.getInteger(WorkerDaemonClientsManager.WARM_DAEMONS_PROPERTY_KEY, 0);
+            return new WorkerDaemonClientsManager(new WorkerDaemonStarter(workerFactory, loggingManager), listenerManager, loggingManager, memoryManager, memoryInfo, executorFactory, warmDaemons);
         }
     }
 
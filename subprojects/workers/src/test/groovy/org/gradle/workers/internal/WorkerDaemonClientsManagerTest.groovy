@@ -187,6 +187,42 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         0 * client2.stop()
     }
 
+    def "starts warm clients in the background for the fork options of clients kept alive across builds"() {
+        listenerManager = new DefaultListenerManager()
+        loggingManager.getLevel() >> LogLevel.INFO
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, 2)
+        def daemonOptions = Stub(DaemonForkOptions) {
+            getKeepAliveMode() >> KeepAliveMode.DAEMON
+            isCompatibleWith(_) >> true
+        }
+        def client = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.INFO
+        }
+        def warmClient = Mock(WorkerDaemonClient) {
+            isCompatibleWith(_) >> true
+            getLogLevel() >> LogLevel.INFO
+        }
+        starter.startDaemon(serverImpl.class, daemonOptions, _) >>> [client, warmClient]
+
+        when:
+        manager.reserveNewClient(serverImpl.class, daemonOptions)
+        manager.release(client)
+        listenerManager.getBroadcaster(SessionLifecycleListener).afterStart()
+        finished()
+
+        then:
+        1 * warmClient.preloadClasspath()
+
+        and:
+        manager.reserveIdleClient(daemonOptions) == client
+        manager.reserveIdleClient(daemonOptions) == warmClient
+        manager.reserveIdleClient(daemonOptions) == null
+
+        cleanup:
+        manager.stop()
+    }
+
     def "clients can be released for further use"() {
         def client = Mock(WorkerDaemonClient) {
             isCompatibleWith(_) >> true